@@ -84,4 +84,72 @@ public interface MappingResolver {
 	 * @return the mapped method name, or {@code name} if no such mapping is present
 	 */
 	String mapMethodName(String namespace, String owner, String name, String descriptor);
+
+	/**
+	 * Map multiple class names to the mapping currently used at runtime.
+	 *
+	 * @param namespace the namespace of the provided class names
+	 * @param classNames the provided binary class names
+	 * @param out the array receiving the mapped class names at the same indices, may be {@code classNames} itself
+	 * @throws IllegalArgumentException if {@code out} is shorter than {@code classNames}
+	 * @see #mapClassName(String, String)
+	 */
+	default void mapClassNames(String namespace, String[] classNames, String[] out) {
+		if (out.length < classNames.length) {
+			throw new IllegalArgumentException("Output array is shorter than the class name array");
+		}
+
+		for (int i = 0; i < classNames.length; i++) {
+			out[i] = mapClassName(namespace, classNames[i]);
+		}
+	}
+
+	/**
+	 * Map multiple field names to the mapping currently used at runtime.
+	 *
+	 * <p>The field at index {@code i} is described by {@code owners[i]}, {@code names[i]} and {@code descriptors[i]}.</p>
+	 *
+	 * @param namespace the namespace of the provided field names and descriptors
+	 * @param owners the binary names of the owner classes of the fields
+	 * @param names the names of the fields
+	 * @param descriptors the descriptors of the fields
+	 * @param out the array receiving the mapped field names at the same indices, may be {@code names} itself
+	 * @throws IllegalArgumentException if {@code owners}, {@code descriptors} or {@code out} is shorter than {@code names}
+	 * @see #mapFieldName(String, String, String, String)
+	 */
+	default void mapFieldNames(String namespace, String[] owners, String[] names, String[] descriptors, String[] out) {
+		checkMemberArrays(owners, names, descriptors, out);
+
+		for (int i = 0; i < names.length; i++) {
+			out[i] = mapFieldName(namespace, owners[i], names[i], descriptors[i]);
+		}
+	}
+
+	/**
+	 * Map multiple method names to the mapping currently used at runtime.
+	 *
+	 * <p>The method at index {@code i} is described by {@code owners[i]}, {@code names[i]} and {@code descriptors[i]}.</p>
+	 *
+	 * @param namespace the namespace of the provided method names and descriptors
+	 * @param owners the binary names of the owner classes of the methods
+	 * @param names the names of the methods
+	 * @param descriptors the descriptors of the methods
+	 * @param out the array receiving the mapped method names at the same indices, may be {@code names} itself
+	 * @throws IllegalArgumentException if {@code owners}, {@code descriptors} or {@code out} is shorter than {@code names}
+	 * @see #mapMethodName(String, String, String, String)
+	 */
+	default void mapMethodNames(String namespace, String[] owners, String[] names, String[] descriptors, String[] out) {
+		checkMemberArrays(owners, names, descriptors, out);
+
+		for (int i = 0; i < names.length; i++) {
+			out[i] = mapMethodName(namespace, owners[i], names[i], descriptors[i]);
+		}
+	}
+
+	// Validate all arrays up front instead of failing partway through a batch
+	private static void checkMemberArrays(String[] owners, String[] names, String[] descriptors, String[] out) {
+		if (owners.length < names.length || descriptors.length < names.length || out.length < names.length) {
+			throw new IllegalArgumentException("Owner, descriptor or output array is shorter than the name array");
+		}
+	}
 }
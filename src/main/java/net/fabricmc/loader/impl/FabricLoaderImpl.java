@@ -28,8 +28,10 @@ import net.fabricmc.loader.api.ObjectShare;
 import net.fabricmc.loader.api.entrypoint.EntrypointContainer;
 import net.fabricmc.loader.impl.entrypoint.EntrypointStorage;
 import net.fabricmc.loader.impl.metadata.EntrypointMetadata;
+import net.fabricmc.loader.impl.metadata.MetadataInterner;
 import net.fabricmc.loader.impl.util.DefaultLanguageAdapter;
 import net.fabricmc.loader.impl.util.ExceptionUtil;
+import net.fabricmc.loader.impl.util.SystemProperties;
 import net.fabricmc.loader.impl.util.log.Log;
 import net.fabricmc.loader.impl.util.log.LogCategory;
 import net.minecraftforge.api.distmarker.Dist;
@@ -48,6 +50,8 @@ import java.util.function.Supplier;
 public final class FabricLoaderImpl extends net.fabricmc.loader.FabricLoader {
     public static final FabricLoaderImpl INSTANCE = InitHelper.get();
 
+    public static final String CACHE_DIR_NAME = ".fabric"; // relative to game dir
+
     private final Map<String, ModContainerImpl> modMap = new HashMap<>();
     private final List<ModContainerImpl> mods = new ArrayList<>();
     private final Multimap<String, String> modAliases = HashMultimap.create();
@@ -214,6 +218,7 @@ public final class FabricLoaderImpl extends net.fabricmc.loader.FabricLoader {
                 }
             }
             loadedFMLMods = true;
+            MetadataInterner.closeActive(); // all mod metadata has been parsed
         }
     }
 
@@ -228,6 +233,24 @@ public final class FabricLoaderImpl extends net.fabricmc.loader.FabricLoader {
     public void setup() {
         setupLanguageAdapters();
         setupMods();
+        warmUpMappings();
+    }
+
+    private void warmUpMappings() {
+        String warmUp = System.getProperty(SystemProperties.WARM_UP_MAPPINGS);
+        // Servers rarely remap names, don't pay for it unless requested
+        boolean enabled = warmUp != null ? Boolean.parseBoolean(warmUp) : getEnvironmentType() == EnvType.CLIENT;
+        if (!enabled) return;
+
+        Thread thread = new Thread(() -> {
+            try {
+                getMappingResolver().warmUp();
+            } catch (Throwable t) {
+                Log.warn(LogCategory.MAPPINGS, "Error warming up mappings", t);
+            }
+        }, "Fabric Mapping Warm-up");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     private void setupLanguageAdapters() {
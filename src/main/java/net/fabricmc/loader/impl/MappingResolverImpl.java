@@ -18,22 +18,30 @@ package net.fabricmc.loader.impl;
 
 import cpw.mods.modlauncher.api.INameMappingService;
 import net.fabricmc.loader.api.MappingResolver;
+import net.fabricmc.loader.impl.mappings.MappingCache;
+import net.fabricmc.loader.impl.mappings.MappingIndex;
+import net.fabricmc.loader.impl.mappings.MappingMerger;
+import net.fabricmc.loader.impl.util.SystemProperties;
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
 import net.minecraftforge.fml.loading.FMLEnvironment;
 import net.minecraftforge.fml.loading.FMLLoader;
-import net.minecraftforge.srgutils.IMappingBuilder;
 import net.minecraftforge.srgutils.IMappingFile;
 import net.minecraftforge.srgutils.INamedMappingFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
-import java.util.stream.Stream;
 
 public class MappingResolverImpl implements MappingResolver {
     /**
@@ -42,84 +50,144 @@ public class MappingResolverImpl implements MappingResolver {
     private static final String MAPPINGS_RESOURCE = "/mappings.tsrg";
     private static final String FML_NAMESPACE = FMLEnvironment.naming;
     private static final String OBF_NAMESPACE = "srg";
+    /**
+     * Binary cache of the final mappings, including the runtime namespace, relative to the loader cache directory
+     */
+    private static final String CACHE_FILE_NAME = "mappings.bin";
+    private static final boolean USE_CACHE = System.getProperty(SystemProperties.DISABLE_MAPPING_CACHE) == null;
+    /**
+     * Namespace used by fabric mods, materialized ahead of time by {@link #warmUp()}
+     */
+    private static final String WARM_UP_NAMESPACE = "intermediary";
+    /**
+     * Maximum number of memoized descriptors per namespace, descriptors beyond it are remapped on every call
+     */
+    private static final int MAX_DESCRIPTOR_CACHE_SIZE = 8192;
+
+    // Shipped mappings, loaded on first use
+    private volatile INamedMappingFile baseMappings;
+    // Shipped mappings extended by the runtime namespace if it isn't part of them, built on first use
+    private volatile INamedMappingFile runtimeMappings;
+    // Materialized mapping pairs, keyed by source and then target namespace
+    private final Map<String, Map<String, IMappingFile>> maps = new ConcurrentHashMap<>();
+    // Read-only lookup indices, keyed by source namespace for mapping and by target namespace for unmapping
+    private final Map<String, MappingIndex> mapIndices = new ConcurrentHashMap<>();
+    private final Map<String, MappingIndex> unmapIndices = new ConcurrentHashMap<>();
+    // Memoized descriptor remapping results, keyed by source namespace and then descriptor, bounded by MAX_DESCRIPTOR_CACHE_SIZE
+    private final Map<String, Map<String, String>> descriptorCaches = new ConcurrentHashMap<>();
+
+    private String cacheKey;
+    private Path cacheFile;
+
+    /**
+     * Materialize the most commonly used mapping pair ahead of time so the first remap call doesn't have to.
+     */
+    public void warmUp() {
+        long startTime = System.nanoTime();
+        String namespace = getNamespaces().contains(WARM_UP_NAMESPACE) ? WARM_UP_NAMESPACE : OBF_NAMESPACE;
+
+        getIndex(mapIndices, namespace, FML_NAMESPACE);
+
+        Log.debug(LogCategory.MAPPINGS, "Mapping warm-up time: %.1f ms", (System.nanoTime() - startTime) * 1e-6);
+    }
 
-    private final INamedMappingFile mappings;
+    private INamedMappingFile getBaseMappings() {
+        INamedMappingFile ret = baseMappings;
 
-    public MappingResolverImpl() {
+        if (ret == null) {
+            synchronized (this) {
+                ret = baseMappings;
+
+                if (ret == null) {
+                    ret = baseMappings = loadBaseMappings();
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    private INamedMappingFile loadBaseMappings() {
         URL path = getClass().getResource(MAPPINGS_RESOURCE);
         if (path == null && !FMLEnvironment.production)
             throw new RuntimeException("Missing mappings file");
 
         try (InputStream is = path.openStream()) {
-            INamedMappingFile map = INamedMappingFile.load(is);
-
-            List<String> names = map.getNames();
-            // If we're in a deobfuscated environment, append deobf named to the mappings
-            // This is done at runtime to comply with mojmap licensing
-            if (!FML_NAMESPACE.equals(OBF_NAMESPACE) && names.contains(OBF_NAMESPACE)) {
-                IMappingBuilder builder = IMappingBuilder.create(Stream.concat(map.getNames().stream(), Stream.of(FML_NAMESPACE)).toArray(String[]::new));
-                // Grab modlauncher service for remapping SRG -> MOJ
-                BiFunction<INameMappingService.Domain, String, String> mapper = FMLLoader.getNameFunction(OBF_NAMESPACE).orElseThrow();
-
-                // Get all names but SRG
-                List<String> filtered = new ArrayList<>(names);
-                filtered.remove(OBF_NAMESPACE);
-                // Mapping of the first namespace to SRG
-                IMappingFile primary = map.getMap(filtered.get(0), OBF_NAMESPACE);
-                // Copy all members from the primary mapping to the builder, while adding the remaining namespace mappings
-                // We assume all mapping files created by the named mapping file have the same amount of classes based on the implementation
-                primary.getClasses().forEach(cls -> {
-                    // Create new class
-                    IMappingBuilder.IClass newCls = builder.addClass(getNames(map, filtered, cls, IMappingFile::getClass, cls.getMapped()));
-                    // Add all methods
-                    cls.getMethods().forEach(mtd -> newCls.method(mtd.getDescriptor(), getNames(map, filtered, mtd,
-                            (m, name) -> m.getClass(cls.getOriginal()).getMethod(name, mtd.getDescriptor()),
-                            mapMethodNameIncludingRecords(mapper, mtd.getMapped()))));
-                    // Add all fields
-                    cls.getFields().forEach(fd -> newCls.field(getNames(map, filtered, fd,
-                            (m, name) -> m.getClass(cls.getOriginal()).getField(name),
-                            mapper.apply(INameMappingService.Domain.FIELD, fd.getMapped())))
-                        .descriptor(fd.getDescriptor()));
-                });
-                // Add all packages
-                primary.getPackages().forEach(pkg -> builder.addPackage(getNames(map, filtered, pkg, IMappingFile::getPackage, pkg.getOriginal())));
-                this.mappings = builder.build();
-            } else {
-                this.mappings = map;
+            byte[] data = is.readAllBytes();
+
+            if (USE_CACHE) {
+                // the MCP config version identifies the data behind the SRG -> runtime name function
+                cacheKey = MappingCache.createKey(data, FML_NAMESPACE, FMLLoader.versionInfo().mcVersion(), FMLLoader.versionInfo().mcpVersion());
+                cacheFile = FabricLoaderImpl.INSTANCE.getGameDir().resolve(FabricLoaderImpl.CACHE_DIR_NAME).resolve(CACHE_FILE_NAME);
+                INamedMappingFile cached = MappingCache.read(cacheFile, cacheKey);
+
+                if (cached != null) {
+                    Log.debug(LogCategory.MAPPINGS, "Loaded mappings from cache %s", cacheFile);
+                    runtimeMappings = cached;
+                    return cached;
+                }
+            }
+
+            INamedMappingFile map = INamedMappingFile.load(new ByteArrayInputStream(data));
+
+            if (!requiresRuntimeNamespace(map.getNames())) {
+                runtimeMappings = map;
+                writeCache(map);
             }
+
+            return map;
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
-    // See https://github.com/MinecraftForge/ForgeGradle/issues/922
-    private static String mapMethodNameIncludingRecords(BiFunction<INameMappingService.Domain, String, String> mapper, String name) {
-        String mapped = mapper.apply(INameMappingService.Domain.METHOD, name);
-        if (mapped.equals(name)) {
-            mapped = mapper.apply(INameMappingService.Domain.FIELD, name);
+    private INamedMappingFile getRuntimeMappings() {
+        INamedMappingFile ret = runtimeMappings;
+
+        if (ret == null) {
+            synchronized (this) {
+                INamedMappingFile base = getBaseMappings(); // may initialize runtimeMappings
+                ret = runtimeMappings;
+
+                if (ret == null) {
+                    long startTime = System.nanoTime();
+                    ret = runtimeMappings = appendRuntimeNamespace(base);
+                    Log.debug(LogCategory.MAPPINGS, "Added runtime namespace %s to mappings in %.1f ms", FML_NAMESPACE, (System.nanoTime() - startTime) * 1e-6);
+                    writeCache(ret);
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    private void writeCache(INamedMappingFile mappings) {
+        if (cacheFile == null) return;
+
+        try {
+            MappingCache.write(cacheFile, cacheKey, mappings);
+        } catch (IOException e) {
+            Log.warn(LogCategory.MAPPINGS, "Error writing mapping cache " + cacheFile, e);
         }
-        return mapped;
     }
 
     /**
-     * Get all names for a node in named mapping file.
-     * @param map the named mapping file
-     * @param namespaces all mapping files namespaces, excluding the target namespace of node
-     * @param node the node to get all names for
-     * @param resolver returns nodes for remaining mapping pairs in the named mapping files
-     * @param additional additional mapped names to include, useful when appending new namespaces
-     * @return an array of all available mapped names for the given node
+     * If we're in a deobfuscated environment, the deobf named namespace has to be appended to the mappings.
+     * This is done at runtime to comply with mojmap licensing
      */
-    private static String[] getNames(INamedMappingFile map, List<String> namespaces, IMappingFile.INode node, BiFunction<IMappingFile, String, IMappingFile.INode> resolver, String... additional) {
-        String[] arr = new String[map.getNames().size() + additional.length];
-        arr[0] = node.getOriginal();
-        arr[1] = node.getMapped();
-        for (int i = 2; i <= namespaces.size(); i++) {
-            IMappingFile mappingFile = map.getMap(namespaces.get(0), namespaces.get(i - 1));
-            arr[i] = resolver.apply(mappingFile, node.getOriginal()).getMapped();
-        }
-        System.arraycopy(additional, 0, arr, arr.length - additional.length, additional.length);
-        return arr;
+    private static boolean requiresRuntimeNamespace(List<String> names) {
+        return !FML_NAMESPACE.equals(OBF_NAMESPACE) && names.contains(OBF_NAMESPACE) && !names.contains(FML_NAMESPACE);
+    }
+
+    private static INamedMappingFile appendRuntimeNamespace(INamedMappingFile map) {
+        // Grab modlauncher service for remapping SRG -> MOJ
+        BiFunction<INameMappingService.Domain, String, String> mapper = FMLLoader.getNameFunction(OBF_NAMESPACE).orElseThrow();
+        // The service loads its names lazily on the first member lookup without synchronization, make sure that happened
+        // before it's called concurrently. Class lookups return the name as-is and don't load anything.
+        mapper.apply(INameMappingService.Domain.METHOD, OBF_NAMESPACE);
+        mapper.apply(INameMappingService.Domain.FIELD, OBF_NAMESPACE);
+
+        return MappingMerger.appendNamespace(map, OBF_NAMESPACE, FML_NAMESPACE, mapper);
     }
 
     public IMappingFile getCurrentMap(String from) {
@@ -127,16 +195,100 @@ public class MappingResolverImpl implements MappingResolver {
     }
 
     public IMappingFile getMap(String from, String to) {
-        return this.mappings.getMap(from, to);
+        Map<String, IMappingFile> targets = this.maps.get(from);
+        IMappingFile ret = targets != null ? targets.get(to) : null;
+
+        return ret != null ? ret : materializeMap(from, to);
+    }
+
+    private synchronized IMappingFile materializeMap(String from, String to) {
+        Map<String, IMappingFile> targets = this.maps.computeIfAbsent(from, k -> new ConcurrentHashMap<>());
+        IMappingFile ret = targets.get(to);
+
+        if (ret == null) {
+            INamedMappingFile base = getBaseMappings();
+            // Only pairs involving the appended runtime namespace require the extended mappings
+            INamedMappingFile named = base.getNames().contains(from) && base.getNames().contains(to) ? base : getRuntimeMappings();
+
+            ret = named.getMap(from, to);
+            targets.put(to, ret);
+        }
+
+        return ret;
     }
 
     public String mapDescriptor(String namespace, String descriptor) {
-        return getCurrentMap(namespace).remapDescriptor(descriptor);
+        Map<String, String> cache = getDescriptorCache(namespace);
+        String ret = cache.get(descriptor);
+
+        if (ret == null) {
+            ret = getCurrentMap(namespace).remapDescriptor(descriptor);
+            memoizeDescriptor(cache, descriptor, ret);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Map multiple field or method descriptors to the mapping currently used at runtime.
+     *
+     * @param namespace the namespace of the provided descriptors
+     * @param descriptors the provided descriptors
+     * @param out the array receiving the mapped descriptors at the same indices, may be {@code descriptors} itself
+     * @throws IllegalArgumentException if {@code out} is shorter than {@code descriptors}
+     */
+    public void mapDescriptors(String namespace, String[] descriptors, String[] out) {
+        if (out.length < descriptors.length) {
+            throw new IllegalArgumentException("Output array is shorter than the descriptor array");
+        }
+
+        Map<String, String> cache = getDescriptorCache(namespace);
+        IMappingFile map = null;
+
+        for (int i = 0; i < descriptors.length; i++) {
+            String descriptor = descriptors[i];
+            String ret = cache.get(descriptor);
+
+            if (ret == null) {
+                if (map == null) map = getCurrentMap(namespace);
+
+                ret = map.remapDescriptor(descriptor);
+                memoizeDescriptor(cache, descriptor, ret);
+            }
+
+            out[i] = ret;
+        }
+    }
+
+    private static void memoizeDescriptor(Map<String, String> cache, String descriptor, String mapped) {
+        // Stop memoizing once full, the descriptors seen first are usually the most common ones
+        if (cache.size() < MAX_DESCRIPTOR_CACHE_SIZE) {
+            cache.put(descriptor, mapped);
+        }
+    }
+
+    private Map<String, String> getDescriptorCache(String namespace) {
+        Map<String, String> ret = descriptorCaches.get(namespace);
+
+        if (ret == null) {
+            ret = descriptorCaches.computeIfAbsent(namespace, k -> new ConcurrentHashMap<>());
+        }
+
+        return ret;
     }
 
     @Override
     public Collection<String> getNamespaces() {
-        return this.mappings.getNames();
+        INamedMappingFile mappings = this.runtimeMappings;
+        if (mappings != null) return mappings.getNames();
+
+        List<String> names = getBaseMappings().getNames();
+        if (!requiresRuntimeNamespace(names)) return names;
+
+        List<String> ret = new ArrayList<>(names);
+        ret.add(FML_NAMESPACE);
+
+        return Collections.unmodifiableList(ret);
     }
 
     @Override
@@ -146,26 +298,94 @@ public class MappingResolverImpl implements MappingResolver {
 
     @Override
     public String mapClassName(String namespace, String className) {
-        return toBinaryName(getCurrentMap(namespace).remapClass(toInternalName(className)));
+        return mapClassName(getIndex(mapIndices, namespace, FML_NAMESPACE), namespace, FML_NAMESPACE, className);
     }
 
     @Override
     public String unmapClassName(String targetNamespace, String className) {
-        return toBinaryName(getMap(FML_NAMESPACE, targetNamespace).remapClass(toInternalName(className)));
+        return mapClassName(getIndex(unmapIndices, FML_NAMESPACE, targetNamespace), FML_NAMESPACE, targetNamespace, className);
+    }
+
+    private String mapClassName(MappingIndex index, String from, String to, String className) {
+        String ret = index.mapClass(className);
+        if (ret != null) return ret;
+
+        // Inner classes without their own entry are still affected by their outer class mapping
+        if (className.indexOf('$') >= 0) return toBinaryName(getMap(from, to).remapClass(toInternalName(className)));
+
+        return className.indexOf('/') >= 0 ? toBinaryName(className) : className;
+    }
+
+    @Override
+    public void mapClassNames(String namespace, String[] classNames, String[] out) {
+        if (out.length < classNames.length) {
+            throw new IllegalArgumentException("Output array is shorter than the class name array");
+        }
+
+        MappingIndex index = getIndex(mapIndices, namespace, FML_NAMESPACE);
+
+        for (int i = 0; i < classNames.length; i++) {
+            out[i] = mapClassName(index, namespace, FML_NAMESPACE, classNames[i]);
+        }
     }
 
     @Override
     public String mapFieldName(String namespace, String owner, String name, String descriptor) {
-        return Optional.ofNullable(getCurrentMap(namespace).getClass(toInternalName(owner)))
-                .map(cls -> cls.remapField(name))
-                .orElse(name);
+        String ret = getIndex(mapIndices, namespace, FML_NAMESPACE).mapField(owner, name);
+
+        return ret != null ? ret : name;
+    }
+
+    @Override
+    public void mapFieldNames(String namespace, String[] owners, String[] names, String[] descriptors, String[] out) {
+        checkMemberArrays(owners, names, descriptors, out);
+
+        MappingIndex index = getIndex(mapIndices, namespace, FML_NAMESPACE);
+
+        for (int i = 0; i < names.length; i++) {
+            String ret = index.mapField(owners[i], names[i]);
+            out[i] = ret != null ? ret : names[i];
+        }
     }
 
     @Override
     public String mapMethodName(String namespace, String owner, String name, String descriptor) {
-        return Optional.ofNullable(getCurrentMap(namespace).getClass(toInternalName(owner)))
-                .map(cls -> cls.remapMethod(name, descriptor))
-                .orElse(name);
+        String ret = getIndex(mapIndices, namespace, FML_NAMESPACE).mapMethod(owner, name, descriptor);
+
+        return ret != null ? ret : name;
+    }
+
+    @Override
+    public void mapMethodNames(String namespace, String[] owners, String[] names, String[] descriptors, String[] out) {
+        checkMemberArrays(owners, names, descriptors, out);
+
+        MappingIndex index = getIndex(mapIndices, namespace, FML_NAMESPACE);
+
+        for (int i = 0; i < names.length; i++) {
+            String ret = index.mapMethod(owners[i], names[i], descriptors[i]);
+            out[i] = ret != null ? ret : names[i];
+        }
+    }
+
+    /**
+     * Get the lookup index for a mapping direction, building it on first use.
+     * Indices are keyed by the namespace on the other side of the runtime namespace.
+     */
+    private MappingIndex getIndex(Map<String, MappingIndex> indices, String from, String to) {
+        String key = from.equals(FML_NAMESPACE) ? to : from;
+        MappingIndex ret = indices.get(key);
+
+        if (ret == null) {
+            ret = indices.computeIfAbsent(key, k -> new MappingIndex(getMap(from, to)));
+        }
+
+        return ret;
+    }
+
+    private static void checkMemberArrays(String[] owners, String[] names, String[] descriptors, String[] out) {
+        if (owners.length < names.length || descriptors.length < names.length || out.length < names.length) {
+            throw new IllegalArgumentException("Owner, descriptor or output array is shorter than the name array");
+        }
     }
 
     private static String toBinaryName(String className) {
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact view of the mods being resolved, identified by their priority.
+ *
+ * <p>The priority is the mod's position in the resolver's sorted candidate list, lower is preferred. Lookups go through
+ * the ordinals assigned by the {@link CandidateIndex} and plain arrays instead of identity maps, parent relations are
+ * kept as priority arrays. The arena is immutable after creation and may be shared by concurrent solver instances.
+ */
+final class CandidateArena {
+	private static final int[] NO_PARENTS = new int[0];
+
+	private final CandidateIndex index;
+	private final ModCandidate[] mods; // by priority
+	private final int[] priorities; // by ordinal, -1 for candidates not being resolved
+	private final int[][] parents; // by priority, parents not being resolved are omitted
+
+	private CandidateArena(CandidateIndex index, ModCandidate[] mods, int[] priorities, int[][] parents) {
+		this.index = index;
+		this.mods = mods;
+		this.priorities = priorities;
+		this.parents = parents;
+	}
+
+	/**
+	 * Create the arena for the given mods, adding them to the index if necessary.
+	 *
+	 * @param allModsSorted mods to be resolved, sorted by priority
+	 */
+	static CandidateArena create(CandidateIndex index, List<ModCandidate> allModsSorted) {
+		for (ModCandidate mod : allModsSorted) {
+			index.add(mod);
+		}
+
+		ModCandidate[] mods = allModsSorted.toArray(new ModCandidate[0]);
+		int[] priorities = new int[index.size()];
+		Arrays.fill(priorities, -1);
+
+		for (int i = 0; i < mods.length; i++) {
+			priorities[index.getOrdinal(mods[i])] = i;
+		}
+
+		int[][] parents = new int[mods.length][];
+		int[] buffer = new int[8];
+
+		for (int i = 0; i < mods.length; i++) {
+			int count = 0;
+
+			for (ModCandidate parent : mods[i].getParentMods()) {
+				int ordinal = index.getOrdinal(parent);
+				int prio = ordinal >= 0 ? priorities[ordinal] : -1;
+				if (prio < 0) continue;
+
+				if (count == buffer.length) buffer = Arrays.copyOf(buffer, count * 2);
+				buffer[count++] = prio;
+			}
+
+			parents[i] = count == 0 ? NO_PARENTS : Arrays.copyOf(buffer, count);
+		}
+
+		return new CandidateArena(index, mods, priorities, parents);
+	}
+
+	CandidateIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Get the number of mods being resolved.
+	 */
+	int getModCount() {
+		return mods.length;
+	}
+
+	ModCandidate getMod(int priority) {
+		return mods[priority];
+	}
+
+	/**
+	 * Get a mod's priority.
+	 *
+	 * @return the priority or -1 if the mod isn't being resolved
+	 */
+	int getPriority(ModCandidate mod) {
+		int ordinal = index.getOrdinal(mod);
+
+		return ordinal >= 0 && ordinal < priorities.length ? priorities[ordinal] : -1;
+	}
+
+	/**
+	 * Get the priorities of a mod's parents that are being resolved, the returned array must not be modified.
+	 */
+	int[] getParents(int priority) {
+		return parents[priority];
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import net.fabricmc.loader.api.metadata.ModDependency;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incrementally built index of mod candidates by id and of the candidates matching each dependency.
+ *
+ * <p>Mod discovery adds candidates as soon as they have been scanned, evaluating all version predicates involving them
+ * while other jars are still being read. Each candidate gets a dense ordinal stored on the candidate itself, the matches
+ * of each dependency are kept as a bit set over these ordinals. A candidate can only be part of one index. The resolver, all solver phases and the result analysis then only have to look up
+ * the precomputed matches.
+ *
+ * <p>The index may contain candidates that end up not being considered by the resolver, e.g. those disabled for the
+ * current environment. Match lookups are only valid for candidates that have been added.
+ */
+public final class CandidateIndex {
+	private final List<ModCandidate> candidates = new ArrayList<>(); // by ordinal
+	private final Map<String, List<ModCandidate>> modsById = new HashMap<>(); // includes provides
+	private final Map<String, List<ModDependency>> depsById = new HashMap<>();
+	private final Map<ModDependency, BitSet> matches = new IdentityHashMap<>();
+
+	/**
+	 * Create an index for the given candidates.
+	 */
+	static CandidateIndex create(Collection<ModCandidate> candidates) {
+		CandidateIndex ret = new CandidateIndex();
+
+		for (ModCandidate mod : candidates) {
+			ret.add(mod);
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Add a candidate, may be called concurrently.
+	 *
+	 * <p>Candidates that have already been added are ignored.
+	 */
+	synchronized void add(ModCandidate mod) {
+		if (getOrdinal(mod) >= 0) return;
+
+		mod.setOrdinal(candidates.size());
+		candidates.add(mod);
+
+		// match the new mod against all known deps for its id and provides
+
+		addMod(mod.getId(), mod);
+
+		for (String provided : mod.getProvides()) {
+			addMod(provided, mod);
+		}
+
+		// match the new mod's deps against all known mods
+
+		for (ModDependency dep : mod.getDependencies()) {
+			if (matches.containsKey(dep)) continue;
+
+			depsById.computeIfAbsent(dep.getModId(), ignore -> new ArrayList<>()).add(dep);
+
+			BitSet depMatches = new BitSet();
+			List<ModCandidate> targets = modsById.get(dep.getModId());
+
+			if (targets != null) {
+				for (ModCandidate target : targets) {
+					if (dep.matches(target.getVersion())) depMatches.set(target.getOrdinal());
+				}
+			}
+
+			matches.put(dep, depMatches);
+		}
+	}
+
+	private void addMod(String id, ModCandidate mod) {
+		modsById.computeIfAbsent(id, ignore -> new ArrayList<>()).add(mod);
+
+		List<ModDependency> deps = depsById.get(id);
+		if (deps == null) return;
+
+		for (ModDependency dep : deps) {
+			if (dep.matches(mod.getVersion())) matches.get(dep).set(mod.getOrdinal());
+		}
+	}
+
+	/**
+	 * Get the number of candidates, which bounds all ordinals.
+	 */
+	synchronized int size() {
+		return candidates.size();
+	}
+
+	/**
+	 * Get a candidate's ordinal in this index.
+	 *
+	 * @return the ordinal or -1 if the candidate hasn't been added
+	 */
+	int getOrdinal(ModCandidate mod) {
+		int ret = mod.getOrdinal();
+
+		return ret >= 0 && ret < candidates.size() && candidates.get(ret) == mod ? ret : -1;
+	}
+
+	/**
+	 * Determine whether a mod satisfies a dependency's version requirements, using the precomputed result if available.
+	 *
+	 * <p>Must only be called once no more candidates are being added.
+	 */
+	boolean matches(ModDependency dep, DomainObject.Mod mod) {
+		if (mod instanceof ModCandidate) {
+			BitSet depMatches = matches.get(dep);
+			int ordinal = getOrdinal((ModCandidate) mod);
+			if (depMatches != null && ordinal >= 0) return depMatches.get(ordinal);
+		}
+
+		return dep.matches(mod.getVersion());
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent index of mod jar contents relevant to discovery, allowing unchanged jars to be processed without opening them.
+ *
+ * <p>Root jars are keyed by their path and validated against their size and modification time. Each entry stores the raw
+ * {@code fabric.mod.json} content and the tree of nested jars that were found to be relevant, nested jars are identified
+ * by the same CRC+size hash used for JiJ deduplication.
+ *
+ * <p>The metadata is stored raw and parsed again on use, so version and dependency overrides or parser changes can't get
+ * out of sync with the index.
+ */
+final class DiscoveryIndex {
+	static final int MAGIC = 0x46444958; // FDIX
+	static final int FORMAT_VERSION = 2;
+
+	private final String key;
+	private final Map<String, RootEntry> existing;
+	private final Map<String, RootEntry> current = new ConcurrentHashMap<>();
+	private volatile boolean modified;
+
+	private DiscoveryIndex(String key, Map<String, RootEntry> existing) {
+		this.key = key;
+		this.existing = existing;
+	}
+
+	/**
+	 * Load the index from disk.
+	 *
+	 * @param file index file
+	 * @param key key the stored index has to match to be used, covering any state that affects what is being recorded
+	 * @param rescan whether to ignore the existing index
+	 */
+	static DiscoveryIndex load(Path file, String key, boolean rescan) {
+		if (rescan) return new DiscoveryIndex(key, Collections.emptyMap());
+
+		try (DataInputStream is = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (is.readInt() != MAGIC || is.readInt() != FORMAT_VERSION || !readString(is).equals(key)) {
+				Log.debug(LogCategory.DISCOVERY, "Discarding outdated discovery index %s", file);
+				return new DiscoveryIndex(key, Collections.emptyMap());
+			}
+
+			int count = is.readInt();
+			Map<String, RootEntry> entries = new HashMap<>(count * 2);
+
+			for (int i = 0; i < count; i++) {
+				String path = readString(is);
+				long size = is.readLong();
+				long lastModified = is.readLong();
+
+				entries.put(path, new RootEntry(size, lastModified, readEntry(is)));
+			}
+
+			return new DiscoveryIndex(key, entries);
+		} catch (NoSuchFileException e) {
+			return new DiscoveryIndex(key, Collections.emptyMap());
+		} catch (IOException e) {
+			Log.warn(LogCategory.DISCOVERY, "Error reading discovery index " + file, e);
+			return new DiscoveryIndex(key, Collections.emptyMap());
+		}
+	}
+
+	/**
+	 * Get the entry for a root jar if it is unchanged since it was indexed.
+	 *
+	 * @param path normalized jar path
+	 * @param attrs current attributes of the jar
+	 * @return the entry or null if there is none or it is outdated
+	 */
+	Entry get(Path path, BasicFileAttributes attrs) {
+		String key = path.toString();
+		RootEntry ret = existing.get(key);
+		if (ret == null || ret.size != attrs.size() || ret.lastModified != attrs.lastModifiedTime().toMillis()) return null;
+
+		current.put(key, ret);
+
+		return ret.entry;
+	}
+
+	/**
+	 * Record the entry for a root jar.
+	 *
+	 * @param path normalized jar path
+	 * @param attrs attributes of the jar as observed before it was read
+	 * @param entry the entry to record
+	 */
+	void put(Path path, BasicFileAttributes attrs, Entry entry) {
+		current.put(path.toString(), new RootEntry(attrs.size(), attrs.lastModifiedTime().toMillis(), entry));
+		modified = true;
+	}
+
+	/**
+	 * Determine whether saving would change the stored index, which is the case if entries were recorded or not all
+	 * existing entries have been used.
+	 */
+	boolean isModified() {
+		return modified || current.size() != existing.size();
+	}
+
+	/**
+	 * Write all entries that have been used or recorded since loading to disk, dropping any others.
+	 */
+	void save(Path file) throws IOException {
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		Path tmpFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+
+		try {
+			try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+				os.writeInt(MAGIC);
+				os.writeInt(FORMAT_VERSION);
+				writeString(key, os);
+				os.writeInt(current.size());
+
+				for (Map.Entry<String, RootEntry> e : current.entrySet()) {
+					RootEntry entry = e.getValue();
+
+					writeString(e.getKey(), os);
+					os.writeLong(entry.size);
+					os.writeLong(entry.lastModified);
+					writeEntry(entry.entry, os);
+				}
+			}
+
+			Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmpFile);
+		}
+	}
+
+	private static Entry readEntry(DataInputStream is) throws IOException {
+		String localPath = readString(is);
+		long hash = is.readLong();
+		int metadataLen = is.readInt();
+		byte[] metadata = metadataLen == -1 ? null : readBytes(is, metadataLen);
+
+		int nestedCount = is.readInt();
+		if (nestedCount < 0) throw new IOException("invalid nested jar count: "+nestedCount);
+
+		List<Entry> nested;
+
+		if (nestedCount == 0) {
+			nested = Collections.emptyList();
+		} else {
+			nested = new ArrayList<>(nestedCount);
+
+			for (int i = 0; i < nestedCount; i++) {
+				nested.add(readEntry(is));
+			}
+		}
+
+		return new Entry(localPath, hash, metadata, nested);
+	}
+
+	private static void writeEntry(Entry entry, DataOutputStream os) throws IOException {
+		writeString(entry.localPath, os);
+		os.writeLong(entry.hash);
+
+		if (entry.metadata == null) {
+			os.writeInt(-1);
+		} else {
+			os.writeInt(entry.metadata.length);
+			os.write(entry.metadata);
+		}
+
+		os.writeInt(entry.nested.size());
+
+		for (Entry child : entry.nested) {
+			writeEntry(child, os);
+		}
+	}
+
+	/**
+	 * Read a string stored as its length followed by its UTF-8 bytes, unlike readUTF this isn't limited to 64 KiB.
+	 */
+	private static String readString(DataInputStream is) throws IOException {
+		return new String(readBytes(is, is.readInt()), StandardCharsets.UTF_8);
+	}
+
+	private static byte[] readBytes(DataInputStream is, int len) throws IOException {
+		if (len < 0) throw new IOException("invalid length: "+len);
+
+		byte[] ret = new byte[len];
+		is.readFully(ret);
+
+		return ret;
+	}
+
+	private static void writeString(String str, DataOutputStream os) throws IOException {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		os.writeInt(bytes.length);
+		os.write(bytes);
+	}
+
+	static final class Entry {
+		final String localPath;
+		final long hash;
+		final byte[] metadata; // raw fabric.mod.json, null if absent
+		final List<Entry> nested;
+
+		Entry(String localPath, long hash, byte[] metadata, List<Entry> nested) {
+			this.localPath = localPath;
+			this.hash = hash;
+			this.metadata = metadata;
+			this.nested = nested;
+		}
+	}
+
+	private static final class RootEntry {
+		final long size;
+		final long lastModified;
+		final Entry entry;
+
+		RootEntry(long size, long lastModified, Entry entry) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.entry = entry;
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import net.fabricmc.loader.impl.util.SystemProperties;
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared executors for mod discovery, reused across discovery runs.
+ *
+ * <p>Jar scanning is dominated by blocking file reads and runs on a dedicated I/O executor, which uses virtual threads
+ * if enabled and supported by the runtime. Metadata parsing and solving independent parts of the mod resolution are
+ * handed off to a separate CPU bound pool. Both are limited to {@link SystemProperties#DISCOVERY_MAX_PARALLELISM}
+ * concurrent tasks, the CPU pool additionally to the number of available processors. Idle platform threads are released
+ * after a while.
+ */
+final class DiscoveryScheduler {
+	private static final long KEEP_ALIVE_SECONDS = 30;
+
+	private static volatile DiscoveryScheduler instance;
+
+	private final ExecutorService ioExecutor;
+	private final Semaphore ioPermits; // bounds virtual thread concurrency, null for the bounded platform thread pool
+	private final ForkJoinPool cpuPool;
+
+	static DiscoveryScheduler get() {
+		DiscoveryScheduler ret = instance;
+
+		if (ret == null) {
+			synchronized (DiscoveryScheduler.class) {
+				ret = instance;
+
+				if (ret == null) {
+					instance = ret = new DiscoveryScheduler();
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private DiscoveryScheduler() {
+		int processors = Runtime.getRuntime().availableProcessors();
+		int parallelism = Integer.getInteger(SystemProperties.DISCOVERY_MAX_PARALLELISM, processors);
+		if (parallelism <= 0) parallelism = processors;
+
+		ExecutorService virtualExecutor = Boolean.getBoolean(SystemProperties.DISCOVERY_VIRTUAL_THREADS) ? createVirtualThreadExecutor() : null;
+
+		if (virtualExecutor != null) {
+			ioExecutor = virtualExecutor;
+			ioPermits = new Semaphore(parallelism);
+		} else {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), new DaemonThreadFactory("Fabric Discovery I/O"));
+			executor.allowCoreThreadTimeOut(true);
+			ioExecutor = executor;
+			ioPermits = null;
+		}
+
+		cpuPool = new ForkJoinPool(Math.min(parallelism, processors));
+
+		Log.debug(LogCategory.DISCOVERY, "Discovery scheduler using %d %s I/O threads, %d CPU threads",
+				parallelism, virtualExecutor != null ? "virtual" : "platform", cpuPool.getParallelism());
+	}
+
+	/**
+	 * Get the executor for tasks doing blocking I/O.
+	 */
+	Executor getIoExecutor() {
+		if (ioPermits == null) return ioExecutor;
+
+		return task -> ioExecutor.execute(() -> {
+			ioPermits.acquireUninterruptibly();
+
+			try {
+				task.run();
+			} finally {
+				ioPermits.release();
+			}
+		});
+	}
+
+	/**
+	 * Run a CPU bound task on the CPU pool and wait for its result.
+	 *
+	 * <p>Tasks may not wait on I/O tasks, which guarantees progress with both pools being bounded.
+	 */
+	<T, E extends Exception> T compute(CpuTask<T, E> task) throws E {
+		if (ForkJoinTask.getPool() == cpuPool) return task.call(); // already on the CPU pool
+
+		return join(cpuPool.submit(() -> task.call()), task);
+	}
+
+	/**
+	 * Run CPU bound tasks concurrently on the CPU pool and wait for all results.
+	 *
+	 * @return the task results in task order
+	 */
+	<T, E extends Exception> List<T> computeAll(List<? extends CpuTask<T, E>> tasks) throws E {
+		List<T> ret = new ArrayList<>(tasks.size());
+
+		if (ForkJoinTask.getPool() == cpuPool) { // already on the CPU pool
+			for (CpuTask<T, E> task : tasks) {
+				ret.add(task.call());
+			}
+
+			return ret;
+		}
+
+		List<ForkJoinTask<T>> futures = new ArrayList<>(tasks.size());
+
+		for (CpuTask<T, E> task : tasks) {
+			futures.add(cpuPool.submit(() -> task.call()));
+		}
+
+		for (int i = 0; i < futures.size(); i++) {
+			ret.add(join(futures.get(i), tasks.get(i)));
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Get the number of tasks the CPU pool runs concurrently.
+	 */
+	int getCpuParallelism() {
+		return cpuPool.getParallelism();
+	}
+
+	private static <T, E extends Exception> T join(ForkJoinTask<T> future, CpuTask<T, E> task) throws E {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else {
+				throw DiscoveryScheduler.<E>uncheckedCast(cause);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("interrupted waiting for "+task, e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E extends Exception> E uncheckedCast(Throwable t) {
+		return (E) t;
+	}
+
+	private static ExecutorService createVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			Log.warn(LogCategory.DISCOVERY, "Virtual threads were requested through %s, but aren't supported by this Java version, using platform threads",
+					SystemProperties.DISCOVERY_VIRTUAL_THREADS);
+			return null;
+		}
+	}
+
+	interface CpuTask<T, E extends Exception> {
+		T call() throws E;
+	}
+
+	private static final class DaemonThreadFactory implements ThreadFactory {
+		private final String name;
+		private final AtomicInteger counter = new AtomicInteger();
+
+		DaemonThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread ret = new Thread(r, name+" #"+counter.incrementAndGet());
+			ret.setDaemon(true);
+
+			return ret;
+		}
+	}
+}
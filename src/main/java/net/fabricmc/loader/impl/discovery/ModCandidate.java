@@ -24,18 +24,15 @@ import net.fabricmc.loader.impl.metadata.DependencyOverrides;
 import net.fabricmc.loader.impl.metadata.LoaderModMetadata;
 import net.fabricmc.loader.impl.metadata.VersionOverrides;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.lang.ref.SoftReference;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 
 public final class ModCandidate implements DomainObject.Mod {
 	static final Comparator<ModCandidate> ID_VERSION_COMPARATOR = new Comparator<ModCandidate>() {
@@ -56,7 +53,7 @@ public final class ModCandidate implements DomainObject.Mod {
 	private final Collection<ModCandidate> nestedMods;
 	private final Collection<ModCandidate> parentMods;
 	private int minNestLevel;
-	private SoftReference<ByteBuffer> dataRef;
+	private int ordinal = -1;
 
 	public static ModCandidate createBuiltin(BuiltinMod mod, VersionOverrides versionOverrides, DependencyOverrides depOverrides) {
 		LoaderModMetadata metadata = new BuiltinMetadataWrapper(mod.metadata);
@@ -74,10 +71,8 @@ public final class ModCandidate implements DomainObject.Mod {
 		return new ModCandidate(null, localPath, hash, metadata, requiresRemap, nestedMods);
 	}
 
-	static long hash(ZipEntry entry) {
-		if (entry.getSize() < 0 || entry.getCrc() < 0) throw new IllegalArgumentException("uninitialized entry: "+entry);
-
-		return entry.getCrc() << 32 | entry.getSize();
+	static long hash(long crc, long size) {
+		return crc << 32 | size;
 	}
 
 	private static long getSize(long hash) {
@@ -204,12 +199,23 @@ public final class ModCandidate implements DomainObject.Mod {
 		return minNestLevel == 0;
 	}
 
+	/**
+	 * Get the dense ordinal assigned by {@link CandidateIndex}, -1 if none.
+	 */
+	int getOrdinal() {
+		return ordinal;
+	}
+
+	void setOrdinal(int ordinal) {
+		this.ordinal = ordinal;
+	}
+
 	void setData(ByteBuffer data) {
-		this.dataRef = new SoftReference<>(data);
+		NestedJarCache.get().put(this, data);
 	}
 
 	void clearCachedData() {
-		this.dataRef = null;
+		NestedJarCache.get().remove(this);
 	}
 
 	public Path copyToDir(Path outputDir, boolean temp) throws IOException {
@@ -267,15 +273,16 @@ public final class ModCandidate implements DomainObject.Mod {
 	private static final Pattern FILE_NAME_SANITIZING_PATTERN = Pattern.compile("[^\\w\\.\\-\\+]+");
 
 	private void copyToFile(Path out) throws IOException {
-		SoftReference<ByteBuffer> dataRef = this.dataRef;
+		ByteBuffer data = NestedJarCache.get().get(this);
 
-		if (dataRef != null) {
-			ByteBuffer data = dataRef.get();
-
-			if (data != null) {
-				Files.copy(new ByteArrayInputStream(data.array(), data.arrayOffset() + data.position(), data.arrayOffset() + data.limit()), out, StandardCopyOption.REPLACE_EXISTING);
-				return;
+		if (data != null) {
+			try (FileChannel channel = FileChannel.open(out, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				while (data.hasRemaining()) {
+					channel.write(data);
+				}
 			}
+
+			return;
 		}
 
 		if (paths != null) {
@@ -288,42 +295,25 @@ public final class ModCandidate implements DomainObject.Mod {
 
 		ModCandidate parent = getBestSourcingParent();
 
-		if (parent.paths != null) {
-			if (parent.paths.size() != 1) throw new UnsupportedOperationException("multiple parent paths for "+this);
+		try (ZipReader zip = parent.openZip()) {
+			ZipReader.Entry entry = zip.getEntry(localPath);
+			if (entry == null) throw new IOException(String.format("can't find nested mod %s in its parent mod %s", this, parent));
 
-			try (ZipFile zf = new ZipFile(parent.paths.get(0).toFile())) {
-				ZipEntry entry = zf.getEntry(localPath);
-				if (entry == null) throw new IOException(String.format("can't find nested mod %s in its parent mod %s", this, parent));
-
-				Files.copy(zf.getInputStream(entry), out);
-			}
-		} else {
-			ByteBuffer data = parent.getData();
-
-			try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(data.array(), data.arrayOffset() + data.position(), data.arrayOffset() + data.limit()))) {
-				ZipEntry entry = null;
-
-				while ((entry = zis.getNextEntry()) != null) {
-					if (entry.getName().equals(localPath)) {
-						Files.copy(zis, out);
-						return;
-					}
+			if (entry.isStored()) { // copy directly from the parent's file or buffer
+				try (FileChannel channel = FileChannel.open(out, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+					zip.transferStoredData(entry, channel);
+				}
+			} else {
+				try (InputStream is = zip.getInputStream(entry)) {
+					Files.copy(is, out);
 				}
 			}
-
-			throw new IOException(String.format("can't find nested mod %s in its parent mod %s", this, parent));
 		}
 	}
 
 	private ByteBuffer getData() throws IOException {
-		SoftReference<ByteBuffer> dataRef = this.dataRef;
-
-		if (dataRef != null) {
-			ByteBuffer ret = dataRef.get();
-			if (ret != null) return ret;
-		}
-
-		ByteBuffer ret;
+		ByteBuffer ret = NestedJarCache.get().get(this);
+		if (ret != null) return ret;
 
 		if (paths != null) {
 			if (paths.size() != 1) throw new UnsupportedOperationException("multiple paths for "+this);
@@ -332,39 +322,35 @@ public final class ModCandidate implements DomainObject.Mod {
 		} else {
 			ModCandidate parent = getBestSourcingParent();
 
-			if (parent.paths != null) {
-				if (parent.paths.size() != 1) throw new UnsupportedOperationException("multiple parent paths for "+this);
-
-				try (ZipFile zf = new ZipFile(parent.paths.get(0).toFile())) {
-					ZipEntry entry = zf.getEntry(localPath);
-					if (entry == null) throw new IOException(String.format("can't find nested mod %s in its parent mod %s", this, parent));
-
-					ret = ModDiscoverer.readMod(zf.getInputStream(entry));
-				}
-			} else {
-				ByteBuffer data = parent.getData();
-				ret = null;
-
-				try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(data.array(), data.arrayOffset() + data.position(), data.arrayOffset() + data.limit()))) {
-					ZipEntry entry = null;
+			try (ZipReader zip = parent.openZip()) {
+				ZipReader.Entry entry = zip.getEntry(localPath);
+				if (entry == null) throw new IOException(String.format("can't find nested mod %s in its parent mod %s", this, parent));
 
-					while ((entry = zis.getNextEntry()) != null) {
-						if (entry.getName().equals(localPath)) {
-							ret = ModDiscoverer.readMod(zis);
-							break;
-						}
+				if (entry.isStored()) {
+					ret = zip.getStoredData(entry);
+				} else {
+					try (InputStream is = zip.getInputStream(entry)) {
+						ret = ModDiscoverer.readMod(is);
 					}
 				}
-
-				if (ret == null) throw new IOException(String.format("can't find nested mod %s in its parent mods %s", this, parent));
 			}
 		}
 
-		this.dataRef = new SoftReference<>(ret);
+		if (paths == null) setData(ret); // parents of further nested mods being extracted
 
 		return ret;
 	}
 
+	private ZipReader openZip() throws IOException {
+		if (paths != null) {
+			if (paths.size() != 1) throw new UnsupportedOperationException("multiple paths for "+this);
+
+			return ZipReader.open(paths.get(0));
+		} else {
+			return new ZipReader(getData());
+		}
+	}
+
 	private ModCandidate getBestSourcingParent() {
 		if (parentMods.isEmpty()) return null;
 
@@ -374,7 +360,7 @@ public final class ModCandidate implements DomainObject.Mod {
 			if (parent.minNestLevel >= minNestLevel) continue;
 
 			if (parent.paths != null && parent.paths.size() == 1
-					|| parent.dataRef != null && parent.dataRef.get() != null) {
+					|| NestedJarCache.get().contains(parent)) {
 				return parent;
 			}
 
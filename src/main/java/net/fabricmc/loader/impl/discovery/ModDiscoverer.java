@@ -35,19 +35,25 @@ import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 
 public final class ModDiscoverer {
+	private static final String INDEX_FILE_NAME = "discovery-index.bin";
+
 	private final VersionOverrides versionOverrides;
 	private final DependencyOverrides depOverrides;
 	private final List<ModCandidateFinder> candidateFinders = new ArrayList<>();
 	private final EnvType envType = FabricLoaderImpl.INSTANCE.getEnvironmentType();
 	private final Map<Long, ModScanTask> jijDedupMap = new ConcurrentHashMap<>(); // avoids reading the same jar twice
 	private final List<NestedModInitData> nestedModInitDatas = Collections.synchronizedList(new ArrayList<>()); // breaks potential cycles from deduplication
+	private final DiscoveryScheduler scheduler = DiscoveryScheduler.get();
+	private final Executor ioExecutor = scheduler.getIoExecutor();
+	private final CandidateIndex candidateIndex = new CandidateIndex(); // filled as scan tasks complete
+	private final Queue<FutureTask<?>> submittedTasks = new ConcurrentLinkedQueue<>(); // root and nested, cancelled together
+	private volatile boolean cancelled;
+	private DiscoveryIndex index;
 
 	public ModDiscoverer(VersionOverrides versionOverrides, DependencyOverrides depOverrides) {
 		this.versionOverrides = versionOverrides;
@@ -59,17 +65,62 @@ public final class ModDiscoverer {
 	}
 
 	public List<ModCandidate> discoverMods(FabricLoaderImpl loader, Map<String, Set<ModCandidate>> envDisabledModsOut) throws ModResolutionException {
+		// share repeated strings and versions between the metadata of all mods parsed by this run
+		MetadataInterner interner = MetadataInterner.open();
+
+		try {
+			return discoverMods0(loader, envDisabledModsOut);
+		} catch (ModResolutionException | RuntimeException e) {
+			NestedJarCache.get().clear(); // nothing is going to be extracted
+			throw e;
+		} finally {
+			interner.close();
+		}
+	}
+
+	/**
+	 * Extract the resolved mods that only exist within other jars to the output directory, assigning their paths.
+	 *
+	 * <p>The nested jar contents retained for the extraction are released afterwards, also if it fails.
+	 */
+	public static void extractNestedMods(Collection<ModCandidate> mods, Path outputDir) throws IOException {
+		try {
+			for (ModCandidate mod : mods) {
+				if (!mod.hasPath() && !mod.isBuiltin()) {
+					mod.setPaths(Collections.singletonList(mod.copyToDir(outputDir, false)));
+				}
+			}
+		} finally {
+			releaseNestedJarData();
+		}
+	}
+
+	/**
+	 * Drop the nested jar contents retained for extracting the selected nested mods.
+	 *
+	 * <p>Called by {@link #extractNestedMods}, resolution failures release them on their own. Callers extracting the mods
+	 * themselves have to call it once done.
+	 */
+	public static void releaseNestedJarData() {
+		NestedJarCache.get().clear();
+	}
+
+	private List<ModCandidate> discoverMods0(FabricLoaderImpl loader, Map<String, Set<ModCandidate>> envDisabledModsOut) throws ModResolutionException {
 		long startTime = System.nanoTime();
-		ForkJoinPool pool = new ForkJoinPool();
+		Path indexFile = loader.getGameDir().resolve(FabricLoaderImpl.CACHE_DIR_NAME).resolve(INDEX_FILE_NAME);
+		index = DiscoveryIndex.load(indexFile, envType.name(), System.getProperty(SystemProperties.DEBUG_DISCOVERY_RESCAN) != null);
+		NestedJarCache.get().clear(); // drop contents from previous discovery runs
 		Set<Path> processedPaths = new HashSet<>(); // suppresses duplicate paths
-		List<Future<ModCandidate>> futures = new ArrayList<>();
+		List<ModScanTask> futures = new ArrayList<>();
 
 		ModCandidateConsumer taskSubmitter = (paths, requiresRemap) -> {
 			if (paths.size() == 1) {
 				Path path = LoaderUtil.normalizeExistingPath(paths.get(0));
 
 				if (processedPaths.add(path)) {
-					futures.add(pool.submit(new ModScanTask(Collections.singletonList(path), requiresRemap)));
+					ModScanTask task = new ModScanTask(Collections.singletonList(path), requiresRemap);
+					submit(task, true);
+					futures.add(task);
 				}
 			} else {
 				List<Path> normalizedPaths = new ArrayList<>(paths.size());
@@ -80,7 +131,9 @@ public final class ModDiscoverer {
 
 				if (!processedPaths.containsAll(normalizedPaths)) {
 					processedPaths.addAll(normalizedPaths);
-					futures.add(pool.submit(new ModScanTask(normalizedPaths, requiresRemap)));
+					ModScanTask task = new ModScanTask(normalizedPaths, requiresRemap);
+					submit(task, true);
+					futures.add(task);
 				}
 			}
 		};
@@ -98,39 +151,35 @@ public final class ModDiscoverer {
 //		}
 
 		// Add the current Java version
-		candidates.add(createJavaMod());
+		ModCandidate javaMod = createJavaMod();
+		candidates.add(javaMod);
+		candidateIndex.add(javaMod);
 
 		ModResolutionException exception = null;
 
 		int timeout = Integer.getInteger(SystemProperties.DEBUG_DISCOVERY_TIMEOUT, 60);
 		if (timeout <= 0) timeout = Integer.MAX_VALUE;
 
-		try {
-			pool.shutdown();
-
-			pool.awaitTermination(timeout, TimeUnit.SECONDS);
-
-			for (Future<ModCandidate> future : futures) {
-				if (!future.isDone()) {
-					throw new TimeoutException();
-				}
+		// the executors are shared, so wait for this run's tasks individually against a common deadline
+		long deadline = startTime + TimeUnit.SECONDS.toNanos(timeout);
 
+		try {
+			for (ModScanTask task : futures) {
 				try {
-					ModCandidate candidate = future.get();
+					ModCandidate candidate = task.await(deadline);
 					if (candidate != null) candidates.add(candidate);
 				} catch (ExecutionException e) {
 					exception = ExceptionUtil.gatherExceptions(e, exception, exc -> new ModResolutionException("Mod discovery failed!", exc));
 				}
 			}
 
-			for (NestedModInitData data : nestedModInitDatas) {
-				for (Future<ModCandidate> future : data.futures) {
-					if (!future.isDone()) {
-						throw new TimeoutException();
-					}
+			// tasks register their nested mod init data before completing, so the list is complete once all tasks in it are
+			for (int i = 0; i < nestedModInitDatas.size(); i++) {
+				NestedModInitData data = nestedModInitDatas.get(i);
 
+				for (ModScanTask task : data.tasks) {
 					try {
-						ModCandidate candidate = future.get();
+						ModCandidate candidate = task.await(deadline);
 						if (candidate != null) data.target.add(candidate);
 					} catch (ExecutionException e) {
 						exception = ExceptionUtil.gatherExceptions(e, exception, exc -> new ModResolutionException("Mod discovery failed!", exc));
@@ -138,17 +187,25 @@ public final class ModDiscoverer {
 				}
 			}
 		} catch (TimeoutException e) {
+			cancelTasks();
+
 			throw new FormattedException("Mod discovery took too long!",
 					"Analyzing the mod folder contents took longer than %d seconds. This may be caused by unusually slow hardware, pathological antivirus interference or other issues. The timeout can be changed with the system property %s (-D%<s=<desired timeout in seconds>).",
 					timeout, SystemProperties.DEBUG_DISCOVERY_TIMEOUT);
 		} catch (InterruptedException e) {
+			cancelTasks();
+
 			throw new FormattedException("Mod discovery interrupted!", e);
 		}
 
+		submittedTasks.clear(); // all completed
+
 		if (exception != null) {
 			throw exception;
 		}
 
+		updateIndex(futures, indexFile);
+
 		// gather all mods (root+nested), initialize parent data
 
 		Set<ModCandidate> ret = Collections.newSetFromMap(new IdentityHashMap<>(candidates.size() * 2));
@@ -176,6 +233,59 @@ public final class ModDiscoverer {
 		return new ArrayList<>(ret);
 	}
 
+	/**
+	 * Track a scan task of this discovery run so it can be cancelled, and optionally run it on the shared IO executor.
+	 */
+	private void submit(ModScanTask task, boolean execute) {
+		submittedTasks.add(task.future);
+
+		if (cancelled) { // tasks still running while cancelling may keep submitting nested jars
+			task.future.cancel(false);
+		} else if (execute) {
+			ioExecutor.execute(task.future);
+		}
+	}
+
+	/**
+	 * Cancel all scan tasks of this discovery run, including nested jar tasks that are queued or running on the shared
+	 * executor and those that get submitted afterwards.
+	 */
+	private void cancelTasks() {
+		cancelled = true;
+		FutureTask<?> task;
+
+		while ((task = submittedTasks.poll()) != null) {
+			task.cancel(true);
+		}
+	}
+
+	private void updateIndex(List<ModScanTask> tasks, Path indexFile) {
+		for (ModScanTask task : tasks) {
+			if (task.indexAttrs == null) continue; // not indexable or taken from the index
+
+			DiscoveryIndex.Entry entry = task.toIndexEntry(Collections.newSetFromMap(new IdentityHashMap<>()));
+			if (entry != null) index.put(task.paths.get(0), task.indexAttrs, entry);
+		}
+
+		if (!index.isModified()) return;
+
+		try {
+			index.save(indexFile);
+		} catch (IOException e) {
+			Log.warn(LogCategory.DISCOVERY, "Error writing discovery index " + indexFile, e);
+		}
+	}
+
+	/**
+	 * Get the index of all discovered candidates, including those disabled for the current environment.
+	 *
+	 * <p>It is complete once {@link #discoverMods} returned and can be passed to the resolver to skip re-evaluating
+	 * dependency version predicates.
+	 */
+	public CandidateIndex getCandidateIndex() {
+		return candidateIndex;
+	}
+
 	private ModCandidate createJavaMod() {
 		ModMetadata metadata = new BuiltinModMetadata.Builder("java", System.getProperty("java.specification.version").replaceFirst("^1\\.", ""))
 				.setName(System.getProperty("java.vm.name"))
@@ -185,33 +295,58 @@ public final class ModDiscoverer {
 		return ModCandidate.createBuiltin(builtinMod, versionOverrides, depOverrides);
 	}
 
-	final class ModScanTask extends RecursiveTask<ModCandidate> {
+	final class ModScanTask {
+		private final FutureTask<ModCandidate> future = new FutureTask<>(this::computeAndIndex);
 		private final List<Path> paths;
 		private final String localPath;
-		private final RewindableInputStream is;
+		private final ByteBuffer data; // nested jar content, stored jars are slices of their parent or read from its file
 		private final long hash;
 		private final boolean requiresRemap;
 		private final List<String> parentPaths;
+		// discovery index state, only accessed after the task completed
+		private DiscoveryIndex.Entry indexEntry; // entry the task was computed from
+		private BasicFileAttributes indexAttrs; // attributes of a freshly scanned root jar, taken before reading it
+		private byte[] metadataBytes;
+		private List<ModScanTask> nestedTasks = Collections.emptyList();
 
 		ModScanTask(List<Path> paths, boolean requiresRemap) {
-			this(paths, null, null, -1, requiresRemap, Collections.emptyList());
+			this(paths, null, null, null, -1, requiresRemap, Collections.emptyList());
 		}
 
-		private ModScanTask(List<Path> paths, String localPath, RewindableInputStream is, long hash,
+		private ModScanTask(List<Path> paths, String localPath, ByteBuffer data, DiscoveryIndex.Entry indexEntry, long hash,
 				boolean requiresRemap, List<String> parentPaths) {
 			this.paths = paths;
 			this.localPath = localPath != null ? localPath : paths.get(0).toString();
-			this.is = is;
+			this.data = data;
+			this.indexEntry = indexEntry;
 			this.hash = hash;
 			this.requiresRemap = requiresRemap;
 			this.parentPaths = parentPaths;
 		}
 
-		@Override
-		protected ModCandidate compute() {
-			if (is != null) { // nested jar
+		private ModCandidate await(long deadline) throws ExecutionException, InterruptedException, TimeoutException {
+			return future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		private ModCandidate computeAndIndex() {
+			ModCandidate ret = compute();
+			if (ret != null) candidateIndex.add(ret); // evaluate its deps while other jars are still being scanned
+
+			return ret;
+		}
+
+		private ModCandidate compute() {
+			if (indexEntry != null) { // nested jar from the discovery index
+				try {
+					return computeIndexed(indexEntry);
+				} catch (ParseMetadataException e) { // already contains all context
+					throw ExceptionUtil.wrap(e);
+				} catch (Throwable t) {
+					throw new RuntimeException(String.format("Error analyzing nested jar %s from %s: %s", localPath, parentPaths, t), t);
+				}
+			} else if (data != null) { // nested jar
 				try {
-					return computeJarStream();
+					return computeJarBuffer();
 				} catch (ParseMetadataException e) { // already contains all context
 					throw ExceptionUtil.wrap(e);
 				} catch (Throwable t) {
@@ -224,6 +359,8 @@ public final class ModDiscoverer {
 
 						if (Files.isDirectory(path)) {
 							candidate = computeDir(path);
+						} else if (paths.size() == 1) {
+							candidate = computeIndexedJarFile(path);
 						} else {
 							candidate = computeJarFile(path);
 						}
@@ -246,143 +383,140 @@ public final class ModDiscoverer {
 			Path modJson = path.resolve("fabric.mod.json");
 			if (!Files.exists(modJson)) return null;
 
-			LoaderModMetadata metadata;
-
-			try (InputStream is = Files.newInputStream(modJson)) {
-				metadata = parseMetadata(is, path.toString());
-			}
+			LoaderModMetadata metadata = parseMetadata(Files.readAllBytes(modJson), path.toString());
 
 			return ModCandidate.createPlain(paths, metadata, requiresRemap, Collections.emptyList());
 		}
 
-		private ModCandidate computeJarFile(Path path) throws IOException, ParseMetadataException {
-			try (ZipFile zf = new ZipFile(path.toFile())) {
-				ZipEntry entry = zf.getEntry("fabric.mod.json");
-				if (entry == null) return null;
+		private ModCandidate computeIndexedJarFile(Path path) throws IOException, ParseMetadataException {
+			BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+			DiscoveryIndex.Entry entry = index.get(path, attrs);
 
-				LoaderModMetadata metadata;
+			if (entry != null) {
+				indexEntry = entry;
+				return computeIndexed(entry);
+			}
 
-				try (InputStream is = zf.getInputStream(entry)) {
-					metadata = parseMetadata(is, localPath);
-				}
+			ModCandidate ret = computeJarFile(path);
+			indexAttrs = attrs;
 
-				if (!metadata.loadsInEnvironment(envType)) {
-					return ModCandidate.createPlain(paths, metadata, requiresRemap, Collections.emptyList());
-				}
+			return ret;
+		}
 
-				List<ModScanTask> nestedModTasks;
+		private ModCandidate computeIndexed(DiscoveryIndex.Entry entry) throws IOException, ParseMetadataException {
+			if (entry.metadata == null) return null;
 
-				if (metadata.getJars().isEmpty()) {
-					nestedModTasks = Collections.emptyList();
-				} else {
-					Set<NestedJarEntry> nestedJarPaths = new HashSet<>(metadata.getJars());
-
-					nestedModTasks = computeNestedMods(new ZipEntrySource() {
-						@Override
-						public ZipEntry getNextEntry() throws IOException {
-							while (jarIt.hasNext()) {
-								NestedJarEntry jar = jarIt.next();
-								ZipEntry ret = zf.getEntry(jar.getFile());
-
-								if (isValidNestedJarEntry(ret)) {
-									currentEntry = ret;
-									jarIt.remove();
-									return ret;
-								}
-							}
+			// the index skips the zip I/O only, parsing applies the current overrides and environment checks
+			LoaderModMetadata metadata = parseMetadata(entry.metadata, localPath);
+			List<ModCandidate> nestedMods;
 
-							currentEntry = null;
-							return null;
-						}
+			if (!metadata.loadsInEnvironment(envType) || entry.nested.isEmpty()) {
+				nestedMods = Collections.emptyList();
+			} else {
+				Iterator<DiscoveryIndex.Entry> it = entry.nested.iterator();
 
-						@Override
-						public RewindableInputStream getInputStream() throws IOException {
-							try (InputStream is = zf.getInputStream(currentEntry)) {
-								return new RewindableInputStream(is);
-							}
-						}
+				List<ModScanTask> nestedModTasks = computeNestedMods(new NestedJarSource() {
+					@Override
+					public boolean next() {
+						if (!it.hasNext()) return false;
 
-						private final Iterator<NestedJarEntry> jarIt = nestedJarPaths.iterator();
-						private ZipEntry currentEntry;
-					});
+						current = it.next();
+						return true;
+					}
 
-					if (!nestedJarPaths.isEmpty() && FabricLoaderImpl.INSTANCE.isDevelopmentEnvironment()) {
-						Log.warn(LogCategory.METADATA, "Mod %s %s references missing nested jars: %s", metadata.getId(), metadata.getVersion(), nestedJarPaths);
+					@Override
+					public long getHash() {
+						return current.hash;
 					}
-				}
 
-				List<ModCandidate> nestedMods;
+					@Override
+					public ModScanTask createTask(List<String> parentPaths) {
+						return new ModScanTask(null, current.localPath, null, current, current.hash, requiresRemap, parentPaths);
+					}
 
-				if (nestedModTasks.isEmpty()) {
-					nestedMods = Collections.emptyList();
-				} else {
-					nestedMods = new ArrayList<>();
-					nestedModInitDatas.add(new NestedModInitData(nestedModTasks, nestedMods));
-				}
+					private DiscoveryIndex.Entry current;
+				});
 
+				nestedMods = new ArrayList<>();
+				nestedModInitDatas.add(new NestedModInitData(nestedModTasks, nestedMods));
+			}
+
+			if (paths != null) {
 				return ModCandidate.createPlain(paths, metadata, requiresRemap, nestedMods);
+			} else { // the jar content will be read from the parent on demand
+				return ModCandidate.createNested(localPath, hash, metadata, requiresRemap, nestedMods);
 			}
 		}
 
-		private ModCandidate computeJarStream() throws IOException, ParseMetadataException {
-			LoaderModMetadata metadata = null;
-			ZipEntry entry;
-
-			try (ZipInputStream zis = new ZipInputStream(is)) {
-				while ((entry = zis.getNextEntry()) != null) {
-					if (entry.getName().equals("fabric.mod.json")) {
-						metadata = parseMetadata(zis, localPath);
-						break;
-					}
-				}
+		private ModCandidate computeJarFile(Path path) throws IOException, ParseMetadataException {
+			try (ZipReader zip = ZipReader.open(path)) {
+				return computeJar(zip);
 			}
+		}
+
+		private ModCandidate computeJarBuffer() throws IOException, ParseMetadataException {
+			return computeJar(new ZipReader(data));
+		}
 
-			if (metadata == null) return null;
+		private ModCandidate computeJar(ZipReader zip) throws IOException, ParseMetadataException {
+			ZipReader.Entry entry = zip.getEntry("fabric.mod.json");
+			if (entry == null) return null;
 
-			if (!metadata.loadsInEnvironment(envType)) {
-				return ModCandidate.createNested(localPath, hash, metadata, requiresRemap, Collections.emptyList());
+			try (InputStream is = zip.getInputStream(entry)) {
+				metadataBytes = is.readAllBytes();
 			}
 
-			Collection<NestedJarEntry> nestedJars = metadata.getJars();
+			LoaderModMetadata metadata = parseMetadata(metadataBytes, localPath);
+
+			boolean enabled = metadata.loadsInEnvironment(envType);
 			List<ModScanTask> nestedModTasks;
 
-			if (nestedJars.isEmpty()) {
+			if (!enabled || metadata.getJars().isEmpty()) {
 				nestedModTasks = Collections.emptyList();
 			} else {
-				Set<String> nestedJarPaths = new HashSet<>(nestedJars.size());
-
-				for (NestedJarEntry nestedJar : nestedJars) {
-					nestedJarPaths.add(nestedJar.getFile());
-				}
+				Set<NestedJarEntry> nestedJarPaths = new HashSet<>(metadata.getJars());
+
+				nestedModTasks = computeNestedMods(new NestedJarSource() {
+					@Override
+					public boolean next() throws IOException {
+						while (jarIt.hasNext()) {
+							NestedJarEntry jar = jarIt.next();
+							ZipReader.Entry ret = zip.getEntry(jar.getFile());
+
+							if (isValidNestedJarEntry(ret)) {
+								currentEntry = ret;
+								jarIt.remove();
+								return true;
+							}
+						}
 
-				is.rewind();
+						currentEntry = null;
+						return false;
+					}
 
-				try (ZipInputStream zis = new ZipInputStream(is)) {
-					nestedModTasks = computeNestedMods(new ZipEntrySource() {
-						@Override
-						public ZipEntry getNextEntry() throws IOException {
-							if (nestedJarPaths.isEmpty()) return null;
+					@Override
+					public long getHash() {
+						return ModCandidate.hash(currentEntry.crc, currentEntry.size);
+					}
 
-							ZipEntry ret;
+					@Override
+					public ModScanTask createTask(List<String> parentPaths) throws IOException {
+						ByteBuffer data;
 
-							while ((ret = zis.getNextEntry()) != null) {
-								if (isValidNestedJarEntry(ret) && nestedJarPaths.remove(ret.getName())) {
-									is = new RewindableInputStream(zis); // reads the entry, which completes the ZipEntry with any trailing header data
-									return ret;
-								}
+						if (currentEntry.isStored()) { // slice without copying or read without inflating
+							data = zip.getStoredData(currentEntry);
+						} else {
+							try (InputStream is = zip.getInputStream(currentEntry)) {
+								data = readMod(is);
 							}
-
-							return null;
 						}
 
-						@Override
-						public RewindableInputStream getInputStream() throws IOException {
-							return is;
-						}
+						return new ModScanTask(null, currentEntry.name, data, null, getHash(), requiresRemap, parentPaths);
+					}
 
-						private RewindableInputStream is;
-					});
-				}
+					private final Iterator<NestedJarEntry> jarIt = nestedJarPaths.iterator();
+					private ZipReader.Entry currentEntry;
+				});
 
 				if (!nestedJarPaths.isEmpty() && FabricLoaderImpl.INSTANCE.isDevelopmentEnvironment()) {
 					Log.warn(LogCategory.METADATA, "Mod %s %s references missing nested jars: %s", metadata.getId(), metadata.getVersion(), nestedJarPaths);
@@ -398,35 +532,39 @@ public final class ModDiscoverer {
 				nestedModInitDatas.add(new NestedModInitData(nestedModTasks, nestedMods));
 			}
 
+			if (paths != null) {
+				return ModCandidate.createPlain(paths, metadata, requiresRemap, nestedMods);
+			}
+
 			ModCandidate ret = ModCandidate.createNested(localPath, hash, metadata, requiresRemap, nestedMods);
-			ret.setData(is.getBuffer());
+			if (enabled) ret.setData(data);
 
 			return ret;
 		}
 
-		private List<ModScanTask> computeNestedMods(ZipEntrySource entrySource) throws IOException {
+		private List<ModScanTask> computeNestedMods(NestedJarSource jarSource) throws IOException {
 			List<String> parentPaths = new ArrayList<>(this.parentPaths.size() + 1);
 			parentPaths.addAll(this.parentPaths);
 			parentPaths.add(localPath);
 
 			List<ModScanTask> tasks = new ArrayList<>(5);
 			ModScanTask localTask = null;
-			ZipEntry entry;
 
-			while ((entry = entrySource.getNextEntry()) != null) {
-				long hash = ModCandidate.hash(entry);
+			while (jarSource.next()) {
+				long hash = jarSource.getHash();
 				ModScanTask task = jijDedupMap.get(hash);
 
 				if (task == null) {
-					task = new ModScanTask(null, entry.getName(), entrySource.getInputStream(), hash, requiresRemap, parentPaths);
+					task = jarSource.createTask(parentPaths);
 					ModScanTask prev = jijDedupMap.putIfAbsent(hash, task);
 
 					if (prev != null) {
 						task = prev;
 					} else if (localTask == null) { // don't fork first task, leave it for this thread
 						localTask = task;
+						submit(task, false);
 					} else {
-						task.fork();
+						submit(task, true);
 					}
 				}
 
@@ -435,66 +573,50 @@ public final class ModDiscoverer {
 
 			if (tasks.isEmpty()) return Collections.emptyList();
 
-			if (localTask != null) localTask.invoke();
+			if (localTask != null) localTask.future.run();
 
-			return tasks;
-		}
+			nestedTasks = tasks;
 
-		private LoaderModMetadata parseMetadata(InputStream is, String localPath) throws ParseMetadataException {
-			return ModMetadataParser.parseMetadata(is, localPath, parentPaths, versionOverrides, depOverrides, FabricLoaderImpl.INSTANCE.isDevelopmentEnvironment());
+			return tasks;
 		}
-	}
 
-	private static boolean isValidNestedJarEntry(ZipEntry entry) {
-		return entry != null && !entry.isDirectory() && entry.getName().endsWith(".jar");
-	}
+		/**
+		 * Create the discovery index entry describing this task's jar and its nested jars.
+		 *
+		 * @param visiting tasks currently being converted, used to detect cycles from deduplication
+		 * @return the entry, or null if the nested jars form a cycle and can't be indexed
+		 */
+		private DiscoveryIndex.Entry toIndexEntry(Set<ModScanTask> visiting) {
+			if (indexEntry != null) return indexEntry;
+			if (!visiting.add(this)) return null;
 
-	private interface ZipEntrySource {
-		ZipEntry getNextEntry() throws IOException;
-		RewindableInputStream getInputStream() throws IOException;
-	}
+			List<DiscoveryIndex.Entry> nested = new ArrayList<>(nestedTasks.size());
 
-	private static final class RewindableInputStream extends InputStream {
-		private final ByteBuffer buffer;
-		private int pos;
+			for (ModScanTask task : nestedTasks) {
+				DiscoveryIndex.Entry entry = task.toIndexEntry(visiting);
+				if (entry == null) return null;
 
-		RewindableInputStream(InputStream parent) throws IOException { // no parent.close()
-			buffer = readMod(parent);
+				nested.add(entry);
+			}
 
-			assert buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0;
-		}
+			visiting.remove(this);
 
-		public ByteBuffer getBuffer() {
-			return buffer;
+			return new DiscoveryIndex.Entry(localPath, hash, metadataBytes, nested);
 		}
 
-		public void rewind() {
-			pos = 0;
+		private LoaderModMetadata parseMetadata(byte[] data, String localPath) throws ParseMetadataException {
+			return scheduler.compute(() -> ModMetadataParser.parseMetadata(data, localPath, parentPaths, versionOverrides, depOverrides, FabricLoaderImpl.INSTANCE.isDevelopmentEnvironment()));
 		}
+	}
 
-		@Override
-		public int read() throws IOException {
-			if (pos >= buffer.limit()) {
-				return -1;
-			} else {
-				return buffer.get(pos++) & 0xff;
-			}
-		}
-
-		@Override
-		public int read(byte[] b, int off, int len) throws IOException {
-			int rem = buffer.limit() - pos;
-
-			if (rem <= 0) {
-				return -1;
-			} else {
-				len = Math.min(len, rem);
-				System.arraycopy(buffer.array(), pos, b, off, len);
-				pos += len;
+	private static boolean isValidNestedJarEntry(ZipReader.Entry entry) {
+		return entry != null && !entry.isDirectory() && entry.name.endsWith(".jar");
+	}
 
-				return len;
-			}
-		}
+	private interface NestedJarSource {
+		boolean next() throws IOException;
+		long getHash();
+		ModScanTask createTask(List<String> parentPaths) throws IOException;
 	}
 
 	static ByteBuffer readMod(InputStream is) throws IOException {
@@ -525,11 +647,11 @@ public final class ModDiscoverer {
 	}
 
 	private static class NestedModInitData {
-		final List<? extends Future<ModCandidate>> futures;
+		final List<ModScanTask> tasks;
 		final List<ModCandidate> target;
 
-		NestedModInitData(List<? extends Future<ModCandidate>> futures, List<ModCandidate> target) {
-			this.futures = futures;
+		NestedModInitData(List<ModScanTask> tasks, List<ModCandidate> target) {
+			this.tasks = tasks;
 			this.target = target;
 		}
 	}
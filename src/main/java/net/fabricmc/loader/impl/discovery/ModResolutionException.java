@@ -18,6 +18,8 @@ package net.fabricmc.loader.impl.discovery;
 
 @SuppressWarnings("serial")
 public class ModResolutionException extends Exception {
+	private transient ResolutionReport report;
+
 	public ModResolutionException(String s) {
 		super(s);
 	}
@@ -29,4 +31,25 @@ public class ModResolutionException extends Exception {
 	public ModResolutionException(String s, Throwable t) {
 		super(s, t);
 	}
+
+	/**
+	 * Create an exception for a failed resolution, the report is only rendered when the message is requested.
+	 */
+	public ModResolutionException(String s, ResolutionReport report) {
+		super(s);
+
+		this.report = report;
+	}
+
+	/**
+	 * Get the structured failure report, null if the failure didn't come from the resolution itself.
+	 */
+	public ResolutionReport getReport() {
+		return report;
+	}
+
+	@Override
+	public String getMessage() {
+		return report != null ? super.getMessage() + report.render() : super.getMessage();
+	}
 }
@@ -19,28 +19,79 @@ package net.fabricmc.loader.impl.discovery;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.loader.api.metadata.ModDependency;
 import net.fabricmc.loader.api.metadata.ModDependency.Kind;
+import net.fabricmc.loader.impl.FabricLoaderImpl;
 import net.fabricmc.loader.impl.discovery.ModSolver.InactiveReason;
 import net.fabricmc.loader.impl.metadata.ModDependencyImpl;
+import net.fabricmc.loader.impl.util.SystemProperties;
 import net.fabricmc.loader.impl.util.log.Log;
 import net.fabricmc.loader.impl.util.log.LogCategory;
 import org.sat4j.specs.ContradictionException;
 import org.sat4j.specs.TimeoutException;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
 
 public class ModResolver {
+	private static final String CACHE_FILE_NAME = "resolution-cache.bin";
+	private static final boolean USE_CACHE = System.getProperty(SystemProperties.DISABLE_RESOLUTION_CACHE) == null;
+
+	private static volatile ResolutionMetrics lastMetrics;
+
 	public static List<ModCandidate> resolve(Collection<ModCandidate> candidates, EnvType envType, Map<String, Set<ModCandidate>> envDisabledMods) throws ModResolutionException {
+		return resolve(candidates, envType, envDisabledMods, null);
+	}
+
+	/**
+	 * Resolve the candidates, reusing the dependency matches already computed during discovery.
+	 *
+	 * @param index candidate index covering all candidates and env disabled mods, usually {@link ModDiscoverer#getCandidateIndex()},
+	 *              or null to build one here
+	 */
+	public static List<ModCandidate> resolve(Collection<ModCandidate> candidates, EnvType envType, Map<String, Set<ModCandidate>> envDisabledMods,
+			CandidateIndex index) throws ModResolutionException {
+		return resolve(candidates, envType, envDisabledMods, index, new ResolutionMetrics());
+	}
+
+	/**
+	 * Resolve the candidates, recording timings and solver statistics.
+	 *
+	 * @param metrics metrics object to record into, also available through {@link #getLastMetrics()} afterwards
+	 */
+	public static List<ModCandidate> resolve(Collection<ModCandidate> candidates, EnvType envType, Map<String, Set<ModCandidate>> envDisabledMods,
+			CandidateIndex index, ResolutionMetrics metrics) throws ModResolutionException {
 		long startTime = System.nanoTime();
-		List<ModCandidate> result = findCompatibleSet(candidates, envType, envDisabledMods);
 
-		long endTime = System.nanoTime();
-		Log.debug(LogCategory.RESOLUTION, "Mod resolution time: %.1f ms", (endTime - startTime) * 1e-6);
+		try {
+			if (index == null) index = CandidateIndex.create(candidates);
+
+			return findCompatibleSet(candidates, envType, envDisabledMods, index, metrics);
+		} catch (ModResolutionException | RuntimeException e) {
+			NestedJarCache.get().clear(); // nothing is going to be extracted
+			throw e;
+		} finally {
+			metrics.setTotalTime(startTime);
+			lastMetrics = metrics;
+
+			Log.debug(LogCategory.RESOLUTION, "Mod resolution time: %.1f ms", metrics.getTotalTime() * 1e-6);
+			Log.debug(LogCategory.RESOLUTION, "Mod resolution metrics: %s", metrics);
+		}
+	}
 
-		return result;
+	/**
+	 * Get the metrics of the most recent resolution, null if none ran yet.
+	 */
+	public static ResolutionMetrics getLastMetrics() {
+		return lastMetrics;
 	}
 
-	private static List<ModCandidate> findCompatibleSet(Collection<ModCandidate> candidates, EnvType envType, Map<String, Set<ModCandidate>> envDisabledMods) throws ModResolutionException {
+	private static List<ModCandidate> findCompatibleSet(Collection<ModCandidate> candidates, EnvType envType, Map<String, Set<ModCandidate>> envDisabledMods,
+			CandidateIndex index, ResolutionMetrics metrics) throws ModResolutionException {
 		// sort all mods by priority
 
 		List<ModCandidate> allModsSorted = new ArrayList<>(candidates);
@@ -59,6 +110,8 @@ public class ModResolver {
 			}
 		}
 
+		metrics.setCandidates(allModsSorted.size(), modsById);
+
 		// soften positive deps from schema 0 or 1 mods on mods that are present but disabled for the current env
 		// this is a workaround necessary due to many mods declaring deps that are unsatisfiable in some envs and loader before 0.12x not verifying them properly
 
@@ -74,7 +127,7 @@ public class ModResolver {
 				if (disabledMatches == null) continue; // no disabled id matches
 
 				for (ModCandidate m : disabledMatches) {
-					if (dep.matches(m.getVersion())) { // disabled version match -> remove dep
+					if (index.matches(dep, m)) { // disabled version match -> remove dep
 						((ModDependencyImpl) dep).setKind(Kind.SUGGESTS);
 						break;
 					}
@@ -113,15 +166,56 @@ public class ModResolver {
 			preselectMod(mod, allModsSorted, modsById, selectedMods, uniqueSelectedMods);
 		}
 
-		// solve
+		// the arena's priorities are indices into allModsSorted, so it has to be created after removing preselected mods
 
-		ModSolver.Result result;
+		CandidateArena arena = CandidateArena.create(index, allModsSorted);
 
-		try {
-			result = ModSolver.solve(allModsSorted, modsById,
-					selectedMods, uniqueSelectedMods);
-		} catch (ContradictionException | TimeoutException e) {
-			throw new ModResolutionException("Solving failed", e);
+		// solve, trying the greedy selection and the cached result for an unchanged solver input first
+
+		ModSolver.Result result = null;
+		ResolutionCache cache = null;
+
+		long startTime = System.nanoTime();
+		boolean greedy = ModSolver.solveGreedy(allModsSorted, modsById, arena, selectedMods, uniqueSelectedMods);
+		metrics.addTime(ResolutionMetrics.Phase.GREEDY, startTime);
+
+		if (greedy) {
+			Log.debug(LogCategory.RESOLUTION, "Using greedy resolution result");
+			metrics.setOutcome(ResolutionMetrics.Outcome.GREEDY);
+			result = ModSolver.Result.createSuccess();
+		} else if (USE_CACHE) {
+			startTime = System.nanoTime();
+			cache = ResolutionCache.create(getCacheFile(), envType, allModsSorted, uniqueSelectedMods);
+
+			if (cache.replay(selectedMods, uniqueSelectedMods, index)) {
+				Log.debug(LogCategory.RESOLUTION, "Using cached resolution result");
+				metrics.setOutcome(ResolutionMetrics.Outcome.CACHED);
+				result = ModSolver.Result.createSuccess();
+			}
+
+			metrics.addTime(ResolutionMetrics.Phase.CACHE, startTime);
+		}
+
+		if (result == null) {
+			int preselectedCount = uniqueSelectedMods.size();
+
+			try {
+				result = ModSolver.solve(allModsSorted, modsById, arena,
+						selectedMods, uniqueSelectedMods, metrics);
+			} catch (ContradictionException e) {
+				metrics.setOutcome(ResolutionMetrics.Outcome.FAILED);
+				throw new ModResolutionException("Solving failed", e);
+			} catch (TimeoutException e) {
+				metrics.setOutcome(ResolutionMetrics.Outcome.FAILED);
+				throw new ModResolutionException(String.format("Solving exceeded the solver limit, it can be raised through %s or %s",
+						SystemProperties.DEBUG_RESOLUTION_TIMEOUT, SystemProperties.DEBUG_RESOLUTION_CONFLICT_BUDGET), e);
+			}
+
+			if (result.success && cache != null) {
+				startTime = System.nanoTime();
+				cache.save(uniqueSelectedMods.subList(preselectedCount, uniqueSelectedMods.size()));
+				metrics.addTime(ResolutionMetrics.Phase.CACHE, startTime);
+			}
 		}
 
 		if (!result.success) {
@@ -145,8 +239,10 @@ public class ModResolver {
 				}
 			}
 
-			throw new ModResolutionException("Some of your mods are incompatible with the game or each other!%s",
-					ResultAnalyzer.gatherErrors(result, selectedMods, modsById, envDisabledMods, envType));
+			ResolutionReport report = ResultAnalyzer.analyzeErrors(result, selectedMods, modsById, index, envDisabledMods, envType);
+			writeReport(report);
+
+			throw new ModResolutionException("Some of your mods are incompatible with the game or each other!", report);
 		}
 
 		uniqueSelectedMods.sort(Comparator.comparing(ModCandidate::getId));
@@ -187,7 +283,7 @@ public class ModResolver {
 			}
 		}
 
-		String warnings = ResultAnalyzer.gatherWarnings(uniqueSelectedMods, selectedMods,
+		String warnings = ResultAnalyzer.gatherWarnings(uniqueSelectedMods, selectedMods, index,
 				envDisabledMods, envType);
 
 		if (warnings != null) {
@@ -197,7 +293,22 @@ public class ModResolver {
 		return uniqueSelectedMods;
 	}
 
-	private static final Comparator<ModCandidate> modPrioComparator = new Comparator<ModCandidate>() {
+	private static void writeReport(ResolutionReport report) {
+		String file = System.getProperty(SystemProperties.RESOLUTION_REPORT_FILE);
+		if (file == null) return;
+
+		try {
+			Files.write(Paths.get(file), report.toJson().getBytes(StandardCharsets.UTF_8));
+		} catch (IOException | InvalidPathException e) {
+			Log.warn(LogCategory.RESOLUTION, "Error writing resolution report to "+file, e);
+		}
+	}
+
+	private static Path getCacheFile() {
+		return FabricLoaderImpl.INSTANCE.getGameDir().resolve(FabricLoaderImpl.CACHE_DIR_NAME).resolve(CACHE_FILE_NAME);
+	}
+
+	static final Comparator<ModCandidate> modPrioComparator = new Comparator<ModCandidate>() {
 		@Override
 		public int compare(ModCandidate a, ModCandidate b) {
 			// descending sort prio (less/earlier is higher prio):
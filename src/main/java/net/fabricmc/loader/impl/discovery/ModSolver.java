@@ -27,12 +27,14 @@ import net.fabricmc.loader.impl.util.log.Log;
 import net.fabricmc.loader.impl.util.log.LogCategory;
 import net.fabricmc.loader.impl.util.version.SemanticVersionImpl;
 import net.fabricmc.loader.impl.util.version.VersionPredicateParser;
+import org.sat4j.core.Vec;
 import org.sat4j.pb.IPBSolver;
 import org.sat4j.pb.SolverFactory;
 import org.sat4j.pb.tools.DependencyHelper;
 import org.sat4j.pb.tools.INegator;
 import org.sat4j.pb.tools.WeightedObject;
 import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.IVec;
 import org.sat4j.specs.TimeoutException;
 
 import java.math.BigInteger;
@@ -40,46 +42,104 @@ import java.util.*;
 import java.util.function.Function;
 
 final class ModSolver {
-	static Result solve(List<ModCandidate> allModsSorted, Map<String, List<ModCandidate>> modsById,
-			Map<String, ModCandidate> selectedMods, List<ModCandidate> uniqueSelectedMods) throws ContradictionException, TimeoutException, ModResolutionException {
-		// build priority index
+	private static final int MIN_PARTITION_SIZE = 64; // smaller problems aren't worth an extra solver instance
 
-		Map<ModCandidate, Integer> priorities = new IdentityHashMap<>(allModsSorted.size());
+	static Result solve(List<ModCandidate> allModsSorted, Map<String, List<ModCandidate>> modsById, CandidateArena arena,
+			Map<String, ModCandidate> selectedMods, List<ModCandidate> uniqueSelectedMods, ResolutionMetrics metrics) throws ContradictionException, TimeoutException, ModResolutionException {
+		CandidateIndex index = arena.getIndex();
 
-		for (int i = 0; i < allModsSorted.size(); i++) {
-			priorities.put(allModsSorted.get(i), i);
+		// solve independent parts of the problem concurrently, the whole problem is still being solved to analyze failures
+
+		long startTime = System.nanoTime();
+		List<ModCandidate> partitionSolution = solvePartitioned(modsById, index, arena, selectedMods, uniqueSelectedMods, metrics);
+		metrics.addTime(ResolutionMetrics.Phase.PARTITIONED_SOLVE, startTime);
+
+		if (partitionSolution != null) {
+			for (ModCandidate mod : partitionSolution) {
+				ModResolver.selectMod(mod, selectedMods, uniqueSelectedMods);
+			}
+
+			metrics.setOutcome(ResolutionMetrics.Outcome.PARTITIONED);
+
+			return Result.createSuccess();
 		}
 
 		// create and configure solver
 
-		solverPrepTime = System.nanoTime();
+		startTime = System.nanoTime();
 
-		IPBSolver solver = SolverFactory.newDefaultOptimizer();
+		IPBSolver solver = createSolver(true);
+		DependencyHelper<DomainObject, Explanation> dependencyHelper = createDepHelper(solver);
 
-		int timeout = Integer.getInteger(SystemProperties.DEBUG_RESOLUTION_TIMEOUT, 60);
-		if (timeout > 0) solver.setTimeout(timeout); // in seconds
+		// the constraints are shared with the failure cause analysis, the regular solve assumes the analysis and all dep
+		// disable vars to be off
 
-		DependencyHelper<DomainObject, Explanation> dependencyHelper = createDepHelper(solver);
+		DomainObject analysisVar = new AnalysisVar();
+		IVec<DomainObject> assumptions = setupAnalysisSolver(allModsSorted, modsById, index,
+				arena, selectedMods, uniqueSelectedMods,
+				analysisVar, metrics, dependencyHelper);
 
-		setupSolver(allModsSorted, modsById,
-				priorities, selectedMods, uniqueSelectedMods,
-				false, null, false,
-				dependencyHelper);
+		metrics.addTime(ResolutionMetrics.Phase.SETUP, startTime);
 
 		// solve
 
-		solveTime = System.nanoTime();
+		startTime = System.nanoTime();
 
-		boolean hasSolution = dependencyHelper.hasASolution();
+		boolean hasSolution;
+		Collection<DomainObject> solution;
 
-		// check solution
+		try {
+			hasSolution = dependencyHelper.hasASolution(assumptions);
+			solution = hasSolution ? dependencyHelper.getASolution() : null;
+		} catch (TimeoutException e) {
+			// the optimizer ran out of budget without providing a solution, settle for any solution satisfying all hard
+			// constraints - usually far cheaper to find than the optimum
 
-		solutionFetchTime = System.nanoTime();
+			Log.warn(LogCategory.RESOLUTION, "Mod resolution exceeded the solver limit, selecting mods without optimizing versions");
+			metrics.addSolver(solver);
+			dependencyHelper.reset();
 
-		if (hasSolution) {
-			Collection<DomainObject> solution = dependencyHelper.getASolution();
+			try {
+				solution = solveUnoptimized(allModsSorted, modsById, index,
+						arena, selectedMods, uniqueSelectedMods,
+						metrics);
+			} catch (TimeoutException e2) {
+				throw e; // out of budget again
+			}
+
+			if (solution != null) {
+				hasSolution = true;
+				solver = null;
+			} else {
+				// there is no solution at all, redo the regular solve for the failure analysis - proving that doesn't
+				// involve the objective
+
+				solver = createSolver(true);
+				dependencyHelper = createDepHelper(solver);
+				assumptions = setupAnalysisSolver(allModsSorted, modsById, index,
+						arena, selectedMods, uniqueSelectedMods,
+						analysisVar, metrics, dependencyHelper);
+
+				try {
+					hasSolution = dependencyHelper.hasASolution(assumptions);
+					solution = hasSolution ? dependencyHelper.getASolution() : null;
+				} catch (TimeoutException e2) {
+					Log.warn(LogCategory.RESOLUTION, "Mod resolution failure analysis exceeded the solver limit");
+					metrics.addTime(ResolutionMetrics.Phase.SOLVE, startTime);
+					metrics.addSolver(solver);
+					dependencyHelper.reset();
+					metrics.setOutcome(ResolutionMetrics.Outcome.FAILED);
+
+					return Result.createFailure(Collections.emptySet(), Collections.emptyList(), null);
+				}
+			}
+		}
+
+		// check solution
 
-			solutionAnalyzeTime = System.nanoTime();
+		if (hasSolution) {
+			metrics.addTime(ResolutionMetrics.Phase.SOLVE, startTime);
+			if (solver != null) metrics.addSolver(solver);
 
 			for (DomainObject obj : solution) {
 				if (obj instanceof ModCandidate) {
@@ -90,40 +150,407 @@ final class ModSolver {
 			}
 
 			dependencyHelper.reset();
+			metrics.setOutcome(ResolutionMetrics.Outcome.SOLVED);
 
 			return Result.createSuccess();
 		} else { // no solution
-			Set<Explanation> reason = dependencyHelper.why();
+			metrics.addTime(ResolutionMetrics.Phase.SOLVE, startTime);
+			startTime = System.nanoTime();
+
+			// the analysis degrades to less detailed reports if it exceeds the solver limit
+
+			Set<Explanation> reason;
+
+			try {
+				reason = dependencyHelper.why();
+			} catch (TimeoutException e) {
+				Log.warn(LogCategory.RESOLUTION, "Mod resolution failure explanation exceeded the solver limit");
+				reason = Collections.emptySet();
+			}
 
 			// gather all failed deps
 
 			Set<ModDependency> failedDeps = Collections.newSetFromMap(new IdentityHashMap<>());
 			List<Explanation> failedExplanations = new ArrayList<>();
 
-			computeFailureCausesOptional(allModsSorted, modsById,
-					priorities, selectedMods, uniqueSelectedMods,
-					reason, dependencyHelper,
-					failedDeps, failedExplanations);
+			try {
+				computeFailureCausesOptional(analysisVar, dependencyHelper,
+						failedDeps, failedExplanations);
+			} catch (TimeoutException e) {
+				Log.warn(LogCategory.RESOLUTION, "Mod resolution failure analysis exceeded the solver limit");
+			}
+
+			metrics.addTime(ResolutionMetrics.Phase.FAILURE_ANALYSIS, startTime);
+			metrics.addSolver(solver); // the solver is reset for computing the fix
 
 			// find best solution with mod addition/removal
 
-			fixSetupTime = System.nanoTime();
+			startTime = System.nanoTime();
+
+			Fix fix;
+
+			try {
+				fix = computeFix(uniqueSelectedMods, allModsSorted, modsById, index,
+						arena, selectedMods,
+						failedDeps, metrics, dependencyHelper);
+			} catch (TimeoutException e) {
+				Log.warn(LogCategory.RESOLUTION, "Computing a fix for the mod set exceeded the solver limit");
+				fix = null;
+			}
 
-			Fix fix = computeFix(uniqueSelectedMods, allModsSorted, modsById,
-					priorities, selectedMods,
-					failedDeps, dependencyHelper);
+			metrics.addTime(ResolutionMetrics.Phase.FIX, startTime);
 
 			dependencyHelper.reset();
+			metrics.setOutcome(ResolutionMetrics.Outcome.FAILED);
 
 			return Result.createFailure(reason, failedExplanations, fix);
 		}
 	}
 
-	static long solverPrepTime;
-	static long solveTime;
-	static long solutionFetchTime;
-	static long solutionAnalyzeTime;
-	static long fixSetupTime;
+	/**
+	 * Set up the constraints for the regular solve, which are shared with the failure cause analysis.
+	 *
+	 * @return the assumptions for the regular solve, turning off the analysis and all dep disable vars
+	 */
+	private static IVec<DomainObject> setupAnalysisSolver(List<ModCandidate> allModsSorted, Map<String, List<ModCandidate>> modsById, CandidateIndex index,
+			CandidateArena arena, Map<String, ModCandidate> selectedMods, List<ModCandidate> uniqueSelectedMods,
+			DomainObject analysisVar, ResolutionMetrics metrics, DependencyHelper<DomainObject, Explanation> dependencyHelper) throws ContradictionException {
+		Collection<DomainObject> disableDepVars = setupSolver(allModsSorted, modsById, index,
+				arena, selectedMods, uniqueSelectedMods,
+				true, null, false, analysisVar,
+				metrics, dependencyHelper);
+
+		IVec<DomainObject> ret = new Vec<>(disableDepVars.size() + 1);
+		ret.push(new NegatedDomainObject(analysisVar));
+
+		for (DomainObject var : disableDepVars) {
+			ret.push(new NegatedDomainObject(var));
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Find any solution satisfying the hard constraints, ignoring the objective.
+	 *
+	 * @return the solution or null if there is none
+	 * @throws TimeoutException if the solver limit was exceeded again
+	 */
+	private static Collection<DomainObject> solveUnoptimized(List<ModCandidate> allModsSorted, Map<String, List<ModCandidate>> modsById, CandidateIndex index,
+			CandidateArena arena, Map<String, ModCandidate> selectedMods, List<ModCandidate> uniqueSelectedMods,
+			ResolutionMetrics metrics) throws ContradictionException, TimeoutException {
+		IPBSolver solver = createSolver(false);
+		DependencyHelper<DomainObject, Explanation> dependencyHelper = createDepHelper(solver);
+
+		try {
+			setupSolver(allModsSorted, modsById, index,
+					arena, selectedMods, uniqueSelectedMods,
+					false, null, false, null,
+					metrics, dependencyHelper);
+
+			return dependencyHelper.hasASolution() ? dependencyHelper.getASolution() : null;
+		} finally {
+			metrics.addSolver(solver);
+			dependencyHelper.reset();
+		}
+	}
+
+	/**
+	 * Solve the connected components of the constraint graph separately.
+	 *
+	 * <p>Mods are connected if they share an id or provided id, one is a parent of the other or one has a dependency on
+	 * the other's id. No constraint or dummy variable spans multiple components and the objective is a sum over all mods,
+	 * so the optimum is the union of the components' optima when using the same weights. The components are packed into
+	 * one partition per CPU thread, each partition is solved by its own solver instance.
+	 *
+	 * @return the selected mods or null if the problem doesn't split or any partition has no solution
+	 */
+	private static List<ModCandidate> solvePartitioned(Map<String, List<ModCandidate>> modsById, CandidateIndex index,
+			CandidateArena arena, Map<String, ModCandidate> selectedMods, List<ModCandidate> uniqueSelectedMods,
+			ResolutionMetrics metrics) {
+		DiscoveryScheduler scheduler = DiscoveryScheduler.get();
+		int modCount = arena.getModCount();
+		int partitionCount = Math.min(scheduler.getCpuParallelism(), modCount / MIN_PARTITION_SIZE);
+		if (partitionCount <= 1) return null;
+
+		// find connected components (union-find over priority indices)
+
+		int[] components = new int[modCount];
+
+		for (int i = 0; i < components.length; i++) {
+			components[i] = i;
+		}
+
+		for (List<ModCandidate> mods : modsById.values()) {
+			// covers provided ids, whose mods aren't connected through their own ids
+			int firstIdx = arena.getPriority(mods.get(0));
+
+			for (int i = 1; i < mods.size(); i++) {
+				union(components, firstIdx, arena.getPriority(mods.get(i)));
+			}
+		}
+
+		for (int idx = 0; idx < modCount; idx++) {
+			ModCandidate mod = arena.getMod(idx);
+
+			for (int parentIdx : arena.getParents(idx)) {
+				union(components, idx, parentIdx);
+			}
+
+			for (ModDependency dep : mod.getDependencies()) {
+				List<ModCandidate> mods = modsById.get(dep.getModId());
+				if (mods != null) union(components, idx, arena.getPriority(mods.get(0))); // all mods for the id are connected already
+			}
+		}
+
+		// pack components into partitions, largest first into the currently smallest partition
+
+		Map<Integer, Integer> componentSizes = new HashMap<>();
+
+		for (int i = 0; i < components.length; i++) {
+			componentSizes.merge(find(components, i), 1, Integer::sum);
+		}
+
+		if (componentSizes.size() <= 1) return null;
+
+		List<Map.Entry<Integer, Integer>> sortedComponents = new ArrayList<>(componentSizes.entrySet());
+		sortedComponents.sort(Map.Entry.<Integer, Integer>comparingByValue().reversed());
+		partitionCount = Math.min(partitionCount, sortedComponents.size());
+
+		int[] partitionSizes = new int[partitionCount];
+		Map<Integer, Integer> componentPartitions = new HashMap<>(sortedComponents.size());
+
+		for (Map.Entry<Integer, Integer> entry : sortedComponents) {
+			int partition = 0;
+
+			for (int i = 1; i < partitionCount; i++) {
+				if (partitionSizes[i] < partitionSizes[partition]) partition = i;
+			}
+
+			partitionSizes[partition] += entry.getValue();
+			componentPartitions.put(entry.getKey(), partition);
+		}
+
+		// split the input, retaining the mod order
+
+		List<List<ModCandidate>> partitionMods = new ArrayList<>(partitionCount);
+		List<Map<String, List<ModCandidate>>> partitionModsById = new ArrayList<>(partitionCount);
+
+		for (int i = 0; i < partitionCount; i++) {
+			partitionMods.add(new ArrayList<>(partitionSizes[i]));
+			partitionModsById.add(new LinkedHashMap<>());
+		}
+
+		for (int i = 0; i < components.length; i++) {
+			partitionMods.get(componentPartitions.get(find(components, i))).add(arena.getMod(i));
+		}
+
+		for (Map.Entry<String, List<ModCandidate>> entry : modsById.entrySet()) {
+			int partition = componentPartitions.get(find(components, arena.getPriority(entry.getValue().get(0))));
+			partitionModsById.get(partition).put(entry.getKey(), entry.getValue());
+		}
+
+		List<DiscoveryScheduler.CpuTask<List<ModCandidate>, RuntimeException>> tasks = new ArrayList<>(partitionCount);
+
+		for (int i = 0; i < partitionCount; i++) {
+			List<ModCandidate> mods = partitionMods.get(i);
+			Map<String, List<ModCandidate>> modsByIdPart = partitionModsById.get(i);
+
+			tasks.add(() -> solvePartition(mods, modsByIdPart, index, arena, selectedMods, uniqueSelectedMods, metrics));
+		}
+
+		List<ModCandidate> ret = new ArrayList<>();
+
+		for (List<ModCandidate> solution : scheduler.computeAll(tasks)) {
+			if (solution == null) return null;
+
+			ret.addAll(solution);
+		}
+
+		metrics.setPartitionCount(partitionCount);
+		Log.debug(LogCategory.RESOLUTION, "Solved %d mods in %d components using %d partitions",
+				modCount, sortedComponents.size(), partitionCount);
+
+		return ret;
+	}
+
+	private static List<ModCandidate> solvePartition(List<ModCandidate> mods, Map<String, List<ModCandidate>> modsById, CandidateIndex index,
+			CandidateArena arena, Map<String, ModCandidate> selectedMods, List<ModCandidate> uniqueSelectedMods,
+			ResolutionMetrics metrics) {
+		IPBSolver solver = createSolver(true);
+		DependencyHelper<DomainObject, Explanation> dependencyHelper = createDepHelper(solver);
+
+		try {
+			// preselected mods' constraints only get added for the partition containing their dep targets
+			setupSolver(mods, modsById, index,
+					arena, selectedMods, uniqueSelectedMods,
+					false, null, false, null,
+					metrics, dependencyHelper);
+
+			boolean hasSolution = dependencyHelper.hasASolution();
+			metrics.addSolver(solver);
+			if (!hasSolution) return null;
+
+			List<ModCandidate> ret = new ArrayList<>();
+
+			for (DomainObject obj : dependencyHelper.getASolution()) {
+				if (obj instanceof ModCandidate) ret.add((ModCandidate) obj);
+			}
+
+			return ret;
+		} catch (ContradictionException | TimeoutException e) {
+			return null; // left to the full solve, which reports it
+		} catch (RuntimeException e) {
+			// a failing partition mustn't fail resolution while the full solve may still succeed
+			Log.warn(LogCategory.RESOLUTION, "Error solving mod partition, falling back to solving all mods", e);
+			return null;
+		} finally {
+			dependencyHelper.reset();
+		}
+	}
+
+	private static int find(int[] parents, int idx) {
+		while (parents[idx] != idx) {
+			idx = parents[idx] = parents[parents[idx]];
+		}
+
+		return idx;
+	}
+
+	private static void union(int[] parents, int a, int b) {
+		a = find(parents, a);
+		b = find(parents, b);
+		if (a != b) parents[Math.max(a, b)] = Math.min(a, b);
+	}
+
+	/**
+	 * Try to find the solution {@link #solve} would find without invoking the SAT solver.
+	 *
+	 * <p>This selects the highest priority greedy (ALWAYS or IF_POSSIBLE) candidate per id, restricted to nested mods with
+	 * a selected parent, and accepts the selection if it satisfies all constraints without any further mod. The solver's
+	 * objective weights are strictly ordered by priority, negative for greedy mods and positive for everything else, so
+	 * such a selection is its unique optimum.
+	 *
+	 * <p>Inputs where that argument doesn't hold are left to the solver: nested mods whose parents are non-greedy or of
+	 * lower priority, recommendations that can only be satisfied by unselected mods and provides colliding with
+	 * preselected mods.
+	 *
+	 * @return whether a solution was found, the selection is left unchanged otherwise
+	 */
+	static boolean solveGreedy(List<ModCandidate> allModsSorted, Map<String, List<ModCandidate>> modsById, CandidateArena arena,
+			Map<String, ModCandidate> selectedMods, List<ModCandidate> uniqueSelectedMods) {
+		CandidateIndex index = arena.getIndex();
+		Map<String, ModCandidate> newSelectedMods = new HashMap<>(selectedMods);
+		List<ModCandidate> greedyMods = new ArrayList<>();
+
+		// select the best greedy candidate per id, in priority order
+
+		modLoop: for (int prio = 0; prio < arena.getModCount(); prio++) {
+			ModCandidate mod = arena.getMod(prio);
+
+			if (!isGreedy(mod)) continue;
+
+			if (!mod.isRoot() && !isAnyParentSelected(mod, newSelectedMods)) {
+				int[] parents = arena.getParents(prio);
+				if (parents.length != mod.getParentMods().size()) return false; // a parent isn't being resolved
+
+				for (int parent : parents) {
+					if (parent > prio || !isGreedy(arena.getMod(parent))) return false; // parent selection depends on the weights
+				}
+
+				continue;
+			}
+
+			if (newSelectedMods.containsKey(mod.getId())) continue;
+
+			for (String provided : mod.getProvides()) {
+				if (selectedMods.containsKey(provided)) return false; // unconstrained by the solver, fails on selection
+				if (newSelectedMods.containsKey(provided)) continue modLoop;
+			}
+
+			newSelectedMods.put(mod.getId(), mod);
+
+			for (String provided : mod.getProvides()) {
+				newSelectedMods.put(provided, mod);
+			}
+
+			greedyMods.add(mod);
+		}
+
+		// check force-loaded root and nested mods
+
+		for (Map.Entry<String, List<ModCandidate>> entry : modsById.entrySet()) {
+			if (newSelectedMods.containsKey(entry.getKey())) continue;
+
+			for (ModCandidate mod : entry.getValue()) {
+				if (mod.isRoot() && mod.getLoadCondition() == ModLoadCondition.ALWAYS) return false;
+			}
+		}
+
+		for (ModCandidate mod : allModsSorted) {
+			if (!mod.isRoot()
+					&& mod.getLoadCondition() == ModLoadCondition.ALWAYS
+					&& !newSelectedMods.containsKey(mod.getId())
+					&& isAnyParentSelected(mod, newSelectedMods)) {
+				return false;
+			}
+		}
+
+		// check deps of the preselected and newly selected mods
+
+		for (ModCandidate mod : uniqueSelectedMods) {
+			for (ModDependency dep : mod.getDependencies()) {
+				if (selectedMods.containsKey(dep.getModId())) continue;
+				if (!isGreedyDepSatisfied(dep, true, modsById, index, newSelectedMods)) return false;
+			}
+		}
+
+		for (ModCandidate mod : greedyMods) {
+			for (ModDependency dep : mod.getDependencies()) {
+				if (dep.getKind().isSoft() && selectedMods.containsKey(dep.getModId())) continue;
+				if (!isGreedyDepSatisfied(dep, false, modsById, index, newSelectedMods)) return false;
+			}
+		}
+
+		selectedMods.putAll(newSelectedMods);
+		uniqueSelectedMods.addAll(greedyMods);
+
+		return true;
+	}
+
+	private static boolean isGreedy(ModCandidate mod) {
+		return mod.getLoadCondition().ordinal() < ModLoadCondition.IF_RECOMMENDED.ordinal();
+	}
+
+	private static boolean isGreedyDepSatisfied(ModDependency dep, boolean preselected, Map<String, List<ModCandidate>> modsById, CandidateIndex index,
+			Map<String, ModCandidate> selectedMods) {
+		ModCandidate selectedMod = selectedMods.get(dep.getModId());
+		boolean matches = selectedMod != null && index.matches(dep, selectedMod);
+
+		switch (dep.getKind()) {
+		case DEPENDS:
+			// preselected mods only get a constraint if there is any candidate
+			return matches || preselected && !hasMatchingCandidate(dep, ModLoadCondition.IF_NEEDED, modsById, index);
+		case RECOMMENDS:
+			// the solver would weigh loading an unselected match against leaving the dep unsatisfied
+			return matches || !hasMatchingCandidate(dep, ModLoadCondition.IF_RECOMMENDED, modsById, index);
+		case BREAKS:
+			return !matches;
+		default:
+			return true;
+		}
+	}
+
+	private static boolean hasMatchingCandidate(ModDependency dep, ModLoadCondition maxLoadCondition, Map<String, List<ModCandidate>> modsById, CandidateIndex index) {
+		List<ModCandidate> mods = modsById.get(dep.getModId());
+		if (mods == null) return false;
+
+		for (ModCandidate mod : mods) {
+			if (mod.getLoadCondition().ordinal() <= maxLoadCondition.ordinal() && index.matches(dep, mod)) return true;
+		}
+
+		return false;
+	}
 
 	static class Result {
 		final boolean success;
@@ -147,19 +574,14 @@ final class ModSolver {
 		}
 	}
 
-	private static void computeFailureCausesOptional(List<ModCandidate> allModsSorted, Map<String, List<ModCandidate>> modsById,
-			Map<ModCandidate, Integer> priorities, Map<String, ModCandidate> selectedMods, List<ModCandidate> uniqueSelectedMods,
-			Set<Explanation> reason, DependencyHelper<DomainObject, Explanation> dependencyHelper,
-			Set<ModDependency> failedDeps, List<Explanation> failedExplanations) throws ContradictionException, TimeoutException {
-		dependencyHelper.reset();
-		dependencyHelper = createDepHelper(dependencyHelper.getSolver()); // dependencyHelper.reset doesn't fully reset the dep helper
+	private static void computeFailureCausesOptional(DomainObject analysisVar, DependencyHelper<DomainObject, Explanation> dependencyHelper,
+			Set<ModDependency> failedDeps, List<Explanation> failedExplanations) throws TimeoutException {
+		// re-solve the constraints from the failed regular solve with the dep disable simulation enabled instead
 
-		setupSolver(allModsSorted, modsById,
-				priorities, selectedMods, uniqueSelectedMods,
-				true, null, false,
-				dependencyHelper);
+		IVec<DomainObject> assumptions = new Vec<>(1);
+		assumptions.push(analysisVar);
 
-		if (dependencyHelper.hasASolution()) {
+		if (dependencyHelper.hasASolution(assumptions)) {
 			Collection<DomainObject> solution = dependencyHelper.getASolution();
 			Set<ModDependency> disabledDeps = new HashSet<>(); // DisableDepVar uses equality semantics, not identity
 
@@ -167,7 +589,7 @@ final class ModSolver {
 				if (obj instanceof DisableDepVar) {
 					disabledDeps.add(((DisableDepVar) obj).dep);
 				} else {
-					assert obj instanceof ModCandidate;
+					assert obj instanceof ModCandidate || obj == analysisVar;
 				}
 			}
 
@@ -191,9 +613,18 @@ final class ModSolver {
 		}
 	}
 
-	private static Fix computeFix(List<ModCandidate> uniqueSelectedMods, List<ModCandidate> allModsSorted, Map<String, List<ModCandidate>> modsById,
-			Map<ModCandidate, Integer> priorities, Map<String, ModCandidate> selectedMods,
-			Set<ModDependency> failedDeps, DependencyHelper<DomainObject, Explanation> dependencyHelper) throws ContradictionException, TimeoutException {
+	/**
+	 * Find a mod set change that makes the problem solvable, by simulating the addition and removal of mods.
+	 *
+	 * <p>Unlike the failure cause analysis, this doesn't share the constraints of the regular solve and regenerates them in
+	 * a reset solver instead. The mods to try adding are derived from the failed deps, so their vars don't exist before
+	 * the analysis ran. The simulation also replaces hard constraints of the regular solve, namely root mod force loading
+	 * and the single mod per id limit, which would otherwise have to be guarded by selector vars in every regular solve.
+	 * Finally it optimizes a different objective, while the optimizer keeps the bounds it derived from the previous one.
+	 */
+	private static Fix computeFix(List<ModCandidate> uniqueSelectedMods, List<ModCandidate> allModsSorted, Map<String, List<ModCandidate>> modsById, CandidateIndex index,
+			CandidateArena arena, Map<String, ModCandidate> selectedMods,
+			Set<ModDependency> failedDeps, ResolutionMetrics metrics, DependencyHelper<DomainObject, Explanation> dependencyHelper) throws ContradictionException, TimeoutException {
 		// group positive deps by mod id
 		Map<String, Set<Collection<VersionPredicate>>> depsById = new HashMap<>();
 
@@ -286,19 +717,20 @@ final class ModSolver {
 			out.sort(Comparator.<AddModVar, Version>comparing(AddModVar::getVersion).reversed());
 		}
 
-		// check the determined solution
-
-		fixSolveTime = System.nanoTime();
+		// check the determined solution, regenerating all constraints (see above)
 
 		dependencyHelper.reset();
 		dependencyHelper = createDepHelper(dependencyHelper.getSolver()); // dependencyHelper.reset doesn't fully reset the dep helper
 
-		setupSolver(allModsSorted, modsById,
-				priorities, selectedMods, uniqueSelectedMods,
-				false, installableMods, true,
-				dependencyHelper);
+		setupSolver(allModsSorted, modsById, index,
+				arena, selectedMods, uniqueSelectedMods,
+				false, installableMods, true, null,
+				metrics, dependencyHelper);
 
-		if (!dependencyHelper.hasASolution()) {
+		boolean hasSolution = dependencyHelper.hasASolution();
+		metrics.addSolver(dependencyHelper.getSolver());
+
+		if (!hasSolution) {
 			Log.warn(LogCategory.RESOLUTION, "Unable to find a solution to fix the mod set, reason: %s", dependencyHelper.why());
 			return null;
 		}
@@ -434,8 +866,6 @@ final class ModSolver {
 		return new Fix(modsToAdd, modsToRemove, modReplacements, activeMods, inactiveMods);
 	}
 
-	static long fixSolveTime;
-
 	private static Version deriveVersion(VersionInterval interval) {
 		if (!interval.isSemantic()) {
 			return interval.getMin() != null ? interval.getMin() : interval.getMax();
@@ -549,42 +979,63 @@ final class ModSolver {
 		}
 	}
 
-	private static void setupSolver(List<ModCandidate> allModsSorted, Map<String, List<ModCandidate>> modsById,
-			Map<ModCandidate, Integer> priorities, Map<String, ModCandidate> selectedMods, List<ModCandidate> uniqueSelectedMods,
-			boolean depDisableSim, Map<String, List<AddModVar>> installableMods, boolean removalSim,
-			DependencyHelper<DomainObject, Explanation> dependencyHelper) throws ContradictionException {
+	/**
+	 * Generate all constraints and the objective function for a solver run.
+	 *
+	 * <p>With an analysis var, the constraints of the regular solve and the dep disable simulation are generated together,
+	 * the mode being selected through assumptions: constraints specific to the regular solve are relaxed if the var is
+	 * true, those specific to the simulation if it is false. The regular solve additionally has to assume all returned dep
+	 * disable vars to be false.
+	 *
+	 * @return the dep disable vars, empty without depDisableSim
+	 */
+	private static Collection<DomainObject> setupSolver(List<ModCandidate> allModsSorted, Map<String, List<ModCandidate>> modsById, CandidateIndex index,
+			CandidateArena arena, Map<String, ModCandidate> selectedMods, List<ModCandidate> uniqueSelectedMods,
+			boolean depDisableSim, Map<String, List<AddModVar>> installableMods, boolean removalSim, DomainObject analysisVar,
+			ResolutionMetrics metrics, DependencyHelper<DomainObject, Explanation> dependencyHelper) throws ContradictionException {
 		Map<String, DomainObject> dummies = new HashMap<>();
 		Map<ModDependency, Map.Entry<DomainObject, Integer>> disabledDeps = depDisableSim ? new HashMap<>() : null;
 		List<WeightedObject<DomainObject>> weightedObjects = new ArrayList<>();
 
-		generatePreselectConstraints(uniqueSelectedMods, modsById,
-				priorities, selectedMods,
-				depDisableSim, installableMods, removalSim,
+		generatePreselectConstraints(uniqueSelectedMods, modsById, index,
+				arena, selectedMods,
+				depDisableSim, installableMods, removalSim, analysisVar,
 				dummies, disabledDeps,
 				dependencyHelper, weightedObjects);
 
-		generateMainConstraints(allModsSorted, modsById,
-				priorities, selectedMods,
-				depDisableSim, installableMods, removalSim,
+		generateMainConstraints(allModsSorted, modsById, index,
+				arena, selectedMods,
+				depDisableSim, installableMods, removalSim, analysisVar,
 				dummies, disabledDeps,
 				dependencyHelper, weightedObjects);
 
 		if (depDisableSim) {
-			applyDisableDepVarWeights(disabledDeps, priorities.size(), weightedObjects);
+			applyDisableDepVarWeights(disabledDeps, arena.getModCount(), weightedObjects);
 		}
 
-		@SuppressWarnings("unchecked")
+		@SuppressWarnings({ "unchecked", "rawtypes" }) // generic array creation
 		WeightedObject<DomainObject>[] weights = weightedObjects.toArray(new WeightedObject[0]);
 		dependencyHelper.setObjectiveFunction(weights);
 		//dependencyHelper.addWeightedCriterion(weightedObjects);
+		metrics.addWeightedObjects(weights.length);
+
+		if (!depDisableSim) return Collections.emptyList();
+
+		List<DomainObject> ret = new ArrayList<>(disabledDeps.size());
+
+		for (Map.Entry<DomainObject, Integer> entry : disabledDeps.values()) {
+			ret.add(entry.getKey());
+		}
+
+		return ret;
 	}
 
-	private static void generatePreselectConstraints(List<ModCandidate> uniqueSelectedMods, Map<String, List<ModCandidate>> modsById,
-			Map<ModCandidate, Integer> priorities, Map<String, ModCandidate> selectedMods,
-			boolean depDisableSim, Map<String, List<AddModVar>> installableMods, boolean removalSim,
+	private static void generatePreselectConstraints(List<ModCandidate> uniqueSelectedMods, Map<String, List<ModCandidate>> modsById, CandidateIndex index,
+			CandidateArena arena, Map<String, ModCandidate> selectedMods,
+			boolean depDisableSim, Map<String, List<AddModVar>> installableMods, boolean removalSim, DomainObject analysisVar,
 			Map<String, DomainObject> dummyMods, Map<ModDependency, Map.Entry<DomainObject, Integer>> disabledDeps,
 			DependencyHelper<DomainObject, Explanation> dependencyHelper, List<WeightedObject<DomainObject>> weightedObjects) throws ContradictionException {
-		boolean enableOptional = !depDisableSim && installableMods == null && !removalSim; // whether to enable optional mods (regular solve only, not for failure handling)
+		boolean enableOptional = (!depDisableSim || analysisVar != null) && installableMods == null && !removalSim; // whether to enable optional mods (regular solve only, not for failure handling)
 		List<DomainObject> suitableMods = new ArrayList<>();
 
 		for (ModCandidate mod : uniqueSelectedMods) {
@@ -598,7 +1049,7 @@ final class ModSolver {
 
 				if (availableMods != null) {
 					for (DomainObject.Mod m : availableMods) {
-						if (dep.matches(m.getVersion())) suitableMods.add(m);
+						if (index.matches(dep, m)) suitableMods.add(m);
 					}
 				}
 
@@ -607,7 +1058,7 @@ final class ModSolver {
 
 					if (availableMods != null) {
 						for (DomainObject.Mod m : availableMods) {
-							if (dep.matches(m.getVersion())) suitableMods.add(m);
+							if (index.matches(dep, m)) suitableMods.add(m);
 						}
 					}
 				}
@@ -616,6 +1067,11 @@ final class ModSolver {
 
 				switch (dep.getKind()) {
 				case DEPENDS:
+					if (analysisVar != null && suitableMods.isEmpty()) { // simulation only
+						dependencyHelper.implication(analysisVar).implies(getCreateDisableDepVar(dep, disabledDeps)).named(new Explanation(ErrorKind.PRESELECT_HARD_DEP, mod, dep));
+						break;
+					}
+
 					if (depDisableSim) {
 						suitableMods.add(getCreateDisableDepVar(dep, disabledDeps));
 					}
@@ -629,13 +1085,21 @@ final class ModSolver {
 					suitableMods.removeIf(m -> ((ModCandidate) m).getLoadCondition().ordinal() > ModLoadCondition.IF_RECOMMENDED.ordinal());
 
 					if (!suitableMods.isEmpty()) {
-						suitableMods.add(getCreateDummy(dep.getModId(), OptionalDepVar::new, dummyMods, priorities.size(), weightedObjects));
+						suitableMods.add(getCreateDummy(dep.getModId(), OptionalDepVar::new, dummyMods, arena.getModCount(), weightedObjects));
+						if (analysisVar != null) suitableMods.add(analysisVar); // regular solve only
 						dependencyHelper.clause(new Explanation(ErrorKind.PRESELECT_SOFT_DEP, mod, dep), suitableMods.toArray(new DomainObject[0]));
 					}
 
 					break;
 				case BREAKS:
-					if (depDisableSim) {
+					if (analysisVar != null) {
+						Explanation explanation = new Explanation(ErrorKind.PRESELECT_NEG_HARD_DEP, mod, dep);
+						dependencyHelper.implication(analysisVar).implies(getCreateDisableDepVar(dep, disabledDeps)).named(explanation);
+
+						for (DomainObject match : suitableMods) {
+							dependencyHelper.implication(match).implies(analysisVar).named(explanation);
+						}
+					} else if (depDisableSim) {
 						dependencyHelper.setTrue(getCreateDisableDepVar(dep, disabledDeps), new Explanation(ErrorKind.PRESELECT_NEG_HARD_DEP, mod, dep));
 					} else {
 						for (DomainObject match : suitableMods) {
@@ -655,7 +1119,7 @@ final class ModSolver {
 			}
 
 			if (removalSim) {
-				int prio = priorities.size() + 10;
+				int prio = arena.getModCount() + 10;
 
 				if (installableMods != null) {
 					prio += installableMods.getOrDefault(mod.getId(), Collections.emptyList()).size();
@@ -673,12 +1137,12 @@ final class ModSolver {
 		}
 	}
 
-	private static void generateMainConstraints(List<ModCandidate> allModsSorted, Map<String, List<ModCandidate>> modsById,
-			Map<ModCandidate, Integer> priorities, Map<String, ModCandidate> selectedMods,
-			boolean depDisableSim, Map<String, List<AddModVar>> installableMods, boolean removalSim,
+	private static void generateMainConstraints(List<ModCandidate> allModsSorted, Map<String, List<ModCandidate>> modsById, CandidateIndex index,
+			CandidateArena arena, Map<String, ModCandidate> selectedMods,
+			boolean depDisableSim, Map<String, List<AddModVar>> installableMods, boolean removalSim, DomainObject analysisVar,
 			Map<String, DomainObject> dummyMods, Map<ModDependency, Map.Entry<DomainObject, Integer>> disabledDeps,
 			DependencyHelper<DomainObject, Explanation> dependencyHelper, List<WeightedObject<DomainObject>> weightedObjects) throws ContradictionException {
-		boolean enableOptional = !depDisableSim && installableMods == null && !removalSim; // whether to enable optional mods (regular solve only, not for failure handling)
+		boolean enableOptional = (!depDisableSim || analysisVar != null) && installableMods == null && !removalSim; // whether to enable optional mods (regular solve only, not for failure handling)
 		List<DomainObject> suitableMods = new ArrayList<>();
 
 		for (ModCandidate mod : allModsSorted) {
@@ -692,8 +1156,11 @@ final class ModSolver {
 				if (selectedMod != null) { // dep is already selected = present
 					if (!removalSim) {
 						if (!dep.getKind().isSoft() // .. and is a hard dep
-								&& dep.matches(selectedMod.getVersion()) != dep.getKind().isPositive()) { // ..but isn't suitable (DEPENDS without match or BREAKS with match)
-							if (depDisableSim) {
+								&& index.matches(dep, selectedMod) != dep.getKind().isPositive()) { // ..but isn't suitable (DEPENDS without match or BREAKS with match)
+							if (analysisVar != null) {
+								dependencyHelper.implication(analysisVar).implies(getCreateDisableDepVar(dep, disabledDeps)).named(new Explanation(ErrorKind.HARD_DEP, mod, dep));
+								dependencyHelper.implication(mod).implies(analysisVar).named(new Explanation(ErrorKind.HARD_DEP_INCOMPATIBLE_PRESELECTED, mod, dep));
+							} else if (depDisableSim) {
 								dependencyHelper.setTrue(getCreateDisableDepVar(dep, disabledDeps), new Explanation(ErrorKind.HARD_DEP, mod, dep));
 							} else {
 								dependencyHelper.setFalse(mod, new Explanation(ErrorKind.HARD_DEP_INCOMPATIBLE_PRESELECTED, mod, dep));
@@ -701,7 +1168,7 @@ final class ModSolver {
 						}
 
 						continue;
-					} else if (dep.matches(selectedMod.getVersion())) {
+					} else if (index.matches(dep, selectedMod)) {
 						suitableMods.add(selectedMod);
 					}
 				}
@@ -710,7 +1177,7 @@ final class ModSolver {
 
 				if (availableMods != null) {
 					for (DomainObject.Mod m : availableMods) {
-						if (dep.matches(m.getVersion())) suitableMods.add(m);
+						if (index.matches(dep, m)) suitableMods.add(m);
 					}
 				}
 
@@ -719,21 +1186,23 @@ final class ModSolver {
 
 					if (availableMods != null) {
 						for (DomainObject.Mod m : availableMods) {
-							if (dep.matches(m.getVersion())) suitableMods.add(m);
+							if (index.matches(dep, m)) suitableMods.add(m);
 						}
 					}
 				}
 
 				switch (dep.getKind()) {
 				case DEPENDS: // strong dep
+					ErrorKind kind = suitableMods.isEmpty() ? ErrorKind.HARD_DEP_NO_CANDIDATE : ErrorKind.HARD_DEP; // as seen by the regular solve
+
 					if (depDisableSim) {
 						suitableMods.add(getCreateDisableDepVar(dep, disabledDeps));
 					}
 
 					if (suitableMods.isEmpty()) {
-						dependencyHelper.setFalse(mod, new Explanation(ErrorKind.HARD_DEP_NO_CANDIDATE, mod, dep));
+						dependencyHelper.setFalse(mod, new Explanation(kind, mod, dep));
 					} else {
-						dependencyHelper.implication(mod).implies(suitableMods.toArray(new DomainObject[0])).named(new Explanation(ErrorKind.HARD_DEP, mod, dep));
+						dependencyHelper.implication(mod).implies(suitableMods.toArray(new DomainObject[0])).named(new Explanation(analysisVar != null ? kind : ErrorKind.HARD_DEP, mod, dep));
 					}
 
 					break;
@@ -744,7 +1213,8 @@ final class ModSolver {
 					suitableMods.removeIf(m -> ((ModCandidate) m).getLoadCondition().ordinal() > ModLoadCondition.IF_RECOMMENDED.ordinal());
 
 					if (!suitableMods.isEmpty()) {
-						suitableMods.add(getCreateDummy(dep.getModId(), OptionalDepVar::new, dummyMods, priorities.size(), weightedObjects));
+						suitableMods.add(getCreateDummy(dep.getModId(), OptionalDepVar::new, dummyMods, arena.getModCount(), weightedObjects));
+						if (analysisVar != null) suitableMods.add(analysisVar); // regular solve only
 						dependencyHelper.implication(mod).implies(suitableMods.toArray(new DomainObject[0])).named(new Explanation(ErrorKind.SOFT_DEP, mod, dep));
 					}
 
@@ -804,13 +1274,13 @@ final class ModSolver {
 			// add weights if potentially needed (choice between multiple mods or dummies)
 
 			if (!mod.isRoot() || mod.getLoadCondition() != ModLoadCondition.ALWAYS || modsById.get(mod.getId()).size() > 1) {
-				int prio = priorities.get(mod);
+				int prio = arena.getPriority(mod);
 				BigInteger weight;
 
 				if (mod.getLoadCondition().ordinal() >= ModLoadCondition.IF_RECOMMENDED.ordinal()) { // non-greedy (optional)
 					weight = TWO.pow(prio + 1);
 				} else { // greedy
-					weight = TWO.pow(allModsSorted.size() - prio).negate();
+					weight = TWO.pow(arena.getModCount() - prio).negate(); // relative to all mods, not only the current partition
 				}
 
 				weightedObjects.add(WeightedObject.newWO(mod, weight));
@@ -842,7 +1312,7 @@ final class ModSolver {
 
 				if (isRequired) {
 					if (removalSim) {
-						int prio = priorities.size() + 10;
+						int prio = arena.getModCount() + 10;
 						if (installableMods != null) prio += installableMods.getOrDefault(id, Collections.emptyList()).size();
 
 						suitableMods.add(getCreateDummy(id, RemoveModVar::new, dummyMods, prio, weightedObjects));
@@ -905,7 +1375,7 @@ final class ModSolver {
 
 				for (int i = 0; i < variants.size(); i++) {
 					AddModVar mod = variants.get(i);
-					int weight = priorities.size() + 4 + i;
+					int weight = arena.getModCount() + 4 + i;
 					if (isReplacement) weight += 3;
 					if (mod.hadOnlyOutboundDepFailures) weight++;
 
@@ -917,6 +1387,28 @@ final class ModSolver {
 
 	private static final BigInteger TWO = BigInteger.valueOf(2);
 
+	/**
+	 * Create a solver limited by the configured conflict budget or timeout.
+	 *
+	 * <p>The conflict budget applies to each solver call and makes the outcome independent of the machine's speed, it
+	 * takes precedence over the timeout.
+	 *
+	 * @param optimize whether to minimize the objective function or only satisfy the constraints
+	 */
+	private static IPBSolver createSolver(boolean optimize) {
+		IPBSolver ret = optimize ? SolverFactory.newDefaultOptimizer() : SolverFactory.newDefault();
+		int conflictBudget = Integer.getInteger(SystemProperties.DEBUG_RESOLUTION_CONFLICT_BUDGET, 0);
+
+		if (conflictBudget > 0) {
+			ret.setTimeoutOnConflicts(conflictBudget);
+		} else {
+			int timeout = Integer.getInteger(SystemProperties.DEBUG_RESOLUTION_TIMEOUT, 60);
+			if (timeout > 0) ret.setTimeout(timeout); // in seconds
+		}
+
+		return ret;
+	}
+
 	private static DependencyHelper<DomainObject, Explanation> createDepHelper(IPBSolver solver) {
 		DependencyHelper<DomainObject, Explanation> ret = new DependencyHelper<>(solver); // new LexicoHelper<>(solver)
 		ret.setNegator(negator);
@@ -969,6 +1461,18 @@ final class ModSolver {
 		}
 	}
 
+	private static final class AnalysisVar implements DomainObject {
+		@Override
+		public String getId() {
+			return "analysis";
+		}
+
+		@Override
+		public String toString() {
+			return "analysis";
+		}
+	}
+
 	private static final class DisableDepVar implements DomainObject {
 		final ModDependency dep;
 
@@ -1079,14 +1583,14 @@ final class ModSolver {
 		return false;
 	}
 
-	static boolean hasAllDepsSatisfied(ModCandidate mod, Map<String, ModCandidate> mods) {
+	static boolean hasAllDepsSatisfied(ModCandidate mod, Map<String, ModCandidate> mods, CandidateIndex index) {
 		for (ModDependency dep : mod.getDependencies()) {
 			if (dep.getKind() == ModDependency.Kind.DEPENDS) {
 				ModCandidate m = mods.get(dep.getModId());
-				if (m == null || !dep.matches(m.getVersion())) return false;
+				if (m == null || !index.matches(dep, m)) return false;
 			} else if (dep.getKind() == ModDependency.Kind.BREAKS) {
 				ModCandidate m = mods.get(dep.getModId());
-				if (m != null && dep.matches(m.getVersion())) return false;
+				if (m != null && index.matches(dep, m)) return false;
 			}
 		}
 
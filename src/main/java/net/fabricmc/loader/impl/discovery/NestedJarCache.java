@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import net.fabricmc.loader.impl.util.SystemProperties;
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded cache of nested jar contents, shared by discovery and the extraction of selected nested mods.
+ *
+ * <p>Discovery adds the contents of every enabled nested jar it read, extraction and nested reads of deeper jars then
+ * avoid re-reading them from their parents. The least recently used entries are evicted once the heap memory held by the
+ * cache exceeds {@link SystemProperties#NESTED_JAR_CACHE_SIZE}. Direct buffers aren't cached, their size isn't
+ * accounted for in the heap budget.
+ *
+ * <p>Resolution drops the entries of unselected mods and everything on failure, the remaining entries are released by
+ * {@link ModDiscoverer#extractNestedMods} once the selected mods have been extracted.
+ */
+final class NestedJarCache {
+	private static final long DEFAULT_MAX_SIZE = 128L << 20;
+
+	private static final NestedJarCache INSTANCE = new NestedJarCache(getConfiguredMaxSize());
+
+	private final long maxSize;
+	private final Map<ModCandidate, ByteBuffer> entries = new LinkedHashMap<>(16, 0.75f, true); // access order
+	private long size;
+
+	static NestedJarCache get() {
+		return INSTANCE;
+	}
+
+	private NestedJarCache(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	synchronized ByteBuffer get(ModCandidate mod) {
+		ByteBuffer ret = entries.get(mod);
+
+		return ret != null ? ret.duplicate() : null;
+	}
+
+	synchronized boolean contains(ModCandidate mod) {
+		return entries.containsKey(mod);
+	}
+
+	/**
+	 * Add a mod's content, evicting the least recently used entries as needed.
+	 *
+	 * <p>Content larger than the whole budget and direct buffers aren't cached.
+	 */
+	synchronized void put(ModCandidate mod, ByteBuffer data) {
+		remove(mod);
+
+		if (data.isDirect()) return;
+
+		long entrySize = getSize(data);
+		if (entrySize > maxSize) return;
+
+		entries.put(mod, data);
+		size += entrySize;
+
+		for (Iterator<Map.Entry<ModCandidate, ByteBuffer>> it = entries.entrySet().iterator(); size > maxSize && it.hasNext(); ) {
+			Map.Entry<ModCandidate, ByteBuffer> entry = it.next();
+			if (entry.getKey() == mod) continue;
+
+			size -= getSize(entry.getValue());
+			it.remove();
+		}
+	}
+
+	synchronized void remove(ModCandidate mod) {
+		ByteBuffer data = entries.remove(mod);
+		if (data != null) size -= getSize(data);
+	}
+
+	synchronized void clear() {
+		entries.clear();
+		size = 0;
+	}
+
+	private static long getSize(ByteBuffer data) {
+		return data.hasArray() ? data.array().length : data.capacity(); // slices retain their whole source array
+	}
+
+	private static long getConfiguredMaxSize() {
+		String value = System.getProperty(SystemProperties.NESTED_JAR_CACHE_SIZE);
+		long ret = Math.min(DEFAULT_MAX_SIZE, Runtime.getRuntime().maxMemory() / 8);
+
+		if (value != null) {
+			try {
+				ret = Long.parseLong(value) << 20;
+			} catch (NumberFormatException e) {
+				Log.warn(LogCategory.DISCOVERY, "Invalid nested jar cache size %s, using %d MiB", value, ret >> 20);
+			}
+		}
+
+		return Math.max(ret, 0);
+	}
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.loader.api.metadata.ModDependency;
+import net.fabricmc.loader.api.metadata.version.VersionPredicate;
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent cache of the last successful solver result, allowing an unchanged mod set to skip the SAT solve.
+ *
+ * <p>Every solver input candidate is identified by a digest of everything that affects resolution: id, version,
+ * provides, load condition, origin and its effective dependencies. Version and dependency overrides are reflected by the
+ * latter as they are applied to the metadata. The cache is keyed by a digest over all candidate digests, including
+ * the preselected mods and the environment.
+ *
+ * <p>A cached selection is only replayed if it still maps to unique candidates, doesn't select any id twice and satisfies
+ * all hard dependencies and parent requirements, otherwise the solver runs as usual.
+ */
+final class ResolutionCache {
+	private static final int MAGIC = 0x46524358; // FRCX
+	private static final int FORMAT_VERSION = 1;
+	private static final int DIGEST_LENGTH = 32;
+
+	private final Path file;
+	private final byte[] key;
+	private final Map<ByteBuffer, ModCandidate> candidatesByDigest;
+	private final Map<ModCandidate, ByteBuffer> digests;
+
+	private ResolutionCache(Path file, byte[] key, Map<ByteBuffer, ModCandidate> candidatesByDigest, Map<ModCandidate, ByteBuffer> digests) {
+		this.file = file;
+		this.key = key;
+		this.candidatesByDigest = candidatesByDigest;
+		this.digests = digests;
+	}
+
+	/**
+	 * Create the cache for the current solver input.
+	 *
+	 * @param file cache file
+	 * @param envType current environment
+	 * @param candidates mods to be solved for, sorted by priority
+	 * @param preselectedMods mods that were selected before solving
+	 */
+	static ResolutionCache create(Path file, EnvType envType, List<ModCandidate> candidates, List<ModCandidate> preselectedMods) {
+		MessageDigest md = createDigest();
+		Map<ByteBuffer, ModCandidate> candidatesByDigest = new HashMap<>(candidates.size() * 2);
+		Map<ModCandidate, ByteBuffer> digests = new IdentityHashMap<>(candidates.size());
+		List<ByteBuffer> keyParts = new ArrayList<>(candidates.size() + preselectedMods.size());
+
+		for (ModCandidate mod : candidates) {
+			ByteBuffer digest = ByteBuffer.wrap(digest(mod, md));
+
+			if (candidatesByDigest.containsKey(digest)) {
+				candidatesByDigest.put(digest, null); // ambiguous, never replayed
+			} else {
+				candidatesByDigest.put(digest, mod);
+			}
+
+			digests.put(mod, digest);
+			keyParts.add(digest);
+		}
+
+		for (ModCandidate mod : preselectedMods) {
+			md.update((byte) 1); // distinguish from solver candidates
+			keyParts.add(ByteBuffer.wrap(digest(mod, md)));
+		}
+
+		keyParts.sort(null); // order independent key, the candidate order isn't necessarily stable
+
+		md.update(envType.name().getBytes(StandardCharsets.UTF_8));
+
+		for (ByteBuffer part : keyParts) {
+			md.update(part.duplicate());
+		}
+
+		return new ResolutionCache(file, md.digest(), candidatesByDigest, digests);
+	}
+
+	/**
+	 * Select the cached solver result if it is applicable to the current input.
+	 *
+	 * @return whether the cached result was selected, the selection is left unchanged otherwise
+	 */
+	boolean replay(Map<String, ModCandidate> selectedMods, List<ModCandidate> uniqueSelectedMods, CandidateIndex index) {
+		List<ModCandidate> mods = read();
+		if (mods == null) return false;
+
+		Map<String, ModCandidate> newSelectedMods = new HashMap<>(selectedMods);
+
+		for (ModCandidate mod : mods) {
+			if (newSelectedMods.put(mod.getId(), mod) != null) return false;
+
+			for (String provided : mod.getProvides()) {
+				if (newSelectedMods.put(provided, mod) != null) return false;
+			}
+		}
+
+		for (ModCandidate mod : mods) {
+			if (!ModSolver.hasAllDepsSatisfied(mod, newSelectedMods, index)
+					|| !mod.isRoot() && !ModSolver.isAnyParentSelected(mod, newSelectedMods)) {
+				Log.debug(LogCategory.RESOLUTION, "Cached resolution result is invalid for %s", mod);
+				return false;
+			}
+		}
+
+		selectedMods.putAll(newSelectedMods);
+		uniqueSelectedMods.addAll(mods);
+
+		return true;
+	}
+
+	private List<ModCandidate> read() {
+		try (DataInputStream is = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (is.readInt() != MAGIC || is.readInt() != FORMAT_VERSION) return null;
+
+			byte[] storedKey = new byte[DIGEST_LENGTH];
+			is.readFully(storedKey);
+			if (!Arrays.equals(storedKey, key)) return null;
+
+			int count = is.readInt();
+			List<ModCandidate> ret = new ArrayList<>(count);
+
+			for (int i = 0; i < count; i++) {
+				byte[] digest = new byte[DIGEST_LENGTH];
+				is.readFully(digest);
+
+				ModCandidate mod = candidatesByDigest.get(ByteBuffer.wrap(digest));
+				if (mod == null) return null; // missing or ambiguous
+
+				ret.add(mod);
+			}
+
+			return ret;
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			Log.warn(LogCategory.RESOLUTION, "Error reading resolution cache " + file, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Store the solver result for the current input.
+	 *
+	 * @param mods mods selected by the solver, excluding preselected mods
+	 */
+	void save(List<ModCandidate> mods) {
+		try {
+			Files.createDirectories(file.toAbsolutePath().getParent());
+			Path tmpFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+
+			try {
+				try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+					os.writeInt(MAGIC);
+					os.writeInt(FORMAT_VERSION);
+					os.write(key);
+					os.writeInt(mods.size());
+
+					for (ModCandidate mod : mods) {
+						ByteBuffer digest = digests.get(mod).duplicate();
+						os.write(digest.array(), digest.arrayOffset() + digest.position(), digest.remaining());
+					}
+				}
+
+				Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tmpFile);
+			}
+		} catch (IOException e) {
+			Log.warn(LogCategory.RESOLUTION, "Error writing resolution cache " + file, e);
+		}
+	}
+
+	private static byte[] digest(ModCandidate mod, MessageDigest md) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(mod.getId()).append('\0');
+		sb.append(mod.getVersion().getFriendlyString()).append('\0');
+		sb.append(mod.getProvides()).append('\0');
+		sb.append(mod.getLoadCondition()).append('\0');
+		sb.append(mod.isBuiltin()).append('\0');
+		sb.append(mod.getLocalPath()).append('\0');
+		sb.append(mod.hasPath() ? mod.getPaths() : null).append('\0');
+
+		List<String> parents = new ArrayList<>(mod.getParentMods().size());
+
+		for (ModCandidate parent : mod.getParentMods()) {
+			parents.add(parent.getId()+"@"+parent.getVersion().getFriendlyString());
+		}
+
+		parents.sort(null); // parents are linked in discovery completion order
+		sb.append(parents).append('\0');
+
+		for (ModDependency dep : mod.getDependencies()) {
+			sb.append(dep.getKind().getKey()).append(' ').append(dep.getModId()); // the kind may have been adjusted by the resolver
+
+			for (VersionPredicate predicate : dep.getVersionRequirements()) {
+				sb.append(' ').append(predicate);
+			}
+
+			sb.append('\0');
+		}
+
+		return md.digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import org.sat4j.specs.ISolver;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Statistics about a mod resolution run, for tracking resolution cost.
+ *
+ * <p>Timings are accumulated per phase, solver statistics over all solver instances involved. Partitions may be solved
+ * concurrently, so recording is thread safe.
+ */
+public final class ResolutionMetrics {
+	private final long[] phaseTimes = new long[Phase.values().length];
+	private Outcome outcome;
+	private long totalTime;
+	private int candidateCount;
+	private Map<String, Integer> candidatesPerId = Collections.emptyMap();
+	private int partitionCount;
+	private int solverCount;
+	private long variableCount;
+	private long constraintCount;
+	private long weightedObjectCount;
+	private long conflictCount;
+	private long decisionCount;
+	private long propagationCount;
+
+	public synchronized Outcome getOutcome() {
+		return outcome;
+	}
+
+	/**
+	 * Get the time spent in a phase in nanoseconds, 0 if the phase didn't run.
+	 */
+	public synchronized long getPhaseTime(Phase phase) {
+		return phaseTimes[phase.ordinal()];
+	}
+
+	/**
+	 * Get the total resolution time in nanoseconds.
+	 */
+	public synchronized long getTotalTime() {
+		return totalTime;
+	}
+
+	public synchronized int getCandidateCount() {
+		return candidateCount;
+	}
+
+	/**
+	 * Get the number of candidates per id, including provided ids.
+	 */
+	public synchronized Map<String, Integer> getCandidatesPerId() {
+		return candidatesPerId;
+	}
+
+	/**
+	 * Get the number of partitions solved separately, 0 if the problem wasn't partitioned.
+	 */
+	public synchronized int getPartitionCount() {
+		return partitionCount;
+	}
+
+	/**
+	 * Get the number of solver runs.
+	 */
+	public synchronized int getSolverCount() {
+		return solverCount;
+	}
+
+	public synchronized long getVariableCount() {
+		return variableCount;
+	}
+
+	public synchronized long getConstraintCount() {
+		return constraintCount;
+	}
+
+	public synchronized long getWeightedObjectCount() {
+		return weightedObjectCount;
+	}
+
+	public synchronized long getConflictCount() {
+		return conflictCount;
+	}
+
+	public synchronized long getDecisionCount() {
+		return decisionCount;
+	}
+
+	public synchronized long getPropagationCount() {
+		return propagationCount;
+	}
+
+	synchronized void setOutcome(Outcome outcome) {
+		this.outcome = outcome;
+	}
+
+	synchronized void setTotalTime(long startTime) {
+		totalTime = System.nanoTime() - startTime;
+	}
+
+	/**
+	 * Add the time since startTime to a phase.
+	 */
+	synchronized void addTime(Phase phase, long startTime) {
+		phaseTimes[phase.ordinal()] += System.nanoTime() - startTime;
+	}
+
+	synchronized void setCandidates(int count, Map<String, ? extends List<?>> modsById) {
+		Map<String, Integer> perId = new LinkedHashMap<>(modsById.size() * 2);
+
+		for (Map.Entry<String, ? extends List<?>> entry : modsById.entrySet()) {
+			perId.put(entry.getKey(), entry.getValue().size());
+		}
+
+		candidateCount = count;
+		candidatesPerId = Collections.unmodifiableMap(perId);
+	}
+
+	synchronized void setPartitionCount(int count) {
+		partitionCount = count;
+	}
+
+	synchronized void addWeightedObjects(int count) {
+		weightedObjectCount += count;
+	}
+
+	/**
+	 * Record the problem size and statistics of a solver that finished solving.
+	 */
+	synchronized void addSolver(ISolver solver) {
+		solverCount++;
+		variableCount += solver.nVars();
+		constraintCount += solver.nConstraints();
+
+		Map<String, Number> stats = solver.getStat();
+		conflictCount += getStat(stats, "conflicts");
+		decisionCount += getStat(stats, "decisions");
+		propagationCount += getStat(stats, "propagations");
+	}
+
+	private static long getStat(Map<String, Number> stats, String key) {
+		Number ret = stats.get(key);
+
+		return ret != null ? ret.longValue() : 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("outcome=%s, total=%.1f ms", outcome, totalTime * 1e-6));
+
+		for (Phase phase : Phase.values()) {
+			long time = phaseTimes[phase.ordinal()];
+			if (time != 0) sb.append(String.format(", %s=%.1f ms", phase.name().toLowerCase(Locale.ENGLISH), time * 1e-6));
+		}
+
+		int maxPerId = 0;
+		int multiCandidateIds = 0;
+
+		for (int count : candidatesPerId.values()) {
+			maxPerId = Math.max(maxPerId, count);
+			if (count > 1) multiCandidateIds++;
+		}
+
+		sb.append(String.format(", candidates=%d, ids=%d (%d with multiple candidates, max %d)",
+				candidateCount, candidatesPerId.size(), multiCandidateIds, maxPerId));
+
+		if (solverCount > 0) {
+			sb.append(String.format(", solvers=%d, partitions=%d, vars=%d, constraints=%d, weighted=%d, conflicts=%d, decisions=%d, propagations=%d",
+					solverCount, partitionCount, variableCount, constraintCount, weightedObjectCount, conflictCount, decisionCount, propagationCount));
+		}
+
+		return sb.toString();
+	}
+
+	public enum Phase {
+		/**
+		 * Greedy selection without solver.
+		 */
+		GREEDY,
+		/**
+		 * Resolution cache lookup, validation and update.
+		 */
+		CACHE,
+		/**
+		 * Solving the partitioned problem, including constraint generation.
+		 */
+		PARTITIONED_SOLVE,
+		/**
+		 * Constraint generation for the full problem.
+		 */
+		SETUP,
+		/**
+		 * Solving the full problem.
+		 */
+		SOLVE,
+		/**
+		 * Explaining a failed solve and determining the failed dependencies.
+		 */
+		FAILURE_ANALYSIS,
+		/**
+		 * Computing a fix for a failed solve.
+		 */
+		FIX
+	}
+
+	public enum Outcome {
+		GREEDY,
+		CACHED,
+		PARTITIONED,
+		SOLVED,
+		FAILED
+	}
+}
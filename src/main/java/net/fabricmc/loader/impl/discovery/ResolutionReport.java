@@ -0,0 +1,267 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.loader.api.metadata.version.VersionInterval;
+import net.fabricmc.loader.api.metadata.version.VersionPredicate;
+import net.fabricmc.loader.impl.discovery.ModSolver.AddModVar;
+import net.fabricmc.loader.impl.discovery.ResultAnalyzer.Problem;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Structured description of a failed mod resolution.
+ *
+ * <p>The report is built without formatting anything, the text is only rendered on demand. {@link #toJson()} provides a
+ * machine readable form with the same content for tools that present the failure themselves.
+ */
+public final class ResolutionReport {
+	/**
+	 * Maximum number of problems listed by {@link #render()}, the remainder is only counted.
+	 */
+	public static final int DEFAULT_MAX_PROBLEMS = 100;
+
+	final ModSolver.Fix fix;
+	final List<Problem> problems;
+	final Map<String, ModCandidate> selectedMods;
+	final Map<String, List<ModCandidate>> modsById;
+	final CandidateIndex index;
+	final Map<String, Set<ModCandidate>> envDisabledMods;
+	final EnvType envType;
+	private volatile String rendered;
+
+	ResolutionReport(ModSolver.Fix fix, List<Problem> problems,
+			Map<String, ModCandidate> selectedMods, Map<String, List<ModCandidate>> modsById, CandidateIndex index,
+			Map<String, Set<ModCandidate>> envDisabledMods, EnvType envType) {
+		this.fix = fix;
+		this.problems = problems;
+		this.selectedMods = selectedMods;
+		this.modsById = modsById;
+		this.index = index;
+		this.envDisabledMods = envDisabledMods;
+		this.envType = envType;
+	}
+
+	public boolean hasFix() {
+		return fix != null;
+	}
+
+	public int getProblemCount() {
+		return problems.size();
+	}
+
+	/**
+	 * Render the report as localized text with up to {@link #DEFAULT_MAX_PROBLEMS} problems, the result is cached.
+	 */
+	public String render() {
+		String ret = rendered;
+
+		if (ret == null) {
+			rendered = ret = render(DEFAULT_MAX_PROBLEMS);
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Render the report as localized text.
+	 *
+	 * @param maxProblems maximum number of problems to list, the remainder is only counted
+	 */
+	public String render(int maxProblems) {
+		return ResultAnalyzer.render(this, maxProblems);
+	}
+
+	/**
+	 * Get the report as JSON.
+	 *
+	 * <p>The root object has the keys {@code fix} (null or an object with the arrays {@code add}, {@code remove} and
+	 * {@code replace}) and {@code problems}. Mods are objects with {@code id}, {@code name} and {@code version}, version
+	 * requirements are lists of predicates or intervals in their string form.
+	 */
+	public String toJson() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"fix\":");
+
+		if (fix == null) {
+			sb.append("null");
+		} else {
+			sb.append("{\"add\":[");
+
+			boolean first = true;
+
+			for (AddModVar mod : fix.modsToAdd) {
+				if (!first) sb.append(',');
+				first = false;
+
+				sb.append("{\"id\":");
+				appendString(mod.getId(), sb);
+				sb.append(",\"versions\":");
+				appendIntervals(mod.getVersionIntervals(), sb);
+				sb.append('}');
+			}
+
+			sb.append("],\"remove\":[");
+			first = true;
+
+			for (ModCandidate mod : fix.modsToRemove) {
+				if (!first) sb.append(',');
+				first = false;
+
+				appendMod(mod, sb);
+			}
+
+			sb.append("],\"replace\":[");
+			first = true;
+
+			for (Map.Entry<AddModVar, List<ModCandidate>> entry : fix.modReplacements.entrySet()) {
+				if (!first) sb.append(',');
+				first = false;
+
+				sb.append("{\"id\":");
+				appendString(entry.getKey().getId(), sb);
+				sb.append(",\"versions\":");
+				appendIntervals(entry.getKey().getVersionIntervals(), sb);
+				sb.append(",\"replaces\":");
+				appendMods(entry.getValue(), sb);
+				sb.append('}');
+			}
+
+			sb.append("]}");
+		}
+
+		sb.append(",\"problems\":[");
+
+		for (int i = 0; i < problems.size(); i++) {
+			Problem problem = problems.get(i);
+			if (i > 0) sb.append(',');
+
+			sb.append("{\"mod\":");
+			appendMod(problem.mod, sb);
+			sb.append(",\"kind\":");
+			appendString(problem.dep.getKind().getKey(), sb);
+			sb.append(",\"dependency\":");
+			appendString(problem.dep.getModId(), sb);
+			sb.append(",\"requirements\":[");
+
+			boolean first = true;
+
+			for (VersionPredicate predicate : problem.dep.getVersionRequirements()) {
+				if (!first) sb.append(',');
+				first = false;
+
+				appendString(predicate.toString(), sb);
+			}
+
+			sb.append("],\"reason\":");
+			appendString(problem.reason, sb);
+			sb.append(",\"candidates\":");
+			appendMods(problem.matches, sb);
+			sb.append('}');
+		}
+
+		sb.append("]}");
+
+		return sb.toString();
+	}
+
+	@Override
+	public String toString() {
+		return render();
+	}
+
+	private static void appendMods(Collection<ModCandidate> mods, StringBuilder sb) {
+		sb.append('[');
+
+		boolean first = true;
+
+		for (ModCandidate mod : mods) {
+			if (!first) sb.append(',');
+			first = false;
+
+			appendMod(mod, sb);
+		}
+
+		sb.append(']');
+	}
+
+	private static void appendMod(ModCandidate mod, StringBuilder sb) {
+		sb.append("{\"id\":");
+		appendString(mod.getId(), sb);
+		sb.append(",\"name\":");
+		appendString(mod.getMetadata().getName(), sb);
+		sb.append(",\"version\":");
+		appendString(mod.getVersion().getFriendlyString(), sb);
+
+		if (mod.hasPath() && !mod.isBuiltin()) {
+			sb.append(",\"path\":");
+			appendString(mod.getLocalPath(), sb);
+		}
+
+		sb.append('}');
+	}
+
+	private static void appendIntervals(Collection<VersionInterval> intervals, StringBuilder sb) {
+		sb.append('[');
+
+		boolean first = true;
+
+		for (VersionInterval interval : intervals) {
+			if (interval == null) continue; // empty interval
+
+			if (!first) sb.append(',');
+			first = false;
+
+			appendString(interval.toString(), sb);
+		}
+
+		sb.append(']');
+	}
+
+	private static void appendString(String str, StringBuilder sb) {
+		if (str == null) {
+			sb.append("null");
+			return;
+		}
+
+		sb.append('"');
+
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+
+			switch (c) {
+			case '"': sb.append("\\\""); break;
+			case '\\': sb.append("\\\\"); break;
+			case '\n': sb.append("\\n"); break;
+			case '\r': sb.append("\\r"); break;
+			case '\t': sb.append("\\t"); break;
+			default:
+				if (c < 0x20) {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+
+		sb.append('"');
+	}
+}
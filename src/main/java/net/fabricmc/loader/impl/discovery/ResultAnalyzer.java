@@ -37,48 +37,99 @@ final class ResultAnalyzer {
 	private static final boolean SHOW_PATH_INFO = false;
 	private static final boolean SHOW_INACTIVE = false;
 
-	@SuppressWarnings("unused")
-	static String gatherErrors(ModSolver.Result result, Map<String, ModCandidate> selectedMods, Map<String, List<ModCandidate>> modsById,
+	/**
+	 * Build the structured failure report for a failed resolution, rendering happens lazily through {@link ResolutionReport}.
+	 */
+	static ResolutionReport analyzeErrors(ModSolver.Result result, Map<String, ModCandidate> selectedMods, Map<String, List<ModCandidate>> modsById, CandidateIndex index,
 			Map<String, Set<ModCandidate>> envDisabledMods, EnvType envType) {
+		List<Problem> problems = new ArrayList<>(result.reason.size());
+
+		for (Explanation explanation : result.reason) {
+			assert explanation.error.isDependencyError;
+
+			ModDependency dep = explanation.dep;
+			ModCandidate selected = selectedMods.get(dep.getModId());
+			List<ModCandidate> matches;
+
+			if (selected != null) {
+				matches = Collections.singletonList(selected);
+			} else {
+				List<ModCandidate> candidates = modsById.get(dep.getModId());
+				matches = candidates != null ? new ArrayList<>(candidates) : Collections.emptyList();
+			}
+
+			problems.add(createProblem(explanation.mod, dep, matches, index, envDisabledMods.containsKey(dep.getModId())));
+		}
+
+		return new ResolutionReport(result.fix, problems, selectedMods, modsById, index, envDisabledMods, envType);
+	}
+
+	/**
+	 * Render a failure report as text.
+	 *
+	 * <p>The problems are grouped by the failing mod, the groups are rendered concurrently. Problems beyond maxProblems
+	 * are only summarized by their count.
+	 */
+	@SuppressWarnings("unused")
+	static String render(ResolutionReport report, int maxProblems) {
 		StringWriter sw = new StringWriter();
 
 		try (PrintWriter pw = new PrintWriter(sw)) {
+			ModSolver.Fix fix = report.fix;
 			String prefix = "";
 			boolean suggestFix = true;
 
-			if (result.fix != null) {
+			if (fix != null) {
 				pw.printf("\n%s", Localization.format("resolution.solutionHeader"));
 
-				formatFix(result.fix, result, selectedMods, modsById, envDisabledMods, envType, pw);
+				formatFix(fix, report.selectedMods, report.modsById, report.index, report.envDisabledMods, report.envType, pw);
 
 				pw.printf("\n%s", Localization.format("resolution.depListHeader"));
 				prefix = "\t";
 				suggestFix = false;
 			}
 
-			List<ModCandidate> matches = new ArrayList<>();
+			// group by failing mod in order of appearance
 
-			for (Explanation explanation : result.reason) {
-				assert explanation.error.isDependencyError;
+			List<Problem> problems = report.problems;
+			int count = Math.min(problems.size(), Math.max(maxProblems, 0));
+			Map<ModCandidate, List<Problem>> groups = new LinkedHashMap<>();
 
-				ModDependency dep = explanation.dep;
-				ModCandidate selected = selectedMods.get(dep.getModId());
+			for (int i = 0; i < count; i++) {
+				Problem problem = problems.get(i);
+				groups.computeIfAbsent(problem.mod, ignore -> new ArrayList<>()).add(problem);
+			}
 
-				if (selected != null) {
-					matches.add(selected);
-				} else {
-					List<ModCandidate> candidates = modsById.get(dep.getModId());
-					if (candidates != null) matches.addAll(candidates);
-				}
+			List<DiscoveryScheduler.CpuTask<String, RuntimeException>> tasks = new ArrayList<>(groups.size());
+			String groupPrefix = prefix;
+			boolean groupSuggestFix = suggestFix;
+
+			for (List<Problem> group : groups.values()) {
+				tasks.add(() -> {
+					StringWriter groupSw = new StringWriter();
+
+					try (PrintWriter groupPw = new PrintWriter(groupSw)) {
+						for (Problem problem : group) {
+							renderProblem(problem, groupSuggestFix, groupPrefix, groupPw);
+						}
+					}
+
+					return groupSw.toString();
+				});
+			}
 
-				addErrorToList(explanation.mod, explanation.dep, matches, envDisabledMods.containsKey(dep.getModId()), suggestFix, prefix, pw);
-				matches.clear();
+			for (String text : DiscoveryScheduler.get().computeAll(tasks)) {
+				pw.print(text);
 			}
 
-			if (SHOW_INACTIVE && result.fix != null && !result.fix.inactiveMods.isEmpty()) {
+			if (count < problems.size()) {
+				pw.printf("\n%s - %s", prefix, Localization.format("resolution.moreProblems", problems.size() - count));
+			}
+
+			if (SHOW_INACTIVE && fix != null && !fix.inactiveMods.isEmpty()) {
 				pw.printf("\n%s", Localization.format("resolution.inactiveMods"));
 
-				List<Entry<ModCandidate, InactiveReason>> entries = new ArrayList<>(result.fix.inactiveMods.entrySet());
+				List<Entry<ModCandidate, InactiveReason>> entries = new ArrayList<>(fix.inactiveMods.entrySet());
 
 				// sort by root, id, version
 				entries.sort(new Comparator<Entry<ModCandidate, ?>>() {
@@ -113,7 +164,7 @@ final class ResultAnalyzer {
 	}
 
 	private static void formatFix(ModSolver.Fix fix,
-			ModSolver.Result result, Map<String, ModCandidate> selectedMods, Map<String, List<ModCandidate>> modsById,
+			Map<String, ModCandidate> selectedMods, Map<String, List<ModCandidate>> modsById, CandidateIndex index,
 			Map<String, Set<ModCandidate>> envDisabledMods, EnvType envType,
 			PrintWriter pw) {
 		for (AddModVar mod : fix.modsToAdd) {
@@ -181,7 +232,7 @@ final class ResultAnalyzer {
 						ModCandidate mod = fix.activeMods.get(dep.getModId());
 
 						if (mod != null) {
-							if (dep.matches(mod.getVersion()) != dep.getKind().isPositive()) {
+							if (index.matches(dep, mod) != dep.getKind().isPositive()) {
 								pw.printf("\n\t\t - %s", Localization.format("resolution.solution.replaceModVersionDifferent.reqSupportedModVersion",
 										mod.getId(),
 										getVersion(mod)));
@@ -210,7 +261,7 @@ final class ResultAnalyzer {
 		}
 	}
 
-	static String gatherWarnings(List<ModCandidate> uniqueSelectedMods, Map<String, ModCandidate> selectedMods,
+	static String gatherWarnings(List<ModCandidate> uniqueSelectedMods, Map<String, ModCandidate> selectedMods, CandidateIndex index,
 			Map<String, Set<ModCandidate>> envDisabledMods, EnvType envType) {
 		StringWriter sw = new StringWriter();
 
@@ -223,16 +274,16 @@ final class ResultAnalyzer {
 					case RECOMMENDS:
 						depMod = selectedMods.get(dep.getModId());
 
-						if (depMod == null || !dep.matches(depMod.getVersion())) {
-							addErrorToList(mod, dep, toList(depMod), envDisabledMods.containsKey(dep.getModId()), true, "", pw);
+						if (depMod == null || !index.matches(dep, depMod)) {
+							renderProblem(createProblem(mod, dep, toList(depMod), index, envDisabledMods.containsKey(dep.getModId())), true, "", pw);
 						}
 
 						break;
 					case CONFLICTS:
 						depMod = selectedMods.get(dep.getModId());
 
-						if (depMod != null && dep.matches(depMod.getVersion())) {
-							addErrorToList(mod, dep, toList(depMod), false, true, "", pw);
+						if (depMod != null && index.matches(dep, depMod)) {
+							renderProblem(createProblem(mod, dep, toList(depMod), index, false), true, "", pw);
 						}
 
 						break;
@@ -254,16 +305,8 @@ final class ResultAnalyzer {
 		return mod != null ? Collections.singletonList(mod) : Collections.emptyList();
 	}
 
-	private static void addErrorToList(ModCandidate mod, ModDependency dep, List<ModCandidate> matches, boolean presentForOtherEnv, boolean suggestFix, String prefix, PrintWriter pw) {
-		Object[] args = new Object[] {
-				getName(mod),
-				getVersion(mod),
-				(matches.isEmpty() ? dep.getModId() : getName(matches.get(0))),
-				formatVersionRequirements(dep.getVersionIntervals()),
-				getVersions(matches),
-				matches.size()
-		};
-
+	private static Problem createProblem(ModCandidate mod, ModDependency dep, List<ModCandidate> matches, CandidateIndex index,
+			boolean presentForOtherEnv) {
 		String reason;
 
 		if (!matches.isEmpty()) {
@@ -273,7 +316,7 @@ final class ResultAnalyzer {
 				present = false;
 
 				for (ModCandidate match : matches) {
-					if (dep.matches(match.getVersion())) { // there is a satisfying mod version, but it can't be loaded for other reasons
+					if (index.matches(dep, match)) { // there is a satisfying mod version, but it can't be loaded for other reasons
 						present = true;
 						break;
 					}
@@ -289,7 +332,23 @@ final class ResultAnalyzer {
 			reason = "missing";
 		}
 
-		String key = String.format("resolution.%s.%s", dep.getKind().getKey(), reason);
+		return new Problem(mod, dep, matches, reason);
+	}
+
+	private static void renderProblem(Problem problem, boolean suggestFix, String prefix, PrintWriter pw) {
+		ModCandidate mod = problem.mod;
+		ModDependency dep = problem.dep;
+		List<ModCandidate> matches = problem.matches;
+		Object[] args = new Object[] {
+				getName(mod),
+				getVersion(mod),
+				(matches.isEmpty() ? dep.getModId() : getName(matches.get(0))),
+				formatVersionRequirements(dep.getVersionIntervals()),
+				getVersions(matches),
+				matches.size()
+		};
+
+		String key = String.format("resolution.%s.%s", dep.getKind().getKey(), problem.reason);
 		pw.printf("\n%s - %s", prefix, StringUtil.capitalize(Localization.format(key, args)));
 
 		if (suggestFix) {
@@ -524,4 +583,21 @@ final class ResultAnalyzer {
 
 		return ret;
 	}
+
+	/**
+	 * A dependency that caused the resolution to fail or is worth a warning.
+	 */
+	static final class Problem {
+		final ModCandidate mod;
+		final ModDependency dep;
+		final List<ModCandidate> matches; // candidates for the dependency's id
+		final String reason; // invalid, mismatch, envDisabled or missing
+
+		Problem(ModCandidate mod, ModDependency dep, List<ModCandidate> matches, String reason) {
+			this.mod = mod;
+			this.dep = dep;
+			this.matches = matches;
+			this.reason = reason;
+		}
+	}
 }
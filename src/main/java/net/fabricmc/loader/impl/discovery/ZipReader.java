@@ -0,0 +1,475 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Minimal zip reader for probing mod jars, operating on either a file or a byte buffer holding a complete zip file.
+ *
+ * <p>Only the end of central directory record and the central directory are read, the central directory is indexed by
+ * entry name once when opening the zip. Entry data is accessed through the local header offset without touching any
+ * other entry. Stored entries of buffer backed zips are returned without copying as a slice of the source buffer, those
+ * of file backed zips are read into the heap. Memory mapping them would keep the file locked on Windows until the mapping
+ * gets garbage collected. Entries larger than 2 GiB are rejected.
+ *
+ * <p>Instances may be shared between threads.
+ */
+final class ZipReader implements Closeable {
+	private static final int EOCD_SIGNATURE = 0x06054b50;
+	private static final int EOCD_SIZE = 22;
+	private static final int ZIP64_EOCD_LOCATOR_SIGNATURE = 0x07064b50;
+	private static final int ZIP64_EOCD_LOCATOR_SIZE = 20;
+	private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+	private static final int ZIP64_EOCD_SIZE = 56;
+	private static final int CEN_SIGNATURE = 0x02014b50;
+	private static final int CEN_SIZE = 46;
+	private static final int LOC_SIGNATURE = 0x04034b50;
+	private static final int LOC_SIZE = 30;
+	private static final int ZIP64_EXTRA_ID = 0x0001;
+	private static final int MAX_COMMENT_LENGTH = 0xffff;
+
+	private final FileChannel channel; // source file, null if reading from a buffer
+	private final ByteBuffer buffer; // little endian view of the whole zip if reading from a buffer, null otherwise
+	private final long length;
+	private final Map<String, Entry> entries;
+	private final int entryCount;
+	private final long baseOffset; // start of the zip data, non-zero if the zip has been prefixed with other data
+
+	/**
+	 * Open a zip file, reading its central directory.
+	 *
+	 * <p>The returned reader has to be closed, data returned from {@link #getStoredData} stays valid after closing it.
+	 */
+	static ZipReader open(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+		try {
+			return new ZipReader(channel, null);
+		} catch (Throwable t) {
+			channel.close();
+			throw t;
+		}
+	}
+
+	/**
+	 * Create a reader for a zip held in a byte buffer, the buffer's content must not be modified while it is in use.
+	 */
+	ZipReader(ByteBuffer buffer) throws IOException {
+		this(null, buffer.slice().order(ByteOrder.LITTLE_ENDIAN));
+	}
+
+	private ZipReader(FileChannel channel, ByteBuffer buffer) throws IOException {
+		this.channel = channel;
+		this.buffer = buffer;
+		this.length = channel != null ? channel.size() : buffer.limit();
+
+		int tailLength = (int) Math.min(length, EOCD_SIZE + MAX_COMMENT_LENGTH);
+		long tailStart = length - tailLength;
+		long eocd = tailStart + findEocd(read(tailStart, tailLength));
+		ByteBuffer eocdBuf = read(eocd, EOCD_SIZE);
+
+		long cenSize = getUInt(eocdBuf, 12);
+		long cenOffset = getUInt(eocdBuf, 16);
+		long count = getUShort(eocdBuf, 10);
+		long cenEnd = eocd;
+
+		if (cenOffset == 0xffffffffL || cenSize == 0xffffffffL || count == 0xffff) {
+			long locator = eocd - ZIP64_EOCD_LOCATOR_SIZE;
+
+			if (locator >= 0 && read(locator, ZIP64_EOCD_LOCATOR_SIZE).getInt(0) == ZIP64_EOCD_LOCATOR_SIGNATURE) {
+				long declared = read(locator, ZIP64_EOCD_LOCATOR_SIZE).getLong(8);
+				long pos = locator - ZIP64_EOCD_SIZE; // usual location without extensible data, also covers prefixed zips
+
+				if (declared >= 0 && declared < pos && read(declared, 4).getInt(0) == ZIP64_EOCD_SIGNATURE) {
+					pos = declared;
+				}
+
+				if (pos < 0) throw new ZipException("invalid zip64 end of central directory");
+
+				ByteBuffer record = read(pos, ZIP64_EOCD_SIZE);
+				if (record.getInt(0) != ZIP64_EOCD_SIGNATURE) throw new ZipException("invalid zip64 end of central directory");
+
+				count = record.getLong(32);
+				cenSize = record.getLong(40);
+				cenOffset = record.getLong(48);
+				cenEnd = pos;
+			}
+		}
+
+		if (cenSize < 0 || cenSize > cenEnd || cenSize > Integer.MAX_VALUE) throw new ZipException("invalid central directory size");
+
+		long cenStart = cenEnd - cenSize;
+
+		this.baseOffset = cenStart - cenOffset;
+		this.entryCount = (int) Math.min(count, Integer.MAX_VALUE);
+
+		if (baseOffset < 0) throw new ZipException("invalid central directory offset");
+
+		this.entries = readEntries(read(cenStart, (int) cenSize), entryCount);
+	}
+
+	private static Map<String, Entry> readEntries(ByteBuffer cen, int count) throws IOException {
+		Map<String, Entry> ret = new HashMap<>(Math.min(count, cen.limit() / CEN_SIZE) * 4 / 3 + 1);
+		int end = cen.limit();
+		int pos = 0;
+
+		while (pos < end) {
+			if (pos + CEN_SIZE > end || cen.getInt(pos) != CEN_SIGNATURE) throw new ZipException("invalid central directory header");
+
+			int nameLen = getUShort(cen, pos + 28);
+			int extraLen = getUShort(cen, pos + 30);
+			int commentLen = getUShort(cen, pos + 32);
+			int next = pos + CEN_SIZE + nameLen + extraLen + commentLen;
+			if (next > end) throw new ZipException("invalid central directory header");
+
+			byte[] nameBytes = new byte[nameLen];
+			cen.get(pos + CEN_SIZE, nameBytes);
+			String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+			// the first entry wins for duplicate names, as with a sequential search
+			if (!ret.containsKey(name)) ret.put(name, readEntry(cen, pos, name, nameLen, extraLen));
+
+			pos = next;
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Get the number of entries as declared by the end of central directory record.
+	 */
+	int size() {
+		return entryCount;
+	}
+
+	/**
+	 * Find an entry by its exact name.
+	 *
+	 * @return the entry, or null if there is none with that name
+	 */
+	Entry getEntry(String name) {
+		return entries.get(name);
+	}
+
+	/**
+	 * Get the data of a stored entry, as a slice of the source buffer or a heap copy read from the source file.
+	 */
+	ByteBuffer getStoredData(Entry entry) throws IOException {
+		if (!entry.isStored()) throw new ZipException("entry "+entry.name+" is not stored");
+
+		checkSize(entry);
+		long start = getDataStart(entry);
+
+		return read(start, (int) entry.compressedSize);
+	}
+
+	/**
+	 * Copy the data of a stored entry to a channel without buffering it on the heap, file backed readers let the OS
+	 * transfer the data directly.
+	 */
+	void transferStoredData(Entry entry, WritableByteChannel target) throws IOException {
+		if (!entry.isStored()) throw new ZipException("entry "+entry.name+" is not stored");
+
+		checkSize(entry);
+		long start = getDataStart(entry);
+		long end = start + entry.compressedSize;
+
+		if (buffer != null) {
+			ByteBuffer data = read(start, (int) entry.compressedSize);
+
+			while (data.hasRemaining()) {
+				target.write(data);
+			}
+		} else {
+			for (long pos = start; pos < end; ) {
+				long count = channel.transferTo(pos, end - pos, target);
+				if (count <= 0) throw new EOFException("truncated entry "+entry.name);
+
+				pos += count;
+			}
+		}
+	}
+
+	/**
+	 * Open a stream for an entry's uncompressed content.
+	 */
+	InputStream getInputStream(Entry entry) throws IOException {
+		checkSize(entry);
+		long start = getDataStart(entry);
+		InputStream ret;
+
+		if (buffer != null) {
+			ret = new ByteBufferInputStream(read(start, (int) entry.compressedSize));
+		} else {
+			ret = new ChannelInputStream(channel, start, start + entry.compressedSize);
+		}
+
+		switch (entry.method) {
+		case ZipEntry.STORED:
+			return ret;
+		case ZipEntry.DEFLATED:
+			return new EntryInflaterInputStream(ret, entry.size);
+		default:
+			throw new ZipException(String.format("unsupported compression method %d for entry %s", entry.method, entry.name));
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null) channel.close();
+	}
+
+	private static void checkSize(Entry entry) throws ZipException {
+		if (entry.compressedSize > Integer.MAX_VALUE || entry.size > Integer.MAX_VALUE) {
+			throw new ZipException("entry "+entry.name+" is larger than 2 GiB");
+		}
+	}
+
+	private long getDataStart(Entry entry) throws IOException {
+		long pos = baseOffset + entry.localHeaderOffset;
+		ByteBuffer header = read(pos, LOC_SIZE);
+		if (header.getInt(0) != LOC_SIGNATURE) throw new ZipException("invalid local header for entry "+entry.name);
+
+		long ret = pos + LOC_SIZE + getUShort(header, 26) + getUShort(header, 28);
+		if (ret + entry.compressedSize > length) throw new ZipException("truncated data for entry "+entry.name);
+
+		return ret;
+	}
+
+	/**
+	 * Read a region of the zip, as a slice if reading from a buffer or a heap copy otherwise.
+	 */
+	private ByteBuffer read(long pos, int len) throws IOException {
+		if (pos < 0 || pos + len > length) throw new ZipException("invalid offset "+pos);
+
+		if (buffer != null) {
+			ByteBuffer ret = buffer.duplicate();
+			ret.limit((int) pos + len).position((int) pos);
+
+			return ret.slice().order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		ByteBuffer ret = ByteBuffer.allocate(len).order(ByteOrder.LITTLE_ENDIAN);
+
+		while (ret.hasRemaining()) {
+			if (channel.read(ret, pos + ret.position()) < 0) throw new EOFException();
+		}
+
+		ret.flip();
+
+		return ret;
+	}
+
+	private static Entry readEntry(ByteBuffer cen, int pos, String name, int nameLen, int extraLen) throws IOException {
+		int method = getUShort(cen, pos + 10);
+		long crc = getUInt(cen, pos + 16);
+		long compressedSize = getUInt(cen, pos + 20);
+		long size = getUInt(cen, pos + 24);
+		long localHeaderOffset = getUInt(cen, pos + 42);
+
+		if (size == 0xffffffffL || compressedSize == 0xffffffffL || localHeaderOffset == 0xffffffffL) {
+			// values are in the zip64 extra field, present in the order below for only the overflowing fields
+			int extraPos = pos + CEN_SIZE + nameLen;
+			int extraEnd = extraPos + extraLen;
+
+			while (extraPos + 4 <= extraEnd) {
+				int id = getUShort(cen, extraPos);
+				int len = getUShort(cen, extraPos + 2);
+				int dataPos = extraPos + 4;
+				extraPos = dataPos + len;
+
+				if (id != ZIP64_EXTRA_ID) continue;
+				if (extraPos > extraEnd) break;
+
+				if (size == 0xffffffffL && dataPos + 8 <= extraPos) {
+					size = cen.getLong(dataPos);
+					dataPos += 8;
+				}
+
+				if (compressedSize == 0xffffffffL && dataPos + 8 <= extraPos) {
+					compressedSize = cen.getLong(dataPos);
+					dataPos += 8;
+				}
+
+				if (localHeaderOffset == 0xffffffffL && dataPos + 8 <= extraPos) {
+					localHeaderOffset = cen.getLong(dataPos);
+				}
+
+				break;
+			}
+		}
+
+		if (size < 0 || compressedSize < 0 || localHeaderOffset < 0) throw new ZipException("invalid sizes for entry "+name);
+
+		return new Entry(name, method, crc, compressedSize, size, localHeaderOffset);
+	}
+
+	private static int findEocd(ByteBuffer buffer) throws ZipException {
+		int limit = buffer.limit();
+
+		for (int pos = limit - EOCD_SIZE; pos >= 0; pos--) {
+			if (buffer.getInt(pos) == EOCD_SIGNATURE && pos + EOCD_SIZE + getUShort(buffer, pos + 20) == limit) {
+				return pos;
+			}
+		}
+
+		throw new ZipException("missing end of central directory, not a zip file");
+	}
+
+	private static int getUShort(ByteBuffer buffer, int pos) {
+		return buffer.getShort(pos) & 0xffff;
+	}
+
+	private static long getUInt(ByteBuffer buffer, int pos) {
+		return buffer.getInt(pos) & 0xffffffffL;
+	}
+
+	static final class Entry {
+		final String name;
+		final int method;
+		final long crc;
+		final long compressedSize;
+		final long size;
+		final long localHeaderOffset;
+
+		Entry(String name, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+			this.name = name;
+			this.method = method;
+			this.crc = crc;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.localHeaderOffset = localHeaderOffset;
+		}
+
+		boolean isDirectory() {
+			return name.endsWith("/");
+		}
+
+		boolean isStored() {
+			return method == ZipEntry.STORED;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**
+	 * Stream over a region of a file channel using positional reads, leaving the channel position untouched.
+	 */
+	private static final class ChannelInputStream extends InputStream {
+		private final FileChannel channel;
+		private final long end;
+		private long pos;
+
+		ChannelInputStream(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.pos = start;
+			this.end = end;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] ret = new byte[1];
+
+			return read(ret, 0, 1) > 0 ? ret[0] & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) return 0;
+			if (pos >= end) return -1;
+
+			int count = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - pos)), pos);
+			if (count > 0) pos += count;
+
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return (int) Math.min(end - pos, Integer.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Inflater stream for raw deflate data that releases its inflater on close and supplies the trailing dummy byte the
+	 * inflater may require in nowrap mode.
+	 */
+	private static final class EntryInflaterInputStream extends InflaterInputStream {
+		private final long size;
+		private boolean eof;
+		private boolean closed;
+
+		EntryInflaterInputStream(InputStream in, long size) {
+			super(in, new Inflater(true), (int) Math.max(64, Math.min(size, 8192)));
+
+			this.size = size;
+		}
+
+		@Override
+		protected void fill() throws IOException {
+			if (eof) throw new EOFException("Unexpected end of ZLIB input stream");
+
+			len = in.read(buf, 0, buf.length);
+
+			if (len == -1) {
+				buf[0] = 0;
+				len = 1;
+				eof = true;
+			}
+
+			inf.setInput(buf, 0, len);
+		}
+
+		@Override
+		public int available() throws IOException {
+			if (closed) return 0;
+
+			long ret = size - inf.getBytesWritten();
+
+			return ret > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math.max(0, ret);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) return;
+
+			closed = true;
+			inf.end();
+			super.close();
+		}
+	}
+}
@@ -235,7 +235,7 @@ public class JsonReader implements Closeable {
 	 * We decode literals directly out of this buffer, so it must be at least as
 	 * long as the longest token that can be reported as a number.
 	 */
-	private char[] buffer = new char[8192]; // Fabric - increase buffer size, remove final for resizing
+	private char[] buffer; // Fabric - increase buffer size, remove final for resizing, allocate on first peek
 	private int pos = 0;
 	private int limit = 0;
 
@@ -459,6 +459,9 @@ public class JsonReader implements Closeable {
 	}
 
 	int doPeek() throws IOException {
+		// Fabric - allocate the buffer lazily, subclasses overriding the reading methods never use it
+		if (buffer == null) buffer = new char[8192];
+
 		int peekStack = stack[stackSize - 1];
 		if (peekStack == JsonScope.EMPTY_ARRAY) {
 			stack[stackSize - 1] = JsonScope.NONEMPTY_ARRAY;
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.mappings;
+
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
+import net.minecraftforge.srgutils.IMappingBuilder;
+import net.minecraftforge.srgutils.IMappingFile;
+import net.minecraftforge.srgutils.INamedMappingFile;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary representation of a named mapping file, used to skip parsing and merging the shipped TSRG mappings on
+ * subsequent launches.
+ *
+ * <p>The file consists of a header with the cache key, the namespace list, a string table holding every distinct name
+ * and descriptor exactly once, followed by packages and classes with their methods and fields in the mapping file's
+ * iteration order. All names are stored as indices into the string table, so names repeated across namespaces or
+ * members are decoded once and shared by the rebuilt mapping tree.</p>
+ *
+ * <p>This is a plain serialized form of the mapping tree, it is read back into a regular {@link INamedMappingFile} and
+ * not used for lookups directly.</p>
+ */
+public final class MappingCache {
+    private static final int MAGIC = 0x46464D43; // FFMC
+    private static final int FORMAT_VERSION = 2;
+    private static final int NO_DESCRIPTOR = -1;
+
+    private MappingCache() {
+    }
+
+    /**
+     * Create the cache key for the given inputs, any change to them invalidates the cache.
+     *
+     * @param mappings raw content of the source mappings file
+     * @param runtimeNamespace the namespace FML is running in
+     * @param gameVersion the game version
+     * @param nameSourceVersion version of the data backing the runtime name function, e.g. the MCP config version
+     * @return the cache key
+     */
+    public static String createKey(byte[] mappings, String runtimeNamespace, String gameVersion, String nameSourceVersion) {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for (byte b : digest.digest(mappings)) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+
+        return String.format("%s/%s/%s/%s", sb, runtimeNamespace, gameVersion, nameSourceVersion);
+    }
+
+    /**
+     * Read cached mappings.
+     *
+     * @param file the cache file
+     * @param key the expected cache key
+     * @return the cached mappings, or {@code null} if the cache is missing, outdated or unreadable
+     */
+    public static INamedMappingFile read(Path file, String key) {
+        ByteBuffer buf;
+
+        try {
+            buf = ByteBuffer.wrap(Files.readAllBytes(file));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            Log.warn(LogCategory.MAPPINGS, "Error opening mapping cache " + file, e);
+            return null;
+        }
+
+        try {
+            if (buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION) {
+                Log.debug(LogCategory.MAPPINGS, "Discarding mapping cache %s with unknown format", file);
+                return null;
+            }
+
+            String storedKey = readString(buf);
+
+            if (!storedKey.equals(key)) {
+                Log.debug(LogCategory.MAPPINGS, "Discarding outdated mapping cache %s (%s != %s)", file, storedKey, key);
+                return null;
+            }
+
+            String[] strings = new String[buf.getInt()];
+
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(buf);
+            }
+
+            String[] namespaces = readNames(buf, strings, buf.getInt());
+            int nsCount = namespaces.length;
+            IMappingBuilder builder = IMappingBuilder.create(namespaces);
+
+            for (int i = 0, max = buf.getInt(); i < max; i++) {
+                builder.addPackage(readNames(buf, strings, nsCount));
+            }
+
+            for (int i = 0, classCount = buf.getInt(); i < classCount; i++) {
+                IMappingBuilder.IClass cls = builder.addClass(readNames(buf, strings, nsCount));
+
+                for (int j = 0, max = buf.getInt(); j < max; j++) {
+                    String desc = strings[buf.getInt()];
+                    cls.method(desc, readNames(buf, strings, nsCount));
+                }
+
+                for (int j = 0, max = buf.getInt(); j < max; j++) {
+                    int desc = buf.getInt();
+                    IMappingBuilder.IField field = cls.field(readNames(buf, strings, nsCount));
+                    if (desc != NO_DESCRIPTOR) field.descriptor(strings[desc]);
+                }
+            }
+
+            if (buf.hasRemaining()) throw new IOException("trailing data");
+
+            return builder.build();
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            Log.warn(LogCategory.MAPPINGS, "Discarding corrupt mapping cache " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Write mappings to the cache, replacing any previous content atomically.
+     *
+     * @param file the cache file
+     * @param key the cache key to store
+     * @param mappings the mappings to store
+     */
+    public static void write(Path file, String key, INamedMappingFile mappings) throws IOException {
+        List<String> namespaces = mappings.getNames();
+        int nsCount = namespaces.size();
+        IMappingFile[] maps = new IMappingFile[nsCount];
+
+        for (int i = 1; i < nsCount; i++) {
+            maps[i] = mappings.getMap(namespaces.get(0), namespaces.get(i));
+        }
+
+        // collect entries, assigning string table indices in encounter order
+
+        StringTable strings = new StringTable();
+        List<int[]> packages = new ArrayList<>();
+        List<ClassEntry> classes = new ArrayList<>();
+        int[] nsNames = strings.indices(namespaces.toArray(new String[0]));
+
+        for (IMappingFile.IPackage pkg : maps[1].getPackages()) {
+            String[] names = new String[nsCount];
+            names[0] = pkg.getOriginal();
+
+            for (int i = 1; i < nsCount; i++) {
+                names[i] = maps[i].getPackage(pkg.getOriginal()).getMapped();
+            }
+
+            packages.add(strings.indices(names));
+        }
+
+        for (IMappingFile.IClass cls : maps[1].getClasses()) {
+            IMappingFile.IClass[] nsClasses = new IMappingFile.IClass[nsCount];
+            String[] names = new String[nsCount];
+            names[0] = cls.getOriginal();
+
+            for (int i = 1; i < nsCount; i++) {
+                nsClasses[i] = maps[i].getClass(cls.getOriginal());
+                names[i] = nsClasses[i].getMapped();
+            }
+
+            ClassEntry entry = new ClassEntry(strings.indices(names));
+
+            for (IMappingFile.IMethod mtd : cls.getMethods()) {
+                names[0] = mtd.getOriginal();
+
+                for (int i = 1; i < nsCount; i++) {
+                    names[i] = nsClasses[i].getMethod(mtd.getOriginal(), mtd.getDescriptor()).getMapped();
+                }
+
+                entry.methods.add(prepend(strings.index(mtd.getDescriptor()), strings.indices(names)));
+            }
+
+            for (IMappingFile.IField fd : cls.getFields()) {
+                names[0] = fd.getOriginal();
+
+                for (int i = 1; i < nsCount; i++) {
+                    names[i] = nsClasses[i].getField(fd.getOriginal()).getMapped();
+                }
+
+                int desc = fd.getDescriptor() != null ? strings.index(fd.getDescriptor()) : NO_DESCRIPTOR;
+                entry.fields.add(prepend(desc, strings.indices(names)));
+            }
+
+            classes.add(entry);
+        }
+
+        // write to a temporary file first so concurrent or aborted writes never leave a partial cache behind
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmpFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+
+        try {
+            try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                os.writeInt(MAGIC);
+                os.writeInt(FORMAT_VERSION);
+                writeString(os, key);
+
+                os.writeInt(strings.values.size());
+
+                for (String s : strings.values) {
+                    writeString(os, s);
+                }
+
+                os.writeInt(nsCount);
+                writeInts(os, nsNames);
+
+                os.writeInt(packages.size());
+
+                for (int[] pkg : packages) {
+                    writeInts(os, pkg);
+                }
+
+                os.writeInt(classes.size());
+
+                for (ClassEntry cls : classes) {
+                    writeInts(os, cls.names);
+                    os.writeInt(cls.methods.size());
+
+                    for (int[] mtd : cls.methods) {
+                        writeInts(os, mtd);
+                    }
+
+                    os.writeInt(cls.fields.size());
+
+                    for (int[] fd : cls.fields) {
+                        writeInts(os, fd);
+                    }
+                }
+            }
+
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    private static String[] readNames(ByteBuffer buf, String[] strings, int count) {
+        String[] ret = new String[count];
+
+        for (int i = 0; i < count; i++) {
+            ret[i] = strings[buf.getInt()];
+        }
+
+        return ret;
+    }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream os, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        os.writeInt(bytes.length);
+        os.write(bytes);
+    }
+
+    private static void writeInts(DataOutputStream os, int[] values) throws IOException {
+        for (int value : values) {
+            os.writeInt(value);
+        }
+    }
+
+    private static int[] prepend(int value, int[] values) {
+        int[] ret = new int[values.length + 1];
+        ret[0] = value;
+        System.arraycopy(values, 0, ret, 1, values.length);
+
+        return ret;
+    }
+
+    private static final class StringTable {
+        final Map<String, Integer> indices = new HashMap<>();
+        final List<String> values = new ArrayList<>();
+
+        int index(String s) {
+            Integer ret = indices.get(s);
+
+            if (ret == null) {
+                ret = values.size();
+                indices.put(s, ret);
+                values.add(s);
+            }
+
+            return ret;
+        }
+
+        int[] indices(String[] names) {
+            int[] ret = new int[names.length];
+
+            for (int i = 0; i < names.length; i++) {
+                ret[i] = index(names[i]);
+            }
+
+            return ret;
+        }
+    }
+
+    private static final class ClassEntry {
+        final int[] names;
+        final List<int[]> methods = new ArrayList<>();
+        final List<int[]> fields = new ArrayList<>();
+
+        ClassEntry(int[] names) {
+            this.names = names;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.mappings;
+
+import net.minecraftforge.srgutils.IMappingFile;
+
+/**
+ * Read-only lookup index for a single mapping direction.
+ *
+ * <p>All tables use open addressing with linear probing over plain arrays that are never modified after construction,
+ * so lookups are safe for any number of concurrent readers without locking. Keys are hashed and compared treating
+ * {@code .} and {@code /} as the same character, which allows querying with binary or internal names without
+ * normalizing them first. Lookups don't allocate.</p>
+ */
+public final class MappingIndex {
+    private final Table classes;
+    private final Table methods;
+    private final Table fields;
+
+    public MappingIndex(IMappingFile map) {
+        int methodCount = 0;
+        int fieldCount = 0;
+
+        for (IMappingFile.IClass cls : map.getClasses()) {
+            methodCount += cls.getMethods().size();
+            fieldCount += cls.getFields().size();
+        }
+
+        this.classes = new Table(map.getClasses().size());
+        this.methods = new Table(methodCount);
+        this.fields = new Table(fieldCount);
+
+        for (IMappingFile.IClass cls : map.getClasses()) {
+            String owner = cls.getOriginal();
+            classes.put(owner, "", "", cls.getMapped().replace('/', '.'));
+
+            for (IMappingFile.IMethod mtd : cls.getMethods()) {
+                methods.put(owner, mtd.getOriginal(), mtd.getDescriptor(), mtd.getMapped());
+            }
+
+            for (IMappingFile.IField fd : cls.getFields()) {
+                fields.put(owner, fd.getOriginal(), "", fd.getMapped());
+            }
+        }
+    }
+
+    /**
+     * Map a class name.
+     *
+     * @param name the binary or internal class name
+     * @return the mapped binary class name, or {@code null} if there is no mapping for the exact name
+     */
+    public String mapClass(String name) {
+        return classes.get(name, "", "");
+    }
+
+    /**
+     * Map a method name.
+     *
+     * @param owner the binary or internal name of the owner class
+     * @param name the method name
+     * @param descriptor the method descriptor, may be {@code null}
+     * @return the mapped method name, or {@code null} if there is no mapping
+     */
+    public String mapMethod(String owner, String name, String descriptor) {
+        // methods are only mapped with their descriptor, same as IMappingFile.IClass#remapMethod
+        if (descriptor == null) return null;
+
+        return methods.get(owner, name, descriptor);
+    }
+
+    /**
+     * Map a field name.
+     *
+     * @param owner the binary or internal name of the owner class
+     * @param name the field name
+     * @return the mapped field name, or {@code null} if there is no mapping
+     */
+    public String mapField(String owner, String name) {
+        return fields.get(owner, name, "");
+    }
+
+    private static final class Table {
+        private final String[] owners;
+        private final String[] names;
+        private final String[] descriptors;
+        private final String[] values;
+        private final int mask;
+
+        Table(int expectedSize) {
+            int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1; // load factor <= 0.5
+
+            this.owners = new String[capacity];
+            this.names = new String[capacity];
+            this.descriptors = new String[capacity];
+            this.values = new String[capacity];
+            this.mask = capacity - 1;
+        }
+
+        void put(String owner, String name, String descriptor, String value) {
+            int pos = hash(owner, name, descriptor) & mask;
+
+            while (owners[pos] != null) {
+                if (equal(owners[pos], owner) && names[pos].equals(name) && equal(descriptors[pos], descriptor)) {
+                    return; // keep first entry, matching the lookup order of the mapping file
+                }
+
+                pos = (pos + 1) & mask;
+            }
+
+            owners[pos] = owner;
+            names[pos] = name;
+            descriptors[pos] = descriptor;
+            values[pos] = value;
+        }
+
+        String get(String owner, String name, String descriptor) {
+            int pos = hash(owner, name, descriptor) & mask;
+            String key;
+
+            while ((key = owners[pos]) != null) {
+                if (equal(key, owner) && names[pos].equals(name) && equal(descriptors[pos], descriptor)) {
+                    return values[pos];
+                }
+
+                pos = (pos + 1) & mask;
+            }
+
+            return null;
+        }
+
+        private static int hash(String owner, String name, String descriptor) {
+            int h = hash(0, owner);
+            h = 31 * hash(h, name) + 0x2f;
+            h = hash(h, descriptor);
+
+            return (h ^ (h >>> 16)) * 0x9e3779b9;
+        }
+
+        private static int hash(int h, String s) {
+            for (int i = 0, max = s.length(); i < max; i++) {
+                h = 31 * h + normalize(s.charAt(i));
+            }
+
+            return h;
+        }
+
+        private static boolean equal(String key, String query) {
+            if (key == query) return true;
+
+            int len = key.length();
+            if (query.length() != len) return false;
+
+            for (int i = 0; i < len; i++) {
+                if (key.charAt(i) != normalize(query.charAt(i))) return false;
+            }
+
+            return true;
+        }
+
+        private static char normalize(char c) {
+            return c == '.' ? '/' : c;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.mappings;
+
+import cpw.mods.modlauncher.api.INameMappingService;
+import net.minecraftforge.srgutils.IMappingBuilder;
+import net.minecraftforge.srgutils.IMappingFile;
+import net.minecraftforge.srgutils.INamedMappingFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+/**
+ * Appends a namespace derived from an existing one through a name function to a named mapping file.
+ *
+ * <p>Name lookups for every class are independent, so they are computed in parallel over class shards. Only adding the
+ * finished names to the (non thread-safe) mapping builder happens serially.</p>
+ */
+public final class MappingMerger {
+    /**
+     * Number of classes below which a shard is processed directly instead of being split further.
+     */
+    private static final int SHARD_SIZE = 256;
+
+    private MappingMerger() {
+    }
+
+    /**
+     * Append a namespace to a named mapping file.
+     *
+     * @param map the named mapping file
+     * @param sourceNamespace the existing namespace the new names are derived from
+     * @param namespace the namespace to append
+     * @param mapper maps names in the source namespace to the new namespace, must be thread-safe
+     * @return a new named mapping file with all existing namespaces followed by the appended namespace
+     */
+    public static INamedMappingFile appendNamespace(INamedMappingFile map, String sourceNamespace, String namespace, BiFunction<INameMappingService.Domain, String, String> mapper) {
+        List<String> names = map.getNames();
+        IMappingBuilder builder = IMappingBuilder.create(Stream.concat(names.stream(), Stream.of(namespace)).toArray(String[]::new));
+
+        // Get all names but the source namespace
+        List<String> filtered = new ArrayList<>(names);
+        filtered.remove(sourceNamespace);
+        // Mapping of the first namespace to the source namespace
+        IMappingFile primary = map.getMap(filtered.get(0), sourceNamespace);
+        // Mappings of the first namespace to the remaining namespaces, fetched once up front since INamedMappingFile isn't thread-safe
+        IMappingFile[] secondary = new IMappingFile[filtered.size() - 1];
+
+        for (int i = 0; i < secondary.length; i++) {
+            secondary[i] = map.getMap(filtered.get(0), filtered.get(i + 1));
+        }
+
+        // Copy all members from the primary mapping to the builder, while adding the remaining namespace mappings
+        // We assume all mapping files created by the named mapping file have the same amount of classes based on the implementation
+        List<IMappingFile.IClass> classes = new ArrayList<>(primary.getClasses());
+        ClassNames[] classNames = new ClassNames[classes.size()];
+        ForkJoinPool.commonPool().invoke(new MergeTask(classes, secondary, mapper, classNames, 0, classNames.length));
+
+        for (ClassNames cls : classNames) {
+            IMappingBuilder.IClass newCls = builder.addClass(cls.names);
+
+            for (int i = 0; i < cls.methodNames.length; i++) {
+                newCls.method(cls.methodDescriptors[i], cls.methodNames[i]);
+            }
+
+            for (int i = 0; i < cls.fieldNames.length; i++) {
+                newCls.field(cls.fieldNames[i]).descriptor(cls.fieldDescriptors[i]);
+            }
+        }
+
+        // Add all packages
+        for (IMappingFile.IPackage pkg : primary.getPackages()) {
+            String[] arr = getNames(pkg, secondary.length, pkg.getOriginal());
+
+            for (int i = 0; i < secondary.length; i++) {
+                arr[i + 2] = secondary[i].getPackage(pkg.getOriginal()).getMapped();
+            }
+
+            builder.addPackage(arr);
+        }
+
+        return builder.build();
+    }
+
+    // See https://github.com/MinecraftForge/ForgeGradle/issues/922
+    private static String mapMethodNameIncludingRecords(BiFunction<INameMappingService.Domain, String, String> mapper, String name) {
+        String mapped = mapper.apply(INameMappingService.Domain.METHOD, name);
+        if (mapped.equals(name)) {
+            mapped = mapper.apply(INameMappingService.Domain.FIELD, name);
+        }
+        return mapped;
+    }
+
+    /**
+     * Create the name array for a node, filled with its names in the primary mapping and the appended namespace.
+     * The names for the secondary namespaces remain to be filled in at indices 2 and up.
+     */
+    private static String[] getNames(IMappingFile.INode node, int secondaryCount, String additional) {
+        String[] arr = new String[secondaryCount + 3];
+        arr[0] = node.getOriginal();
+        arr[1] = node.getMapped();
+        arr[arr.length - 1] = additional;
+        return arr;
+    }
+
+    private static final class ClassNames {
+        final String[] names;
+        final String[] methodDescriptors;
+        final String[][] methodNames;
+        final String[] fieldDescriptors;
+        final String[][] fieldNames;
+
+        ClassNames(String[] names, String[] methodDescriptors, String[][] methodNames, String[] fieldDescriptors, String[][] fieldNames) {
+            this.names = names;
+            this.methodDescriptors = methodDescriptors;
+            this.methodNames = methodNames;
+            this.fieldDescriptors = fieldDescriptors;
+            this.fieldNames = fieldNames;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class MergeTask extends RecursiveAction {
+        private final List<IMappingFile.IClass> classes;
+        private final IMappingFile[] secondary;
+        private final BiFunction<INameMappingService.Domain, String, String> mapper;
+        private final ClassNames[] out;
+        private final int start;
+        private final int end;
+
+        MergeTask(List<IMappingFile.IClass> classes, IMappingFile[] secondary, BiFunction<INameMappingService.Domain, String, String> mapper,
+                ClassNames[] out, int start, int end) {
+            this.classes = classes;
+            this.secondary = secondary;
+            this.mapper = mapper;
+            this.out = out;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > SHARD_SIZE) {
+                int mid = (start + end) >>> 1;
+                invokeAll(new MergeTask(classes, secondary, mapper, out, start, mid),
+                        new MergeTask(classes, secondary, mapper, out, mid, end));
+                return;
+            }
+
+            IMappingFile.IClass[] secondaryClasses = new IMappingFile.IClass[secondary.length];
+
+            for (int c = start; c < end; c++) {
+                IMappingFile.IClass cls = classes.get(c);
+                String[] names = getNames(cls, secondary.length, cls.getMapped());
+
+                for (int i = 0; i < secondary.length; i++) {
+                    secondaryClasses[i] = secondary[i].getClass(cls.getOriginal());
+                    names[i + 2] = secondaryClasses[i].getMapped();
+                }
+
+                List<? extends IMappingFile.IMethod> methods = new ArrayList<>(cls.getMethods());
+                String[] methodDescriptors = new String[methods.size()];
+                String[][] methodNames = new String[methods.size()][];
+
+                for (int m = 0; m < methodNames.length; m++) {
+                    IMappingFile.IMethod mtd = methods.get(m);
+                    String[] arr = getNames(mtd, secondary.length, mapMethodNameIncludingRecords(mapper, mtd.getMapped()));
+
+                    for (int i = 0; i < secondary.length; i++) {
+                        arr[i + 2] = secondaryClasses[i].getMethod(mtd.getOriginal(), mtd.getDescriptor()).getMapped();
+                    }
+
+                    methodDescriptors[m] = mtd.getDescriptor();
+                    methodNames[m] = arr;
+                }
+
+                List<? extends IMappingFile.IField> fields = new ArrayList<>(cls.getFields());
+                String[] fieldDescriptors = new String[fields.size()];
+                String[][] fieldNames = new String[fields.size()][];
+
+                for (int f = 0; f < fieldNames.length; f++) {
+                    IMappingFile.IField fd = fields.get(f);
+                    String[] arr = getNames(fd, secondary.length, mapper.apply(INameMappingService.Domain.FIELD, fd.getMapped()));
+
+                    for (int i = 0; i < secondary.length; i++) {
+                        arr[i + 2] = secondaryClasses[i].getField(fd.getOriginal()).getMapped();
+                    }
+
+                    fieldDescriptors[f] = fd.getDescriptor();
+                    fieldNames[f] = arr;
+                }
+
+                out[c] = new ClassNames(names, methodDescriptors, methodNames, fieldDescriptors, fieldNames);
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.metadata;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable compact copies of the collections held by frozen mod metadata, and estimates of their retained size.
+ *
+ * <p>Empty collections are shared, single elements use the singleton collections and small maps are backed by arrays
+ * searched linearly. The size estimates assume a 64 bit JVM with compressed references and only cover the collection
+ * objects, not their elements.
+ */
+final class CompactCollections {
+	/**
+	 * Largest map stored as arrays, bigger maps are copied into a right-sized hash map.
+	 */
+	private static final int MAX_ARRAY_MAP_SIZE = 8;
+
+	private static final int COLLECTION_VIEW_SIZE = 16; // Collections.unmodifiableCollection/List
+	private static final int MAP_VIEW_SIZE = 32; // Collections.unmodifiableMap
+	private static final int ARRAY_LIST_SIZE = 24;
+	private static final int HASH_MAP_SIZE = 48;
+	private static final int HASH_MAP_NODE_SIZE = 32;
+	private static final int SINGLETON_LIST_SIZE = 16;
+	private static final int SINGLETON_MAP_SIZE = 32;
+	private static final int ARRAYS_AS_LIST_SIZE = 16;
+	private static final int ARRAY_MAP_SIZE = 24;
+
+	private CompactCollections() { }
+
+	static <T> List<T> list(Collection<T> c) {
+		switch (c.size()) {
+		case 0:
+			return Collections.emptyList();
+		case 1:
+			return Collections.singletonList(c.iterator().next());
+		default:
+			@SuppressWarnings("unchecked")
+			T[] elements = (T[]) c.toArray();
+
+			return Collections.unmodifiableList(Arrays.asList(elements));
+		}
+	}
+
+	static <K, V> Map<K, V> map(Map<K, V> map) {
+		int size = map.size();
+
+		if (size == 0) {
+			return Collections.emptyMap();
+		} else if (size == 1) {
+			Map.Entry<K, V> entry = map.entrySet().iterator().next();
+
+			return Collections.singletonMap(entry.getKey(), entry.getValue());
+		} else if (size <= MAX_ARRAY_MAP_SIZE) {
+			return new ArrayMap<>(map);
+		} else {
+			return Collections.unmodifiableMap(new HashMap<>(map));
+		}
+	}
+
+	/**
+	 * Estimate the retained size of a collection with the given number of elements.
+	 *
+	 * @param compact whether to estimate the result of {@link #list}, otherwise an unmodifiable view of an ArrayList
+	 */
+	static long listSize(int size, boolean compact) {
+		if (!compact) return COLLECTION_VIEW_SIZE + arrayListSize(size);
+
+		switch (size) {
+		case 0:
+			return 0;
+		case 1:
+			return SINGLETON_LIST_SIZE;
+		default:
+			return COLLECTION_VIEW_SIZE + ARRAYS_AS_LIST_SIZE + arraySize(size);
+		}
+	}
+
+	/**
+	 * Estimate the retained size of an ArrayList filled by adding the given number of elements.
+	 */
+	static long arrayListSize(int size) {
+		if (size == 0) return ARRAY_LIST_SIZE; // shares the empty array
+
+		int capacity = 10;
+
+		while (capacity < size) {
+			capacity += capacity >> 1;
+		}
+
+		return ARRAY_LIST_SIZE + arraySize(capacity);
+	}
+
+	/**
+	 * Estimate the retained size of a map with the given number of entries.
+	 *
+	 * @param compact whether to estimate the result of {@link #map}, otherwise an unmodifiable view of a HashMap
+	 */
+	static long mapSize(int size, boolean compact) {
+		if (!compact) return MAP_VIEW_SIZE + hashMapSize(size, 16);
+
+		if (size == 0) {
+			return 0;
+		} else if (size == 1) {
+			return SINGLETON_MAP_SIZE;
+		} else if (size <= MAX_ARRAY_MAP_SIZE) {
+			return ARRAY_MAP_SIZE + 2 * arraySize(size);
+		} else {
+			return MAP_VIEW_SIZE + hashMapSize(size, 1);
+		}
+	}
+
+	private static long hashMapSize(int size, int minTableSize) {
+		if (size == 0) return HASH_MAP_SIZE; // table is allocated lazily
+
+		int tableSize = minTableSize;
+
+		while (tableSize * 3 / 4 < size) {
+			tableSize <<= 1;
+		}
+
+		return HASH_MAP_SIZE + arraySize(tableSize) + (long) size * HASH_MAP_NODE_SIZE;
+	}
+
+	private static long arraySize(int length) {
+		return (16 + 4L * length + 7) & ~7L;
+	}
+
+	private static final class ArrayMap<K, V> extends AbstractMap<K, V> {
+		private final Object[] keys;
+		private final Object[] values;
+		private Set<Map.Entry<K, V>> entrySet;
+
+		ArrayMap(Map<K, V> map) {
+			keys = new Object[map.size()];
+			values = new Object[keys.length];
+			int i = 0;
+
+			for (Map.Entry<K, V> entry : map.entrySet()) {
+				keys[i] = entry.getKey();
+				values[i] = entry.getValue();
+				i++;
+			}
+		}
+
+		private int indexOf(Object key) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i].equals(key)) return i;
+			}
+
+			return -1;
+		}
+
+		@Override
+		public int size() {
+			return keys.length;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return indexOf(key) >= 0;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V get(Object key) {
+			int idx = indexOf(key);
+
+			return idx >= 0 ? (V) values[idx] : null;
+		}
+
+		@Override
+		public Set<Map.Entry<K, V>> entrySet() {
+			Set<Map.Entry<K, V>> ret = entrySet;
+
+			if (ret == null) {
+				entrySet = ret = new AbstractSet<Map.Entry<K, V>>() {
+					@Override
+					public int size() {
+						return keys.length;
+					}
+
+					@Override
+					public Iterator<Map.Entry<K, V>> iterator() {
+						return new Iterator<Map.Entry<K, V>>() {
+							private int idx;
+
+							@Override
+							public boolean hasNext() {
+								return idx < keys.length;
+							}
+
+							@Override
+							@SuppressWarnings("unchecked")
+							public Map.Entry<K, V> next() {
+								if (idx >= keys.length) throw new NoSuchElementException();
+
+								int i = idx++;
+
+								return new SimpleImmutableEntry<>((K) keys[i], (V) values[i]);
+							}
+						};
+					}
+				};
+			}
+
+			return ret;
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.metadata;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import net.fabricmc.loader.api.metadata.CustomValue;
+import net.fabricmc.loader.impl.lib.gson.JsonToken;
+
+/**
+ * Immutable map of a mod's custom values keeping object and array values as raw JSON until they are accessed.
+ *
+ * <p>Most custom values are only read by a few mods, if at all, while the parsed trees would stay resident for the
+ * lifetime of the game. Object and array values are validated while reading the metadata, but only their bytes are
+ * copied and their offsets recorded. They get parsed into {@link CustomValue} trees on first access. Scalar values are
+ * cheap and stored directly.
+ */
+final class LazyCustomValueMap extends AbstractMap<String, CustomValue> {
+	private final String[] keys;
+	private final CustomValue[] values; // null for values not parsed yet
+	private final int[] ranges; // start and end offset in data for each value, only used by unparsed values
+	private final byte[] data;
+	private Set<Map.Entry<String, CustomValue>> entrySet;
+
+	private LazyCustomValueMap(String[] keys, CustomValue[] values, int[] ranges, byte[] data) {
+		this.keys = keys;
+		this.values = values;
+		this.ranges = ranges;
+		this.data = data;
+	}
+
+	/**
+	 * Read the custom values object at the reader's current position.
+	 */
+	static LazyCustomValueMap read(Utf8JsonReader reader) throws IOException, ParseMetadataException {
+		String[] keys = new String[8];
+		CustomValue[] values = new CustomValue[8];
+		int[] ranges = new int[16];
+		int size = 0;
+		int dataStart = -1;
+		int dataEnd = -1;
+
+		reader.beginObject();
+
+		while (reader.hasNext()) {
+			String key = reader.nextName();
+			int idx = indexOf(keys, size, key); // duplicate keys replace previous entries
+
+			if (idx < 0) {
+				idx = size++;
+
+				if (idx == keys.length) {
+					keys = Arrays.copyOf(keys, idx * 2);
+					values = Arrays.copyOf(values, idx * 2);
+					ranges = Arrays.copyOf(ranges, idx * 4);
+				}
+
+				keys[idx] = key;
+			}
+
+			JsonToken token = reader.peek();
+
+			if (token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY) {
+				int start = reader.getValueStart();
+				reader.skipValue();
+				int end = reader.getPosition();
+
+				if (dataStart < 0) dataStart = start;
+				dataEnd = end;
+				values[idx] = null;
+				ranges[idx * 2] = start;
+				ranges[idx * 2 + 1] = end;
+			} else {
+				values[idx] = CustomValueImpl.readCustomValue(reader);
+			}
+		}
+
+		reader.endObject();
+
+		byte[] data;
+
+		if (dataStart < 0) {
+			data = null;
+		} else {
+			// copy only the region covering the unparsed values instead of retaining the whole file
+			data = Arrays.copyOfRange(reader.getBuffer(), dataStart, dataEnd);
+
+			for (int i = 0; i < size; i++) {
+				if (values[i] == null) {
+					ranges[i * 2] -= dataStart;
+					ranges[i * 2 + 1] -= dataStart;
+				}
+			}
+		}
+
+		return new LazyCustomValueMap(Arrays.copyOf(keys, size), Arrays.copyOf(values, size), ranges, data);
+	}
+
+	private static int indexOf(String[] keys, int size, String key) {
+		for (int i = 0; i < size; i++) {
+			if (keys[i].equals(key)) return i;
+		}
+
+		return -1;
+	}
+
+	private CustomValue getValue(int idx) {
+		CustomValue ret = values[idx];
+		if (ret != null) return ret;
+
+		int start = ranges[idx * 2];
+		int end = ranges[idx * 2 + 1];
+
+		try {
+			ret = CustomValueImpl.readCustomValue(new Utf8JsonReader(data, start, end - start));
+		} catch (IOException | ParseMetadataException e) {
+			throw new RuntimeException("Error parsing custom value "+keys[idx], e);
+		}
+
+		// racing threads may parse the same value, the trees are immutable and equivalent
+		values[idx] = ret;
+
+		return ret;
+	}
+
+	@Override
+	public int size() {
+		return keys.length;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof String && indexOf(keys, keys.length, (String) key) >= 0;
+	}
+
+	@Override
+	public CustomValue get(Object key) {
+		if (!(key instanceof String)) return null;
+
+		int idx = indexOf(keys, keys.length, (String) key);
+
+		return idx >= 0 ? getValue(idx) : null;
+	}
+
+	@Override
+	public Set<Map.Entry<String, CustomValue>> entrySet() {
+		Set<Map.Entry<String, CustomValue>> ret = entrySet;
+
+		if (ret == null) {
+			entrySet = ret = new AbstractSet<Map.Entry<String, CustomValue>>() {
+				@Override
+				public int size() {
+					return keys.length;
+				}
+
+				@Override
+				public Iterator<Map.Entry<String, CustomValue>> iterator() {
+					return new Iterator<Map.Entry<String, CustomValue>>() {
+						private int idx;
+
+						@Override
+						public boolean hasNext() {
+							return idx < keys.length;
+						}
+
+						@Override
+						public Map.Entry<String, CustomValue> next() {
+							if (idx >= keys.length) throw new NoSuchElementException();
+
+							int i = idx++;
+
+							return new SimpleImmutableEntry<>(keys[i], getValue(i));
+						}
+					};
+				}
+			};
+		}
+
+		return ret;
+	}
+}
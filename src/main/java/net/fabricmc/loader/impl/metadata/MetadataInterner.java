@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.metadata;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.fabricmc.loader.api.Version;
+import net.fabricmc.loader.api.VersionParsingException;
+import net.fabricmc.loader.api.metadata.version.VersionPredicate;
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
+import net.fabricmc.loader.impl.util.version.VersionParser;
+
+/**
+ * Scoped pool sharing equal strings, versions and version predicates across the metadata of all parsed mods.
+ *
+ * <p>Large packs repeat the same author names, licenses, dependency ids, mixin configs and versions many times. While a
+ * pool is open, metadata parsed on any thread gets the pooled instances. The pool is dropped on {@link #close()}, the
+ * metadata keeps only the shared instances. Without an open pool all methods return fresh instances.
+ *
+ * <p>{@link ModMetadataParser} opens a pool on demand if there is none, it stays open until the parsed mods are handed
+ * to the loader and {@link #closeActive()} is called.
+ *
+ * <p>The pool also totals the savings of freezing the metadata it was used for, see {@link V1ModMetadata#freeze()}.
+ */
+public final class MetadataInterner {
+	private static volatile MetadataInterner active;
+
+	private final ConcurrentMap<String, String> strings = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Version> versions = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, VersionPredicate> predicates = new ConcurrentHashMap<>();
+	private final LongAdder stringHits = new LongAdder();
+	private final LongAdder savedStringBytes = new LongAdder();
+	private final LongAdder versionHits = new LongAdder();
+	private final LongAdder predicateHits = new LongAdder();
+	private final LongAdder frozenMods = new LongAdder();
+	private final LongAdder frozenSizeBefore = new LongAdder();
+	private final LongAdder frozenSizeAfter = new LongAdder();
+
+	private MetadataInterner() { }
+
+	/**
+	 * Open a new pool, replacing any pool that is still open.
+	 */
+	public static synchronized MetadataInterner open() {
+		MetadataInterner ret = new MetadataInterner();
+		active = ret;
+
+		return ret;
+	}
+
+	/**
+	 * Open a new pool unless one is open already.
+	 */
+	static synchronized void openIfAbsent() {
+		if (active == null) active = new MetadataInterner();
+	}
+
+	/**
+	 * Close the open pool, if any.
+	 */
+	public static void closeActive() {
+		MetadataInterner pool = active;
+		if (pool != null) pool.close();
+	}
+
+	/**
+	 * Stop pooling and log how many duplicates were shared and how much freezing saved.
+	 */
+	public void close() {
+		synchronized (MetadataInterner.class) {
+			if (active == this) active = null;
+		}
+
+		Log.debug(LogCategory.METADATA, "Metadata interning: %d strings (%d duplicates, ~%d KiB saved), %d versions (%d duplicates), %d version predicates (%d duplicates)",
+				strings.size(), stringHits.sum(), savedStringBytes.sum() >> 10,
+				versions.size(), versionHits.sum(),
+				predicates.size(), predicateHits.sum());
+		Log.debug(LogCategory.METADATA, "Metadata freezing: %d mods, collections retain ~%d KiB instead of ~%d KiB",
+				frozenMods.sum(), frozenSizeAfter.sum() >> 10, frozenSizeBefore.sum() >> 10);
+	}
+
+	public static String intern(String str) {
+		MetadataInterner pool = active;
+		if (pool == null || str == null) return str;
+
+		String ret = pool.strings.putIfAbsent(str, str);
+		if (ret == null) return str;
+
+		pool.stringHits.increment();
+		pool.savedStringBytes.add(40 + str.length()); // approximate String and backing array size
+
+		return ret;
+	}
+
+	/**
+	 * Record the estimated retained size of a mod's metadata collections before and after freezing it.
+	 */
+	static void recordFrozen(long before, long after) {
+		MetadataInterner pool = active;
+		if (pool == null) return;
+
+		pool.frozenMods.increment();
+		pool.frozenSizeBefore.add(before);
+		pool.frozenSizeAfter.add(after);
+	}
+
+	/**
+	 * Parse a mod version as by {@link VersionParser#parse(String, boolean)} without storing wildcards.
+	 */
+	static Version parseVersion(String str) throws VersionParsingException {
+		MetadataInterner pool = active;
+		if (pool == null) return VersionParser.parse(str, false);
+
+		Version ret = pool.versions.get(str);
+
+		if (ret != null) {
+			pool.versionHits.increment();
+			return ret;
+		}
+
+		ret = VersionParser.parse(str, false);
+		Version prev = pool.versions.putIfAbsent(str, ret);
+
+		return prev != null ? prev : ret;
+	}
+
+	/**
+	 * Parse version predicates as by {@link VersionPredicate#parse(Collection)}.
+	 */
+	static Collection<VersionPredicate> parseVersionPredicates(Collection<String> strs) throws VersionParsingException {
+		MetadataInterner pool = active;
+		if (pool == null) return VersionPredicate.parse(strs);
+
+		Set<VersionPredicate> ret = new HashSet<>(strs.size());
+
+		for (String str : strs) {
+			VersionPredicate predicate = pool.predicates.get(str);
+
+			if (predicate != null) {
+				pool.predicateHits.increment();
+			} else {
+				predicate = VersionPredicate.parse(str);
+				VersionPredicate prev = pool.predicates.putIfAbsent(str, predicate);
+				if (prev != null) predicate = prev;
+			}
+
+			ret.add(predicate);
+		}
+
+		return ret;
+	}
+}
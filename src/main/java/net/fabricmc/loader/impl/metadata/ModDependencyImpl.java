@@ -34,9 +34,9 @@ public final class ModDependencyImpl implements ModDependency {
 
 	public ModDependencyImpl(Kind kind, String modId, List<String> matcherStringList) throws VersionParsingException {
 		this.kind = kind;
-		this.modId = modId;
+		this.modId = MetadataInterner.intern(modId);
 		this.matcherStringList = matcherStringList;
-		this.ranges = VersionPredicate.parse(this.matcherStringList);
+		this.ranges = MetadataInterner.parseVersionPredicates(this.matcherStringList);
 	}
 
 	@Override
@@ -18,8 +18,6 @@ package net.fabricmc.loader.impl.metadata;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -40,14 +38,39 @@ public final class ModMetadataParser {
 	// For all intents and purposes of replicating the logic of Gson's fromJson before we have migrated to JsonReader, duplicate keys will replace previous entries.
 	public static LoaderModMetadata parseMetadata(InputStream is, String modPath, List<String> modParentPaths,
 			VersionOverrides versionOverrides, DependencyOverrides depOverrides, boolean isDevelopment) throws ParseMetadataException {
+		byte[] data;
+
+		try {
+			data = is.readAllBytes();
+		} catch (IOException e) {
+			ParseMetadataException ex = new ParseMetadataException(e);
+			ex.setModPaths(modPath, modParentPaths);
+			throw ex;
+		}
+
+		return parseMetadata(data, modPath, modParentPaths, versionOverrides, depOverrides, isDevelopment);
+	}
+
+	/**
+	 * Parse mod metadata from the UTF-8 encoded content of a {@code fabric.mod.json} file held in memory.
+	 */
+	public static LoaderModMetadata parseMetadata(byte[] data, String modPath, List<String> modParentPaths,
+			VersionOverrides versionOverrides, DependencyOverrides depOverrides, boolean isDevelopment) throws ParseMetadataException {
+		// mods are parsed one at a time by the mod locators, share strings and versions until they're handed to the loader
+		MetadataInterner.openIfAbsent();
+
 		try {
-			LoaderModMetadata ret = readModMetadata(is, isDevelopment);
+			LoaderModMetadata ret = readModMetadata(data, isDevelopment);
 
 			versionOverrides.apply(ret);
 			depOverrides.apply(ret);
 
 			MetadataVerifier.verify(ret, isDevelopment);
 
+			if (ret instanceof V1ModMetadata) {
+				ret = ((V1ModMetadata) ret).freeze();
+			}
+
 			return ret;
 		} catch (ParseMetadataException e) {
 			e.setModPaths(modPath, modParentPaths);
@@ -59,33 +82,28 @@ public final class ModMetadataParser {
 		}
 	}
 
-	private static LoaderModMetadata readModMetadata(InputStream is, boolean isDevelopment) throws IOException, ParseMetadataException {
+	private static LoaderModMetadata readModMetadata(byte[] data, boolean isDevelopment) throws IOException, ParseMetadataException {
 		// So some context:
 		// Per the json specification, ordering of fields is not typically enforced.
 		// Furthermore we cannot guarantee the `schemaVersion` is the first field in every `fabric.mod.json`
 		//
-		// To work around this, we do the following:
-		// Try to read first field
-		// If the first field is the schemaVersion, read the file normally.
+		// To handle this in a single pass, we do the following:
+		// Read fields until the schemaVersion is found, recording every field before it in a ReplayJsonReader.
+		// If the first field is the schemaVersion, nothing was recorded and the file is read normally.
 		//
-		// If the first field is not the schema version, fallback to a more exhaustive check.
-		// Read the rest of the file, looking for the `schemaVersion` field.
-		// If we find the field, cache the value
-		// If there happens to be another `schemaVersion` that has a differing value, then fail.
-		// At the end, if we find no `schemaVersion` then assume the `schemaVersion` is 0
-		// Re-read the JSON file.
+		// Otherwise the version specific parser reads the recorded fields followed by the rest of the file.
+		// If there happens to be another `schemaVersion` that has a differing value, the version specific parser fails.
+		// If we find no `schemaVersion` then the whole object was recorded and the `schemaVersion` is assumed to be 0
 		int schemaVersion = 0;
 
-		try (JsonReader reader = new JsonReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
-			reader.setRewindEnabled(true);
-
+		try (JsonReader reader = new Utf8JsonReader(data)) {
 			if (reader.peek() != JsonToken.BEGIN_OBJECT) {
 				throw new ParseMetadataException("Root of \"fabric.mod.json\" must be an object", reader);
 			}
 
 			reader.beginObject();
 
-			boolean firstField = true;
+			ReplayJsonReader replayReader = null;
 
 			while (reader.hasNext()) {
 				// Try to read the schemaVersion
@@ -97,37 +115,21 @@ public final class ModMetadataParser {
 					}
 
 					schemaVersion = reader.nextInt();
-
-					if (firstField) {
-						reader.setRewindEnabled(false);
-						// Finish reading the metadata
-						LoaderModMetadata ret = readModMetadata(reader, schemaVersion);
-						reader.endObject();
-
-						return ret;
-					}
-
-					// schemaVersion found, but after some content -> start over to parse all data with the detected version
 					break;
-				} else {
+				} else if (IGNORED_KEYS.contains(key)) {
 					reader.skipValue();
-				}
-
-				if (!IGNORED_KEYS.contains(key)) {
-					firstField = false;
+				} else {
+					if (replayReader == null) replayReader = new ReplayJsonReader(reader);
+					replayReader.recordEntry(key);
 				}
 			}
 
-			// Slow path, schema version wasn't specified early enough, re-read with detected/inferred version
-
-			reader.rewind();
-			reader.setRewindEnabled(false);
-
-			reader.beginObject();
-			LoaderModMetadata ret = readModMetadata(reader, schemaVersion);
-			reader.endObject();
+			// Finish reading the metadata, replaying the fields preceding the schemaVersion if there were any
+			JsonReader metadataReader = replayReader != null ? replayReader : reader;
+			LoaderModMetadata ret = readModMetadata(metadataReader, schemaVersion);
+			metadataReader.endObject();
 
-			if (isDevelopment) {
+			if (replayReader != null && isDevelopment) {
 				Log.warn(LogCategory.METADATA, "\"fabric.mod.json\" from mod %s did not have \"schemaVersion\" as first field.", ret.getId());
 			}
 
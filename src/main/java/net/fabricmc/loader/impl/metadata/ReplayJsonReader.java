@@ -0,0 +1,315 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.metadata;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import net.fabricmc.loader.impl.lib.gson.JsonReader;
+import net.fabricmc.loader.impl.lib.gson.JsonToken;
+
+/**
+ * JSON reader replaying recorded root object entries before continuing with the remainder of the source reader.
+ *
+ * <p>This allows reading {@code fabric.mod.json} in a single pass: the entries preceding {@code schemaVersion} are
+ * recorded as schema neutral tokens while looking for it, the schema specific parser then reads them followed by the
+ * not yet consumed entries. Both readers are positioned inside the root object, the root object's end is always read
+ * from the source reader.
+ */
+final class ReplayJsonReader extends JsonReader {
+	private static final Reader UNREADABLE_READER = new Reader() {
+		@Override
+		public int read(char[] buffer, int offset, int count) {
+			throw new AssertionError();
+		}
+
+		@Override
+		public void close() {
+			throw new AssertionError();
+		}
+	};
+
+	private final JsonReader source;
+	private JsonToken[] tokens = new JsonToken[32];
+	private Object[] values = new Object[32]; // names, string/number literals or booleans
+	private int[] positions = new int[64]; // line and column per token
+	private int size;
+	private int pos;
+
+	ReplayJsonReader(JsonReader source) {
+		super(UNREADABLE_READER);
+
+		this.source = source;
+	}
+
+	/**
+	 * Record a root object entry, its name has already been read from the source reader.
+	 */
+	void recordEntry(String name) throws IOException {
+		add(JsonToken.NAME, name, source.getLineNumber(), source.getColumn());
+		recordValue();
+	}
+
+	private void recordValue() throws IOException {
+		JsonToken token = source.peek();
+		int line = source.getLineNumber();
+		int column = source.getColumn();
+
+		switch (token) {
+		case BEGIN_ARRAY:
+			add(token, null, line, column);
+			source.beginArray();
+
+			while (source.hasNext()) {
+				recordValue();
+			}
+
+			add(JsonToken.END_ARRAY, null, source.getLineNumber(), source.getColumn());
+			source.endArray();
+			break;
+		case BEGIN_OBJECT:
+			add(token, null, line, column);
+			source.beginObject();
+
+			while (source.hasNext()) {
+				int nameLine = source.getLineNumber();
+				int nameColumn = source.getColumn();
+				add(JsonToken.NAME, source.nextName(), nameLine, nameColumn);
+				recordValue();
+			}
+
+			add(JsonToken.END_OBJECT, null, source.getLineNumber(), source.getColumn());
+			source.endObject();
+			break;
+		case STRING:
+		case NUMBER:
+			add(token, source.nextString(), line, column);
+			break;
+		case BOOLEAN:
+			add(token, source.nextBoolean(), line, column);
+			break;
+		case NULL:
+			source.nextNull();
+			add(token, null, line, column);
+			break;
+		default:
+			throw new IllegalStateException("unexpected token "+token+source.locationString());
+		}
+	}
+
+	private void add(JsonToken token, Object value, int line, int column) {
+		if (size == tokens.length) {
+			tokens = Arrays.copyOf(tokens, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+			positions = Arrays.copyOf(positions, size * 4);
+		}
+
+		tokens[size] = token;
+		values[size] = value;
+		positions[size * 2] = line;
+		positions[size * 2 + 1] = column;
+		size++;
+	}
+
+	/**
+	 * Get the reader currently providing the tokens, the source reader once all recorded tokens have been read.
+	 */
+	JsonReader getActiveReader() {
+		return isReplaying() ? this : source;
+	}
+
+	private boolean isReplaying() {
+		return pos < size;
+	}
+
+	private Object consume(JsonToken expected) {
+		JsonToken token = tokens[pos];
+
+		if (token != expected) {
+			throw new IllegalStateException("Expected "+expected+" but was "+token+locationString());
+		}
+
+		return values[pos++];
+	}
+
+	@Override
+	public void beginArray() throws IOException {
+		if (isReplaying()) {
+			consume(JsonToken.BEGIN_ARRAY);
+		} else {
+			source.beginArray();
+		}
+	}
+
+	@Override
+	public void endArray() throws IOException {
+		if (isReplaying()) {
+			consume(JsonToken.END_ARRAY);
+		} else {
+			source.endArray();
+		}
+	}
+
+	@Override
+	public void beginObject() throws IOException {
+		if (isReplaying()) {
+			consume(JsonToken.BEGIN_OBJECT);
+		} else {
+			source.beginObject();
+		}
+	}
+
+	@Override
+	public void endObject() throws IOException {
+		if (isReplaying()) {
+			consume(JsonToken.END_OBJECT);
+		} else {
+			source.endObject();
+		}
+	}
+
+	@Override
+	public boolean hasNext() throws IOException {
+		if (isReplaying()) {
+			JsonToken token = tokens[pos];
+
+			return token != JsonToken.END_ARRAY && token != JsonToken.END_OBJECT;
+		} else {
+			return source.hasNext();
+		}
+	}
+
+	@Override
+	public JsonToken peek() throws IOException {
+		return isReplaying() ? tokens[pos] : source.peek();
+	}
+
+	@Override
+	public String nextName() throws IOException {
+		return isReplaying() ? (String) consume(JsonToken.NAME) : source.nextName();
+	}
+
+	@Override
+	public String nextString() throws IOException {
+		return isReplaying() ? nextLiteral() : source.nextString();
+	}
+
+	@Override
+	public boolean nextBoolean() throws IOException {
+		return isReplaying() ? (Boolean) consume(JsonToken.BOOLEAN) : source.nextBoolean();
+	}
+
+	@Override
+	public void nextNull() throws IOException {
+		if (isReplaying()) {
+			consume(JsonToken.NULL);
+		} else {
+			source.nextNull();
+		}
+	}
+
+	@Override
+	public double nextDouble() throws IOException {
+		return isReplaying() ? Double.parseDouble(nextLiteral()) : source.nextDouble();
+	}
+
+	@Override
+	public long nextLong() throws IOException {
+		if (!isReplaying()) return source.nextLong();
+
+		String str = nextLiteral();
+
+		try {
+			return Long.parseLong(str);
+		} catch (NumberFormatException e) {
+			double value = Double.parseDouble(str);
+			long ret = (long) value;
+			if (ret != value) throw new NumberFormatException("Expected a long but was "+str+locationString());
+
+			return ret;
+		}
+	}
+
+	@Override
+	public int nextInt() throws IOException {
+		if (!isReplaying()) return source.nextInt();
+
+		String str = nextLiteral();
+
+		try {
+			return Integer.parseInt(str);
+		} catch (NumberFormatException e) {
+			double value = Double.parseDouble(str);
+			int ret = (int) value;
+			if (ret != value) throw new NumberFormatException("Expected an int but was "+str+locationString());
+
+			return ret;
+		}
+	}
+
+	private String nextLiteral() {
+		return (String) consume(tokens[pos] == JsonToken.STRING ? JsonToken.STRING : JsonToken.NUMBER);
+	}
+
+	@Override
+	public void skipValue() throws IOException {
+		if (!isReplaying()) {
+			source.skipValue();
+			return;
+		}
+
+		int depth = 0;
+
+		do {
+			switch (tokens[pos++]) {
+			case BEGIN_ARRAY:
+			case BEGIN_OBJECT:
+				depth++;
+				break;
+			case END_ARRAY:
+			case END_OBJECT:
+				depth--;
+				break;
+			default:
+				// scalar or name
+			}
+		} while (depth > 0);
+	}
+
+	@Override
+	public void close() throws IOException {
+		source.close();
+	}
+
+	@Override
+	public String locationString() {
+		if (!isReplaying()) return source.locationString();
+
+		return " at line "+positions[pos * 2]+" column "+positions[pos * 2 + 1];
+	}
+
+	@Override
+	public int getLineNumber() {
+		return isReplaying() ? positions[pos * 2] : source.getLineNumber();
+	}
+
+	@Override
+	public int getColumn() {
+		return isReplaying() ? positions[pos * 2 + 1] : source.getColumn();
+	}
+}
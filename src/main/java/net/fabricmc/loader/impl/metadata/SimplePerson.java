@@ -26,7 +26,7 @@ public class SimplePerson implements Person {
 	private final String name;
 
 	public SimplePerson(String name) {
-		this.name = name;
+		this.name = MetadataInterner.intern(name);
 	}
 
 	@Override
@@ -0,0 +1,1087 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.metadata;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import net.fabricmc.loader.impl.lib.gson.JsonReader;
+import net.fabricmc.loader.impl.lib.gson.JsonToken;
+import net.fabricmc.loader.impl.lib.gson.MalformedJsonException;
+
+/**
+ * Strict JSON reader operating directly on UTF-8 encoded bytes held in memory.
+ *
+ * <p>This is a drop-in replacement for {@link JsonReader} with the same token semantics and error messages for strict
+ * JSON, lenient parsing isn't supported. Strings are only scanned and decoded when they get consumed, skipped values are
+ * never materialized. Names matching a field known to the metadata parsers are returned as shared constants without
+ * decoding or allocating.
+ */
+public final class Utf8JsonReader extends JsonReader {
+	private static final Reader UNREADABLE_READER = new Reader() {
+		@Override
+		public int read(char[] buffer, int offset, int count) {
+			throw new AssertionError();
+		}
+
+		@Override
+		public void close() {
+			throw new AssertionError();
+		}
+	};
+
+	private static final long MIN_INCOMPLETE_INTEGER = Long.MIN_VALUE / 10;
+
+	private static final int PEEKED_NONE = 0;
+	private static final int PEEKED_BEGIN_OBJECT = 1;
+	private static final int PEEKED_END_OBJECT = 2;
+	private static final int PEEKED_BEGIN_ARRAY = 3;
+	private static final int PEEKED_END_ARRAY = 4;
+	private static final int PEEKED_TRUE = 5;
+	private static final int PEEKED_FALSE = 6;
+	private static final int PEEKED_NULL = 7;
+	private static final int PEEKED_STRING = 8;
+	private static final int PEEKED_NAME = 9;
+	/** The number's value is stored in peekedLong, it has already been consumed. */
+	private static final int PEEKED_LONG = 10;
+	/** The number's text is stored in the following peekedNumberLength bytes. */
+	private static final int PEEKED_NUMBER = 11;
+	private static final int PEEKED_EOF = 12;
+
+	/* State machine when parsing numbers */
+	private static final int NUMBER_CHAR_NONE = 0;
+	private static final int NUMBER_CHAR_SIGN = 1;
+	private static final int NUMBER_CHAR_DIGIT = 2;
+	private static final int NUMBER_CHAR_DECIMAL = 3;
+	private static final int NUMBER_CHAR_FRACTION_DIGIT = 4;
+	private static final int NUMBER_CHAR_EXP_E = 5;
+	private static final int NUMBER_CHAR_EXP_SIGN = 6;
+	private static final int NUMBER_CHAR_EXP_DIGIT = 7;
+
+	// scopes, see JsonScope
+	private static final int EMPTY_ARRAY = 1;
+	private static final int NONEMPTY_ARRAY = 2;
+	private static final int EMPTY_OBJECT = 3;
+	private static final int DANGLING_NAME = 4;
+	private static final int NONEMPTY_OBJECT = 5;
+	private static final int EMPTY_DOCUMENT = 6;
+	private static final int NONEMPTY_DOCUMENT = 7;
+	private static final int CLOSED = 8;
+
+	private static final int STRING_ESCAPED = 1;
+	private static final int STRING_NON_ASCII = 2;
+
+	/**
+	 * Object keys used by the V0 and V1 metadata parsers.
+	 */
+	private static final String[] KNOWN_KEYS = {
+			"$schema", "schemaVersion", "id", "version", "environment", "entrypoints", "initializer", "initializers",
+			"jars", "file", "mixins", "config", "accessWidener", "depends", "recommends", "suggests", "conflicts", "breaks",
+			"requires", "provides", "name", "description", "authors", "contributors", "contact", "email", "homepage",
+			"issues", "sources", "website", "links", "license", "icon", "languageAdapters", "custom", "adapter", "value",
+			"side", "client", "server", "common", "universal", "main", "preLaunch"
+	};
+	private static final String[] KEY_TABLE = new String[128]; // open addressing by String.hashCode
+
+	static {
+		for (String key : KNOWN_KEYS) {
+			int idx = key.hashCode() & (KEY_TABLE.length - 1);
+
+			while (KEY_TABLE[idx] != null) {
+				idx = (idx + 1) & (KEY_TABLE.length - 1);
+			}
+
+			KEY_TABLE[idx] = key;
+		}
+	}
+
+	private final byte[] buffer;
+	private final int start;
+	private final int limit;
+	private int pos;
+
+	private int lineNumber = 0;
+	private int lineStart;
+
+	private int peeked = PEEKED_NONE;
+	private long peekedLong;
+	private int peekedNumberLength;
+	private int stringFlags;
+	private int valueStart;
+
+	private int[] stack = new int[32];
+	private int stackSize = 0;
+	private String[] pathNames = new String[32];
+	private int[] pathIndices = new int[32];
+
+	public Utf8JsonReader(byte[] data) {
+		this(data, 0, data.length);
+	}
+
+	/**
+	 * Create a reader for the remaining bytes of a buffer, heap buffers are read in place and direct buffers are copied.
+	 *
+	 * <p>The buffer's position isn't modified and its content must not change while reading.
+	 */
+	public Utf8JsonReader(ByteBuffer data) {
+		this(data.hasArray() ? data.array() : toArray(data),
+				data.hasArray() ? data.arrayOffset() + data.position() : 0,
+				data.remaining());
+	}
+
+	private static byte[] toArray(ByteBuffer data) {
+		byte[] ret = new byte[data.remaining()];
+		data.duplicate().get(ret);
+
+		return ret;
+	}
+
+	Utf8JsonReader(byte[] data, int offset, int length) {
+		super(UNREADABLE_READER);
+
+		if (offset < 0 || length < 0 || offset + length > data.length) throw new IndexOutOfBoundsException();
+
+		// skip an optional byte order mark
+		if (length >= 3 && data[offset] == (byte) 0xef && data[offset + 1] == (byte) 0xbb && data[offset + 2] == (byte) 0xbf) {
+			offset += 3;
+			length -= 3;
+		}
+
+		this.buffer = data;
+		this.start = offset;
+		this.limit = offset + length;
+		this.pos = offset;
+		this.lineStart = offset;
+		stack[stackSize++] = EMPTY_DOCUMENT;
+	}
+
+	@Override
+	public void beginArray() throws IOException {
+		int p = peeked;
+		if (p == PEEKED_NONE) p = doPeek();
+
+		if (p == PEEKED_BEGIN_ARRAY) {
+			push(EMPTY_ARRAY);
+			pathIndices[stackSize - 1] = 0;
+			peeked = PEEKED_NONE;
+		} else {
+			throw new IllegalStateException("Expected BEGIN_ARRAY but was " + peek() + locationString());
+		}
+	}
+
+	@Override
+	public void endArray() throws IOException {
+		int p = peeked;
+		if (p == PEEKED_NONE) p = doPeek();
+
+		if (p == PEEKED_END_ARRAY) {
+			stackSize--;
+			pathIndices[stackSize - 1]++;
+			peeked = PEEKED_NONE;
+		} else {
+			throw new IllegalStateException("Expected END_ARRAY but was " + peek() + locationString());
+		}
+	}
+
+	@Override
+	public void beginObject() throws IOException {
+		int p = peeked;
+		if (p == PEEKED_NONE) p = doPeek();
+
+		if (p == PEEKED_BEGIN_OBJECT) {
+			push(EMPTY_OBJECT);
+			peeked = PEEKED_NONE;
+		} else {
+			throw new IllegalStateException("Expected BEGIN_OBJECT but was " + peek() + locationString());
+		}
+	}
+
+	@Override
+	public void endObject() throws IOException {
+		int p = peeked;
+		if (p == PEEKED_NONE) p = doPeek();
+
+		if (p == PEEKED_END_OBJECT) {
+			stackSize--;
+			pathNames[stackSize] = null;
+			pathIndices[stackSize - 1]++;
+			peeked = PEEKED_NONE;
+		} else {
+			throw new IllegalStateException("Expected END_OBJECT but was " + peek() + locationString());
+		}
+	}
+
+	@Override
+	public boolean hasNext() throws IOException {
+		int p = peeked;
+		if (p == PEEKED_NONE) p = doPeek();
+
+		return p != PEEKED_END_OBJECT && p != PEEKED_END_ARRAY;
+	}
+
+	@Override
+	public JsonToken peek() throws IOException {
+		int p = peeked;
+		if (p == PEEKED_NONE) p = doPeek();
+
+		switch (p) {
+		case PEEKED_BEGIN_OBJECT:
+			return JsonToken.BEGIN_OBJECT;
+		case PEEKED_END_OBJECT:
+			return JsonToken.END_OBJECT;
+		case PEEKED_BEGIN_ARRAY:
+			return JsonToken.BEGIN_ARRAY;
+		case PEEKED_END_ARRAY:
+			return JsonToken.END_ARRAY;
+		case PEEKED_NAME:
+			return JsonToken.NAME;
+		case PEEKED_TRUE:
+		case PEEKED_FALSE:
+			return JsonToken.BOOLEAN;
+		case PEEKED_NULL:
+			return JsonToken.NULL;
+		case PEEKED_STRING:
+			return JsonToken.STRING;
+		case PEEKED_LONG:
+		case PEEKED_NUMBER:
+			return JsonToken.NUMBER;
+		case PEEKED_EOF:
+			return JsonToken.END_DOCUMENT;
+		default:
+			throw new AssertionError();
+		}
+	}
+
+	private int doPeek() throws IOException {
+		int peekStack = stack[stackSize - 1];
+
+		if (peekStack == EMPTY_ARRAY) {
+			stack[stackSize - 1] = NONEMPTY_ARRAY;
+		} else if (peekStack == NONEMPTY_ARRAY) {
+			// Look for a comma before the next element.
+			int c = nextNonWhitespace(true);
+
+			if (c == ']') {
+				return peeked = PEEKED_END_ARRAY;
+			} else if (c != ',') {
+				throw syntaxError("Unterminated array");
+			}
+		} else if (peekStack == EMPTY_OBJECT || peekStack == NONEMPTY_OBJECT) {
+			stack[stackSize - 1] = DANGLING_NAME;
+
+			// Look for a comma before the next element.
+			if (peekStack == NONEMPTY_OBJECT) {
+				int c = nextNonWhitespace(true);
+
+				if (c == '}') {
+					return peeked = PEEKED_END_OBJECT;
+				} else if (c != ',') {
+					throw syntaxError("Unterminated object");
+				}
+			}
+
+			int c = nextNonWhitespace(true);
+
+			if (c == '"') {
+				return peeked = PEEKED_NAME;
+			} else if (c == '}') {
+				if (peekStack != NONEMPTY_OBJECT) return peeked = PEEKED_END_OBJECT;
+
+				throw syntaxError("Expected name");
+			} else {
+				// unquoted and single quoted names are lenient
+				throw syntaxError("Use JsonReader.setLenient(true) to accept malformed JSON");
+			}
+		} else if (peekStack == DANGLING_NAME) {
+			stack[stackSize - 1] = NONEMPTY_OBJECT;
+
+			// Look for a colon before the value.
+			if (nextNonWhitespace(true) != ':') {
+				throw syntaxError("Expected ':'");
+			}
+		} else if (peekStack == EMPTY_DOCUMENT) {
+			stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+		} else if (peekStack == NONEMPTY_DOCUMENT) {
+			if (nextNonWhitespace(false) == -1) {
+				return peeked = PEEKED_EOF;
+			} else {
+				throw syntaxError("Use JsonReader.setLenient(true) to accept malformed JSON");
+			}
+		} else if (peekStack == CLOSED) {
+			throw new IllegalStateException("JsonReader is closed");
+		}
+
+		int c = nextNonWhitespace(true);
+		valueStart = pos - 1;
+
+		switch (c) {
+		case '"':
+			return peeked = PEEKED_STRING;
+		case '[':
+			return peeked = PEEKED_BEGIN_ARRAY;
+		case '{':
+			return peeked = PEEKED_BEGIN_OBJECT;
+		case ']':
+			if (peekStack == EMPTY_ARRAY) {
+				return peeked = PEEKED_END_ARRAY;
+			}
+			// fall-through to handle ",]"
+		case ';':
+		case ',':
+			// 0-length literals in arrays are only allowed in lenient mode
+			if (peekStack == EMPTY_ARRAY || peekStack == NONEMPTY_ARRAY) {
+				throw syntaxError("Use JsonReader.setLenient(true) to accept malformed JSON");
+			} else {
+				throw syntaxError("Unexpected value");
+			}
+		default:
+			pos--; // Don't consume the first character in a literal value.
+		}
+
+		int result = peekKeyword();
+		if (result != PEEKED_NONE) return result;
+
+		result = peekNumber();
+		if (result != PEEKED_NONE) return result;
+
+		if (!isLiteral(buffer[pos])) {
+			throw syntaxError("Expected value");
+		}
+
+		// unquoted strings are only allowed in lenient mode
+		throw syntaxError("Use JsonReader.setLenient(true) to accept malformed JSON");
+	}
+
+	private int peekKeyword() throws IOException {
+		// Figure out which keyword we're matching against by its first character.
+		int c = buffer[pos];
+		String keyword;
+		String keywordUpper;
+		int peeking;
+
+		if (c == 't' || c == 'T') {
+			keyword = "true";
+			keywordUpper = "TRUE";
+			peeking = PEEKED_TRUE;
+		} else if (c == 'f' || c == 'F') {
+			keyword = "false";
+			keywordUpper = "FALSE";
+			peeking = PEEKED_FALSE;
+		} else if (c == 'n' || c == 'N') {
+			keyword = "null";
+			keywordUpper = "NULL";
+			peeking = PEEKED_NULL;
+		} else {
+			return PEEKED_NONE;
+		}
+
+		// Confirm that chars [1..length) match the keyword.
+		int length = keyword.length();
+		if (pos + length > limit) return PEEKED_NONE;
+
+		for (int i = 1; i < length; i++) {
+			c = buffer[pos + i];
+
+			if (c != keyword.charAt(i) && c != keywordUpper.charAt(i)) {
+				return PEEKED_NONE;
+			}
+		}
+
+		if (pos + length < limit && isLiteral(buffer[pos + length])) {
+			return PEEKED_NONE; // Don't match trues, falsey or nullsoft!
+		}
+
+		pos += length;
+
+		return peeked = peeking;
+	}
+
+	private int peekNumber() throws IOException {
+		byte[] buffer = this.buffer;
+		int p = pos;
+		int l = limit;
+
+		long value = 0; // Negative to accommodate Long.MIN_VALUE more easily.
+		boolean negative = false;
+		boolean fitsInLong = true;
+		int last = NUMBER_CHAR_NONE;
+		int i = 0;
+
+		charactersOfNumber:
+		for (; p + i < l; i++) {
+			byte c = buffer[p + i];
+
+			switch (c) {
+			case '-':
+				if (last == NUMBER_CHAR_NONE) {
+					negative = true;
+					last = NUMBER_CHAR_SIGN;
+					continue;
+				} else if (last == NUMBER_CHAR_EXP_E) {
+					last = NUMBER_CHAR_EXP_SIGN;
+					continue;
+				}
+
+				return PEEKED_NONE;
+			case '+':
+				if (last == NUMBER_CHAR_EXP_E) {
+					last = NUMBER_CHAR_EXP_SIGN;
+					continue;
+				}
+
+				return PEEKED_NONE;
+			case 'e':
+			case 'E':
+				if (last == NUMBER_CHAR_DIGIT || last == NUMBER_CHAR_FRACTION_DIGIT) {
+					last = NUMBER_CHAR_EXP_E;
+					continue;
+				}
+
+				return PEEKED_NONE;
+			case '.':
+				if (last == NUMBER_CHAR_DIGIT) {
+					last = NUMBER_CHAR_DECIMAL;
+					continue;
+				}
+
+				return PEEKED_NONE;
+			default:
+				if (c < '0' || c > '9') {
+					if (!isLiteral(c)) {
+						break charactersOfNumber;
+					}
+
+					return PEEKED_NONE;
+				}
+
+				if (last == NUMBER_CHAR_SIGN || last == NUMBER_CHAR_NONE) {
+					value = -(c - '0');
+					last = NUMBER_CHAR_DIGIT;
+				} else if (last == NUMBER_CHAR_DIGIT) {
+					if (value == 0) {
+						return PEEKED_NONE; // Leading '0' prefix is not allowed (since it could be octal).
+					}
+
+					long newValue = value * 10 - (c - '0');
+					fitsInLong &= value > MIN_INCOMPLETE_INTEGER
+							|| (value == MIN_INCOMPLETE_INTEGER && newValue < value);
+					value = newValue;
+				} else if (last == NUMBER_CHAR_DECIMAL) {
+					last = NUMBER_CHAR_FRACTION_DIGIT;
+				} else if (last == NUMBER_CHAR_EXP_E || last == NUMBER_CHAR_EXP_SIGN) {
+					last = NUMBER_CHAR_EXP_DIGIT;
+				}
+			}
+		}
+
+		// We've read a complete number. Decide if it's a PEEKED_LONG or a PEEKED_NUMBER.
+		if (last == NUMBER_CHAR_DIGIT && fitsInLong && (value != Long.MIN_VALUE || negative) && (value != 0 || !negative)) {
+			peekedLong = negative ? value : -value;
+			pos += i;
+			return peeked = PEEKED_LONG;
+		} else if (last == NUMBER_CHAR_DIGIT || last == NUMBER_CHAR_FRACTION_DIGIT
+				|| last == NUMBER_CHAR_EXP_DIGIT) {
+			peekedNumberLength = i;
+			return peeked = PEEKED_NUMBER;
+		} else {
+			return PEEKED_NONE;
+		}
+	}
+
+	private boolean isLiteral(byte c) throws IOException {
+		switch (c) {
+		case '/':
+		case '\\':
+		case ';':
+		case '#':
+		case '=':
+			throw syntaxError("Use JsonReader.setLenient(true) to accept malformed JSON");
+		case '{':
+		case '}':
+		case '[':
+		case ']':
+		case ':':
+		case ',':
+		case ' ':
+		case '\t':
+		case '\f':
+		case '\r':
+		case '\n':
+			return false;
+		default:
+			return true;
+		}
+	}
+
+	@Override
+	public String nextName() throws IOException {
+		int p = peeked;
+		if (p == PEEKED_NONE) p = doPeek();
+
+		if (p != PEEKED_NAME) {
+			throw new IllegalStateException("Expected a name but was " + peek() + locationString());
+		}
+
+		int start = pos;
+		int end = scanString();
+		String result = stringFlags == 0 ? findKnownKey(start, end) : null;
+		if (result == null) result = decodeString(start, end);
+
+		peeked = PEEKED_NONE;
+		pathNames[stackSize - 1] = result;
+
+		return result;
+	}
+
+	@Override
+	public String nextString() throws IOException {
+		int p = peeked;
+		if (p == PEEKED_NONE) p = doPeek();
+
+		String result;
+
+		if (p == PEEKED_STRING) {
+			int start = pos;
+			int end = scanString();
+			result = decodeString(start, end);
+		} else if (p == PEEKED_LONG) {
+			result = Long.toString(peekedLong);
+		} else if (p == PEEKED_NUMBER) {
+			result = consumeNumber();
+		} else {
+			throw new IllegalStateException("Expected a string but was " + peek() + locationString());
+		}
+
+		peeked = PEEKED_NONE;
+		pathIndices[stackSize - 1]++;
+
+		return result;
+	}
+
+	@Override
+	public boolean nextBoolean() throws IOException {
+		int p = peeked;
+		if (p == PEEKED_NONE) p = doPeek();
+
+		if (p == PEEKED_TRUE || p == PEEKED_FALSE) {
+			peeked = PEEKED_NONE;
+			pathIndices[stackSize - 1]++;
+
+			return p == PEEKED_TRUE;
+		}
+
+		throw new IllegalStateException("Expected a boolean but was " + peek() + locationString());
+	}
+
+	@Override
+	public void nextNull() throws IOException {
+		int p = peeked;
+		if (p == PEEKED_NONE) p = doPeek();
+
+		if (p == PEEKED_NULL) {
+			peeked = PEEKED_NONE;
+			pathIndices[stackSize - 1]++;
+		} else {
+			throw new IllegalStateException("Expected null but was " + peek() + locationString());
+		}
+	}
+
+	@Override
+	public double nextDouble() throws IOException {
+		int p = peeked;
+		if (p == PEEKED_NONE) p = doPeek();
+
+		double result;
+
+		if (p == PEEKED_LONG) {
+			result = peekedLong;
+		} else if (p == PEEKED_NUMBER || p == PEEKED_STRING) {
+			String str = nextLiteral(p);
+			result = Double.parseDouble(str); // don't catch this NumberFormatException.
+
+			if (Double.isNaN(result) || Double.isInfinite(result)) {
+				throw new MalformedJsonException("JSON forbids NaN and infinities: " + result + locationString());
+			}
+		} else {
+			throw new IllegalStateException("Expected a double but was " + peek() + locationString());
+		}
+
+		peeked = PEEKED_NONE;
+		pathIndices[stackSize - 1]++;
+
+		return result;
+	}
+
+	@Override
+	public long nextLong() throws IOException {
+		int p = peeked;
+		if (p == PEEKED_NONE) p = doPeek();
+
+		long result;
+
+		if (p == PEEKED_LONG) {
+			result = peekedLong;
+		} else if (p == PEEKED_NUMBER || p == PEEKED_STRING) {
+			String str = nextLiteral(p);
+
+			try {
+				result = Long.parseLong(str);
+			} catch (NumberFormatException e) {
+				double asDouble = Double.parseDouble(str); // don't catch this NumberFormatException.
+				result = (long) asDouble;
+
+				if (result != asDouble) { // Make sure no precision was lost casting to 'long'.
+					throw new NumberFormatException("Expected a long but was " + str + locationString());
+				}
+			}
+		} else {
+			throw new IllegalStateException("Expected a long but was " + peek() + locationString());
+		}
+
+		peeked = PEEKED_NONE;
+		pathIndices[stackSize - 1]++;
+
+		return result;
+	}
+
+	@Override
+	public int nextInt() throws IOException {
+		int p = peeked;
+		if (p == PEEKED_NONE) p = doPeek();
+
+		int result;
+
+		if (p == PEEKED_LONG) {
+			result = (int) peekedLong;
+
+			if (peekedLong != result) { // Make sure no precision was lost casting to 'int'.
+				throw new NumberFormatException("Expected an int but was " + peekedLong + locationString());
+			}
+		} else if (p == PEEKED_NUMBER || p == PEEKED_STRING) {
+			String str = nextLiteral(p);
+
+			try {
+				result = Integer.parseInt(str);
+			} catch (NumberFormatException e) {
+				double asDouble = Double.parseDouble(str); // don't catch this NumberFormatException.
+				result = (int) asDouble;
+
+				if (result != asDouble) { // Make sure no precision was lost casting to 'int'.
+					throw new NumberFormatException("Expected an int but was " + str + locationString());
+				}
+			}
+		} else {
+			throw new IllegalStateException("Expected an int but was " + peek() + locationString());
+		}
+
+		peeked = PEEKED_NONE;
+		pathIndices[stackSize - 1]++;
+
+		return result;
+	}
+
+	private String nextLiteral(int peeked) throws IOException {
+		if (peeked == PEEKED_STRING) {
+			int start = pos;
+			int end = scanString();
+
+			return decodeString(start, end);
+		} else {
+			return consumeNumber();
+		}
+	}
+
+	private String consumeNumber() {
+		String ret = new String(buffer, pos, peekedNumberLength, StandardCharsets.ISO_8859_1);
+		pos += peekedNumberLength;
+
+		return ret;
+	}
+
+	byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Get the offset of the next byte to be read in {@link #getBuffer()}.
+	 */
+	int getPosition() {
+		return pos;
+	}
+
+	/**
+	 * Get the offset of the next value's first byte in {@link #getBuffer()}.
+	 *
+	 * <p>Skipping the value with {@link #skipValue()} afterwards leaves {@link #getPosition()} directly after its last
+	 * byte.
+	 */
+	int getValueStart() throws IOException {
+		int p = peeked;
+		if (p == PEEKED_NONE) p = doPeek();
+
+		if (p == PEEKED_NAME || p == PEEKED_END_ARRAY || p == PEEKED_END_OBJECT || p == PEEKED_EOF) {
+			throw new IllegalStateException("Expected a value but was " + peek() + locationString());
+		}
+
+		return valueStart;
+	}
+
+	@Override
+	public void close() throws IOException {
+		peeked = PEEKED_NONE;
+		stack[0] = CLOSED;
+		stackSize = 1;
+	}
+
+	@Override
+	public void skipValue() throws IOException {
+		int count = 0;
+
+		do {
+			int p = peeked;
+			if (p == PEEKED_NONE) p = doPeek();
+
+			if (p == PEEKED_BEGIN_ARRAY) {
+				push(EMPTY_ARRAY);
+				count++;
+			} else if (p == PEEKED_BEGIN_OBJECT) {
+				push(EMPTY_OBJECT);
+				count++;
+			} else if (p == PEEKED_END_ARRAY || p == PEEKED_END_OBJECT) {
+				stackSize--;
+				count--;
+			} else if (p == PEEKED_STRING || p == PEEKED_NAME) {
+				scanString();
+			} else if (p == PEEKED_NUMBER) {
+				pos += peekedNumberLength;
+			}
+
+			peeked = PEEKED_NONE;
+		} while (count != 0);
+
+		pathIndices[stackSize - 1]++;
+		pathNames[stackSize - 1] = "null";
+	}
+
+	private void push(int newTop) {
+		if (stackSize == stack.length) {
+			int newLength = stackSize * 2;
+			stack = Arrays.copyOf(stack, newLength);
+			pathIndices = Arrays.copyOf(pathIndices, newLength);
+			pathNames = Arrays.copyOf(pathNames, newLength);
+		}
+
+		stack[stackSize++] = newTop;
+	}
+
+	private int nextNonWhitespace(boolean throwOnEof) throws IOException {
+		byte[] buffer = this.buffer;
+		int p = pos;
+
+		while (p < limit) {
+			int c = buffer[p++];
+
+			if (c == '\n') {
+				lineNumber++;
+				lineStart = p;
+			} else if (c == '/' || c == '#') {
+				pos = p;
+				throw syntaxError("Use JsonReader.setLenient(true) to accept malformed JSON");
+			} else if (c != ' ' && c != '\r' && c != '\t') {
+				pos = p;
+				return c & 0xff;
+			}
+		}
+
+		pos = p;
+
+		if (throwOnEof) {
+			throw new EOFException("End of input" + locationString());
+		} else {
+			return -1;
+		}
+	}
+
+	/**
+	 * Advance past the closing quote of the string starting at the current position, recording its properties in
+	 * {@link #stringFlags}.
+	 *
+	 * @return the end of the string's content, exclusive
+	 */
+	private int scanString() throws IOException {
+		byte[] buffer = this.buffer;
+		int flags = 0;
+
+		for (int p = pos; p < limit; p++) {
+			byte c = buffer[p];
+
+			if (c == '"') {
+				pos = p + 1;
+				stringFlags = flags;
+
+				return p;
+			} else if (c == '\\') {
+				flags |= STRING_ESCAPED;
+				p++; // skip the escaped character, validating it now so skipped or lazily decoded strings fail while parsing
+
+				if (p >= limit) {
+					pos = limit;
+					throw syntaxError("Unterminated escape sequence");
+				} else if (!isValidEscape(buffer[p])) {
+					pos = p + 1;
+					throw syntaxError("Invalid escape sequence");
+				} else if (buffer[p] == 'u') {
+					checkUnicodeEscape(p + 1);
+					p += 4;
+				} else if (buffer[p] == '\n') {
+					lineNumber++;
+					lineStart = p + 1;
+				}
+			} else if (c == '\n') {
+				lineNumber++;
+				lineStart = p + 1;
+			} else if (c < 0) {
+				flags |= STRING_NON_ASCII;
+			}
+		}
+
+		pos = limit;
+		throw syntaxError("Unterminated string");
+	}
+
+	/**
+	 * Check that a unicode escape sequence has 4 hex digits, failing like {@link JsonReader} does.
+	 *
+	 * @param start position after the 'u'
+	 */
+	private void checkUnicodeEscape(int start) throws IOException {
+		for (int i = start; i < start + 4; i++) {
+			if (i < limit && isHexDigit(buffer[i])) continue;
+
+			// JsonReader counts the 4 digits in chars, decode enough bytes for 4 chars of any length
+			String digits = new String(buffer, start, Math.min(limit - start, 16), StandardCharsets.UTF_8);
+
+			if (digits.length() < 4) {
+				pos = start;
+				throw syntaxError("Unterminated escape sequence");
+			}
+
+			throw new NumberFormatException("\\u" + digits.substring(0, 4));
+		}
+	}
+
+	private static boolean isHexDigit(byte c) {
+		return c >= '0' && c <= '9' || c >= 'a' && c <= 'f' || c >= 'A' && c <= 'F';
+	}
+
+	private static boolean isValidEscape(byte c) {
+		switch (c) {
+		case 'u':
+		case 't':
+		case 'b':
+		case 'n':
+		case 'r':
+		case 'f':
+		case '\n':
+		case '\'':
+		case '"':
+		case '\\':
+		case '/':
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private String decodeString(int start, int end) throws IOException {
+		if ((stringFlags & STRING_ESCAPED) == 0) {
+			return new String(buffer, start, end - start, (stringFlags & STRING_NON_ASCII) == 0 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+		}
+
+		StringBuilder builder = new StringBuilder(end - start);
+		int segmentStart = start;
+
+		for (int p = start; p < end; p++) {
+			if (buffer[p] != '\\') continue;
+
+			if (p > segmentStart) builder.append(new String(buffer, segmentStart, p - segmentStart, StandardCharsets.UTF_8));
+
+			p++;
+			byte escaped = buffer[p];
+
+			switch (escaped) {
+			case 'u': {
+				if (p + 4 >= end) throw syntaxError("Unterminated escape sequence");
+
+				char result = 0;
+
+				for (int i = p + 1; i <= p + 4; i++) {
+					int c = buffer[i];
+					result <<= 4;
+
+					if (c >= '0' && c <= '9') {
+						result += (c - '0');
+					} else if (c >= 'a' && c <= 'f') {
+						result += (c - 'a' + 10);
+					} else if (c >= 'A' && c <= 'F') {
+						result += (c - 'A' + 10);
+					} else {
+						throw new NumberFormatException("\\u" + new String(buffer, p + 1, 4, StandardCharsets.UTF_8));
+					}
+				}
+
+				builder.append(result);
+				p += 4;
+				break;
+			}
+			case 't': builder.append('\t'); break;
+			case 'b': builder.append('\b'); break;
+			case 'n': builder.append('\n'); break;
+			case 'r': builder.append('\r'); break;
+			case 'f': builder.append('\f'); break;
+			case '\n':
+			case '\'':
+			case '"':
+			case '\\':
+			case '/':
+				builder.append((char) escaped);
+				break;
+			default:
+				// throw error when none of the above cases are matched
+				throw syntaxError("Invalid escape sequence");
+			}
+
+			segmentStart = p + 1;
+		}
+
+		if (end > segmentStart) builder.append(new String(buffer, segmentStart, end - segmentStart, StandardCharsets.UTF_8));
+
+		return builder.toString();
+	}
+
+	/**
+	 * Find the known key equal to the given ASCII bytes without escapes.
+	 */
+	private String findKnownKey(int start, int end) {
+		int len = end - start;
+		int hash = 0;
+
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + buffer[i];
+		}
+
+		String[] table = KEY_TABLE;
+		String key;
+
+		for (int idx = hash & (table.length - 1); (key = table[idx]) != null; idx = (idx + 1) & (table.length - 1)) {
+			if (key.length() != len) continue;
+
+			int i = 0;
+
+			while (i < len && key.charAt(i) == buffer[start + i]) {
+				i++;
+			}
+
+			if (i == len) return key;
+		}
+
+		return null;
+	}
+
+	private IOException syntaxError(String message) throws IOException {
+		throw new MalformedJsonException(message + locationString());
+	}
+
+	@Override
+	public String locationString() {
+		return " at line " + getLineNumber() + " column " + getColumn() + " path " + getPath();
+	}
+
+	@Override
+	public String getPath() {
+		StringBuilder result = new StringBuilder().append('$');
+
+		for (int i = 0, size = stackSize; i < size; i++) {
+			switch (stack[i]) {
+			case EMPTY_ARRAY:
+			case NONEMPTY_ARRAY:
+				result.append('[').append(pathIndices[i]).append(']');
+				break;
+			case EMPTY_OBJECT:
+			case DANGLING_NAME:
+			case NONEMPTY_OBJECT:
+				result.append('.');
+
+				if (pathNames[i] != null) {
+					result.append(pathNames[i]);
+				}
+
+				break;
+			default:
+				break;
+			}
+		}
+
+		return result.toString();
+	}
+
+	@Override
+	public int getLineNumber() {
+		return lineNumber + 1;
+	}
+
+	@Override
+	public int getColumn() {
+		// count UTF-16 chars like JsonReader instead of bytes, skipping UTF-8 continuation bytes and counting 4 byte
+		// sequences as surrogate pairs
+		int ret = 1;
+
+		for (int i = lineStart; i < pos; i++) {
+			int b = buffer[i];
+
+			if ((b & 0xf8) == 0xf0) {
+				ret += 2;
+			} else if ((b & 0xc0) != 0x80) {
+				ret++;
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Restart reading from the beginning, the whole input is always retained.
+	 */
+	@Override
+	public void rewind() {
+		pos = start;
+		lineNumber = 0;
+		lineStart = start;
+		peeked = PEEKED_NONE;
+		stackSize = 1;
+		stack[0] = EMPTY_DOCUMENT;
+	}
+
+	@Override
+	public void setRewindEnabled(boolean value) {
+		// always rewindable
+	}
+}
@@ -34,7 +34,6 @@ import net.fabricmc.loader.api.metadata.ModEnvironment;
 import net.fabricmc.loader.api.metadata.Person;
 import net.fabricmc.loader.impl.lib.gson.JsonReader;
 import net.fabricmc.loader.impl.lib.gson.JsonToken;
-import net.fabricmc.loader.impl.util.version.VersionParser;
 
 final class V0ModMetadataParser {
 	private static final Pattern WEBSITE_PATTERN = Pattern.compile("\\((.+)\\)");
@@ -94,7 +93,7 @@ final class V0ModMetadataParser {
 				final String rawVersion = reader.nextString();
 
 				try {
-					version = VersionParser.parse(rawVersion, false);
+					version = MetadataInterner.parseVersion(rawVersion);
 				} catch (VersionParsingException e) {
 					throw new ParseMetadataException(String.format("Failed to parse version: %s", rawVersion), e);
 				}
@@ -197,7 +196,7 @@ final class V0ModMetadataParser {
 					throw new ParseMetadataException("License name must be a string", reader);
 				}
 
-				license = reader.nextString();
+				license = MetadataInterner.intern(reader.nextString());
 				break;
 			default:
 				if (!ModMetadataParser.IGNORED_KEYS.contains(key)) {
@@ -19,6 +19,7 @@ package net.fabricmc.loader.impl.metadata;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -118,7 +119,80 @@ final class V1ModMetadata extends AbstractModMetadata implements LoaderModMetada
 		}
 
 		this.languageAdapters = Collections.unmodifiableMap(languageAdapters);
-		this.customValues = Collections.unmodifiableMap(customValues);
+		this.customValues = customValues instanceof LazyCustomValueMap ? customValues : Collections.unmodifiableMap(customValues);
+	}
+
+	private V1ModMetadata(V1ModMetadata src) {
+		this.id = src.id;
+		this.version = src.version;
+		this.provides = CompactCollections.list(src.provides);
+		this.environment = src.environment;
+
+		if (src.entrypoints.isEmpty()) {
+			this.entrypoints = Collections.emptyMap();
+		} else {
+			Map<String, List<EntrypointMetadata>> entrypoints = new HashMap<>(src.entrypoints);
+			entrypoints.replaceAll((key, value) -> CompactCollections.list(value));
+			this.entrypoints = CompactCollections.map(entrypoints);
+		}
+
+		this.jars = CompactCollections.list(src.jars);
+		this.mixins = CompactCollections.list(src.mixins);
+		this.accessWidener = src.accessWidener;
+		this.dependencies = CompactCollections.list(src.dependencies);
+		this.hasRequires = src.hasRequires;
+		this.name = src.name;
+		this.description = src.description;
+		this.authors = CompactCollections.list(src.authors);
+		this.contributors = CompactCollections.list(src.contributors);
+		this.contact = src.contact instanceof ContactInformationImpl ? new ContactInformationImpl(CompactCollections.map(src.contact.asMap())) : src.contact;
+		this.license = CompactCollections.list(src.license);
+		this.icon = src.icon;
+		this.languageAdapters = CompactCollections.map(src.languageAdapters);
+		this.customValues = src.customValues instanceof LazyCustomValueMap ? src.customValues : CompactCollections.map(src.customValues);
+	}
+
+	/**
+	 * Create an immutable copy holding compact collections, once overrides were applied and the metadata was verified.
+	 *
+	 * <p>The metadata of every loaded mod stays resident for the lifetime of the game while most of its collections are
+	 * empty or hold a single element. The elements themselves are shared with this instance.
+	 */
+	V1ModMetadata freeze() {
+		V1ModMetadata ret = new V1ModMetadata(this);
+		long before = estimateCollectionsSize(false);
+		long after = ret.estimateCollectionsSize(true);
+
+		Log.trace(LogCategory.METADATA, "Froze metadata of %s, collections retain ~%d instead of ~%d bytes", id, after, before);
+		MetadataInterner.recordFrozen(before, after);
+
+		return ret;
+	}
+
+	/**
+	 * Estimate the retained size of the collection objects, see {@link CompactCollections}.
+	 *
+	 * @param compact whether the collections were created by {@link #freeze()}, otherwise by the constructor
+	 */
+	private long estimateCollectionsSize(boolean compact) {
+		long ret = CompactCollections.listSize(provides.size(), compact)
+				+ CompactCollections.mapSize(entrypoints.size(), compact)
+				+ CompactCollections.listSize(jars.size(), compact)
+				+ CompactCollections.listSize(mixins.size(), compact)
+				+ CompactCollections.listSize(dependencies.size(), compact)
+				+ CompactCollections.listSize(authors.size(), compact)
+				+ CompactCollections.listSize(contributors.size(), compact)
+				+ CompactCollections.listSize(license.size(), compact)
+				+ CompactCollections.mapSize(languageAdapters.size(), compact);
+
+		for (List<EntrypointMetadata> list : entrypoints.values()) {
+			ret += compact ? CompactCollections.listSize(list.size(), true) : CompactCollections.arrayListSize(list.size());
+		}
+
+		if (contact instanceof ContactInformationImpl) ret += CompactCollections.mapSize(contact.asMap().size(), compact);
+		if (!(customValues instanceof LazyCustomValueMap)) ret += CompactCollections.mapSize(customValues.size(), compact);
+
+		return ret;
 	}
 
 	@Override
@@ -318,7 +392,7 @@ final class V1ModMetadata extends AbstractModMetadata implements LoaderModMetada
 		private final ModEnvironment environment;
 
 		MixinEntry(String config, ModEnvironment environment) {
-			this.config = config;
+			this.config = MetadataInterner.intern(config);
 			this.environment = environment;
 		}
 	}
@@ -35,7 +35,6 @@ import net.fabricmc.loader.api.metadata.ModEnvironment;
 import net.fabricmc.loader.api.metadata.Person;
 import net.fabricmc.loader.impl.lib.gson.JsonReader;
 import net.fabricmc.loader.impl.lib.gson.JsonToken;
-import net.fabricmc.loader.impl.util.version.VersionParser;
 
 final class V1ModMetadataParser {
 	/**
@@ -115,7 +114,7 @@ final class V1ModMetadataParser {
 				}
 
 				try {
-					version = VersionParser.parse(reader.nextString(), false);
+					version = MetadataInterner.parseVersion(reader.nextString());
 				} catch (VersionParsingException e) {
 					throw new ParseMetadataException("Failed to parse version", e);
 				}
@@ -199,7 +198,7 @@ final class V1ModMetadataParser {
 				readLanguageAdapters(reader, languageAdapters);
 				break;
 			case "custom":
-				readCustomValues(reader, customValues);
+				customValues = readCustomValues(reader, customValues);
 				break;
 			default:
 				if (!ModMetadataParser.IGNORED_KEYS.contains(key)) {
@@ -240,7 +239,7 @@ final class V1ModMetadataParser {
 				throw new ParseMetadataException("Provided id must be a string", reader);
 			}
 
-			provides.add(reader.nextString());
+			provides.add(MetadataInterner.intern(reader.nextString()));
 		}
 
 		reader.endArray();
@@ -565,7 +564,7 @@ final class V1ModMetadataParser {
 	private static void readLicense(JsonReader reader, List<String> license) throws IOException, ParseMetadataException {
 		switch (reader.peek()) {
 		case STRING:
-			license.add(reader.nextString());
+			license.add(MetadataInterner.intern(reader.nextString()));
 			break;
 		case BEGIN_ARRAY:
 			reader.beginArray();
@@ -575,7 +574,7 @@ final class V1ModMetadataParser {
 					throw new ParseMetadataException("List of licenses must only contain strings", reader);
 				}
 
-				license.add(reader.nextString());
+				license.add(MetadataInterner.intern(reader.nextString()));
 			}
 
 			reader.endArray();
@@ -648,11 +647,22 @@ final class V1ModMetadataParser {
 		reader.endObject();
 	}
 
-	private static void readCustomValues(JsonReader reader, Map<String, CustomValue> customValues) throws IOException, ParseMetadataException {
+	private static Map<String, CustomValue> readCustomValues(JsonReader reader, Map<String, CustomValue> customValues) throws IOException, ParseMetadataException {
 		if (reader.peek() != JsonToken.BEGIN_OBJECT) {
 			throw new ParseMetadataException("Custom values must be in an object!", reader);
 		}
 
+		JsonReader activeReader = reader instanceof ReplayJsonReader ? ((ReplayJsonReader) reader).getActiveReader() : reader;
+
+		if (activeReader instanceof Utf8JsonReader && customValues.isEmpty()) {
+			// Keep the raw JSON of object and array values, they are only parsed when accessed
+			return LazyCustomValueMap.read((Utf8JsonReader) activeReader);
+		}
+
+		if (customValues instanceof LazyCustomValueMap) { // duplicate "custom" field
+			customValues = new HashMap<>(customValues);
+		}
+
 		reader.beginObject();
 
 		while (reader.hasNext()) {
@@ -660,6 +670,8 @@ final class V1ModMetadataParser {
 		}
 
 		reader.endObject();
+
+		return customValues;
 	}
 
 	private V1ModMetadataParser() {
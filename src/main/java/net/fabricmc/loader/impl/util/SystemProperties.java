@@ -40,6 +40,8 @@ public final class SystemProperties {
 	public static final String PATH_GROUPS = "fabric.classPathGroups";
 	// system level libraries, matching code sources will not be assumed to be part of the game or mods and remain on the system class path (paths separated by path separator)
 	public static final String SYSTEM_LIBRARIES = "fabric.systemLibraries";
+	// whether to materialize the runtime mappings on a background thread during setup, defaults to true on clients only
+	public static final String WARM_UP_MAPPINGS = "fabric.mappings.warmUp";
 	// throw exceptions from entrypoints, discovery etc. directly instead of gathering and attaching as suppressed
 	public static final String DEBUG_THROW_DIRECTLY = "fabric.debug.throwDirectly";
 	// logs library classification activity
@@ -56,10 +58,26 @@ public final class SystemProperties {
 	public static final String DEBUG_DISABLE_MOD_SHUFFLE = "fabric.debug.disableModShuffle";
 	// workaround for bad load order dependencies
 	public static final String DEBUG_LOAD_LATE = "fabric.debug.loadLate";
+	// maximum number of concurrently scanned mod jars, defaults to the number of available processors
+	public static final String DISCOVERY_MAX_PARALLELISM = "fabric.discovery.maxParallelism";
+	// whether to scan mod jars on virtual threads if supported by the runtime (Java 21+)
+	public static final String DISCOVERY_VIRTUAL_THREADS = "fabric.discovery.virtualThreads";
+	// heap memory budget for nested jar contents kept for extraction, unit in MiB, defaults to 128 or 1/8 of the max heap
+	public static final String NESTED_JAR_CACHE_SIZE = "fabric.discovery.nestedJarCacheSize";
 	// override the mod discovery timeout, unit in seconds, <= 0 to disable
 	public static final String DEBUG_DISCOVERY_TIMEOUT = "fabric.debug.discoveryTimeout";
+	// ignores the persistent mod discovery index, rescanning all mod jars and rewriting the index
+	public static final String DEBUG_DISCOVERY_RESCAN = "fabric.debug.discoveryRescan";
 	// override the mod resolution timeout, unit in seconds, <= 0 to disable
 	public static final String DEBUG_RESOLUTION_TIMEOUT = "fabric.debug.resolutionTimeout";
+	// limit each mod resolution solver call to a number of conflicts instead of the timeout for reproducible results, <= 0 to disable
+	public static final String DEBUG_RESOLUTION_CONFLICT_BUDGET = "fabric.debug.resolutionConflictBudget";
+	// disables the mod resolution cache, always running the full solver
+	public static final String DISABLE_RESOLUTION_CACHE = "fabric.debug.disableResolutionCache";
+	// file to write a JSON description of mod resolution failures to, for launchers presenting them on their own
+	public static final String RESOLUTION_REPORT_FILE = "fabric.resolutionReportFile";
+	// disables the binary mapping cache, always loading the mappings from the shipped TSRG file
+	public static final String DISABLE_MAPPING_CACHE = "fabric.debug.disableMappingCache";
 	// replace mod versions (modA:versionA,modB:versionB,...)
 	public static final String DEBUG_REPLACE_VERSION = "fabric.debug.replaceVersion";
 	// whether fabric loader is running in a unit test, this affects logging classpath setup
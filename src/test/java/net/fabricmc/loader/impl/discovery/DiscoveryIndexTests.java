@@ -0,0 +1,183 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the on-disk format of {@link DiscoveryIndex}.
+ */
+final class DiscoveryIndexTests {
+	private static final String KEY = "CLIENT";
+
+	@TempDir
+	Path dir;
+	private Path indexFile;
+	private Path jar;
+
+	@BeforeEach
+	public void setup() throws IOException {
+		indexFile = dir.resolve("index.bin");
+		jar = dir.resolve("mod.jar");
+		Files.write(jar, new byte[] { 1, 2, 3 });
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+		DiscoveryIndex.Entry nested = new DiscoveryIndex.Entry("META-INF/jars/nested.jar", 42, "{\"id\":\"nested\"}".getBytes(StandardCharsets.UTF_8), Collections.emptyList());
+		DiscoveryIndex.Entry entry = new DiscoveryIndex.Entry("", -7, null, Collections.singletonList(nested));
+
+		DiscoveryIndex index = DiscoveryIndex.load(indexFile, KEY, false);
+		index.put(jar, attrs(jar), entry);
+		assertTrue(index.isModified());
+		index.save(indexFile);
+
+		DiscoveryIndex loaded = DiscoveryIndex.load(indexFile, KEY, false);
+		DiscoveryIndex.Entry ret = loaded.get(jar, attrs(jar));
+		assertNotNull(ret, "unchanged jar wasn't found in the saved index");
+		assertEntryEquals(entry, ret);
+		assertFalse(loaded.isModified(), "index using all entries unchanged was modified");
+	}
+
+	@Test
+	public void roundTripLongPath() throws IOException {
+		// paths aren't limited to the 64 KiB of DataOutput.writeUTF
+		char[] chars = new char[70000];
+		Arrays.fill(chars, 'a');
+		Path longPath = dir.resolve(new String(chars));
+		Arrays.fill(chars, '\u00e4'); // 2 bytes each in UTF-8
+		DiscoveryIndex.Entry entry = new DiscoveryIndex.Entry(new String(chars), 1, new byte[0], Collections.emptyList());
+
+		DiscoveryIndex index = DiscoveryIndex.load(indexFile, KEY, false);
+		index.put(longPath, attrs(jar), entry);
+		index.save(indexFile);
+
+		DiscoveryIndex.Entry ret = DiscoveryIndex.load(indexFile, KEY, false).get(longPath, attrs(jar));
+		assertNotNull(ret);
+		assertEntryEquals(entry, ret);
+	}
+
+	@Test
+	public void invalidateOnSizeChange() throws IOException {
+		saveSingleEntry();
+
+		Files.write(jar, new byte[] { 4 }, StandardOpenOption.APPEND);
+		assertNull(DiscoveryIndex.load(indexFile, KEY, false).get(jar, attrs(jar)), "jar with changed size was served from the index");
+	}
+
+	@Test
+	public void invalidateOnModificationTimeChange() throws IOException {
+		saveSingleEntry();
+
+		Files.setLastModifiedTime(jar, FileTime.fromMillis(Files.getLastModifiedTime(jar).toMillis() - 10000));
+		assertNull(DiscoveryIndex.load(indexFile, KEY, false).get(jar, attrs(jar)), "jar with changed modification time was served from the index");
+	}
+
+	@Test
+	public void invalidateOnKeyChange() throws IOException {
+		saveSingleEntry();
+
+		assertNull(DiscoveryIndex.load(indexFile, "SERVER", false).get(jar, attrs(jar)));
+	}
+
+	@Test
+	public void invalidateOnRescan() throws IOException {
+		saveSingleEntry();
+
+		assertNull(DiscoveryIndex.load(indexFile, KEY, true).get(jar, attrs(jar)));
+	}
+
+	@Test
+	public void invalidateOnFormatVersionChange() throws IOException {
+		saveSingleEntry();
+
+		// replace the format version, keeping the remaining content
+		byte[] content = Files.readAllBytes(indexFile);
+
+		try (DataOutputStream os = new DataOutputStream(Files.newOutputStream(indexFile))) {
+			os.writeInt(DiscoveryIndex.MAGIC);
+			os.writeInt(DiscoveryIndex.FORMAT_VERSION + 1);
+			os.write(content, 8, content.length - 8);
+		}
+
+		assertNull(DiscoveryIndex.load(indexFile, KEY, false).get(jar, attrs(jar)));
+	}
+
+	@Test
+	public void discardTruncatedIndex() throws IOException {
+		saveSingleEntry();
+
+		byte[] content = Files.readAllBytes(indexFile);
+		Files.write(indexFile, Arrays.copyOf(content, content.length - 3));
+
+		assertNull(DiscoveryIndex.load(indexFile, KEY, false).get(jar, attrs(jar)));
+	}
+
+	@Test
+	public void dropUnusedEntries() throws IOException {
+		saveSingleEntry();
+
+		DiscoveryIndex index = DiscoveryIndex.load(indexFile, KEY, false);
+		assertTrue(index.isModified(), "index with unused entries wasn't modified");
+		index.save(indexFile);
+
+		assertNull(DiscoveryIndex.load(indexFile, KEY, false).get(jar, attrs(jar)), "unused entry was kept");
+	}
+
+	private void saveSingleEntry() throws IOException {
+		DiscoveryIndex index = DiscoveryIndex.load(indexFile, KEY, false);
+		index.put(jar, attrs(jar), new DiscoveryIndex.Entry("", 0, new byte[] { '{', '}' }, Collections.emptyList()));
+		index.save(indexFile);
+
+		assertNotNull(DiscoveryIndex.load(indexFile, KEY, false).get(jar, attrs(jar)));
+	}
+
+	private static BasicFileAttributes attrs(Path path) throws IOException {
+		return Files.readAttributes(path, BasicFileAttributes.class);
+	}
+
+	private static void assertEntryEquals(DiscoveryIndex.Entry expected, DiscoveryIndex.Entry actual) {
+		assertEquals(expected.localPath, actual.localPath);
+		assertEquals(expected.hash, actual.hash);
+		assertArrayEquals(expected.metadata, actual.metadata);
+		assertEquals(expected.nested.size(), actual.nested.size());
+
+		for (int i = 0; i < expected.nested.size(); i++) {
+			assertEntryEquals(expected.nested.get(i), actual.nested.get(i));
+		}
+	}
+}
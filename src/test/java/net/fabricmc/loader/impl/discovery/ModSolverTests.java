@@ -0,0 +1,296 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that {@link ModSolver#solveGreedy} either declines or finds the same selection as {@link ModSolver#solve}.
+ */
+final class ModSolverTests {
+	@Test
+	public void newestNestedVersion() throws Exception {
+		List<String> selection = solve(() -> {
+			ModCandidate modX = TestCandidates.mod("mod_x", "1.0.0");
+			ModCandidate modY = TestCandidates.mod("mod_y", "1.0.0");
+
+			return Arrays.asList(modX, modY,
+					TestCandidates.nested(modX, "lib", "1.0.0"),
+					TestCandidates.nested(modY, "lib", "1.1.0"));
+		}, true);
+
+		assertEquals(Arrays.asList("lib 1.1.0", "mod_x 1.0.0", "mod_y 1.0.0"), selection);
+	}
+
+	@Test
+	public void nestedVersionRestrictedByDepends() throws Exception {
+		List<String> selection = solve(() -> {
+			ModCandidate modX = TestCandidates.mod("mod_x", "1.0.0", "\"depends\": {\"lib\": \"<1.1.0\"}");
+			ModCandidate modY = TestCandidates.mod("mod_y", "1.0.0");
+
+			return Arrays.asList(modX, modY,
+					TestCandidates.nested(modX, "lib", "1.0.0"),
+					TestCandidates.nested(modY, "lib", "1.1.0"));
+		}, false);
+
+		assertEquals(Arrays.asList("lib 1.0.0", "mod_x 1.0.0", "mod_y 1.0.0"), selection);
+	}
+
+	@Test
+	public void nestedVersionRestrictedByBreaks() throws Exception {
+		List<String> selection = solve(() -> {
+			ModCandidate modX = TestCandidates.mod("mod_x", "1.0.0", "\"breaks\": {\"lib\": \">=1.1.0\"}");
+			ModCandidate modY = TestCandidates.mod("mod_y", "1.0.0");
+
+			return Arrays.asList(modX, modY,
+					TestCandidates.nested(modX, "lib", "1.0.0"),
+					TestCandidates.nested(modY, "lib", "1.1.0"));
+		}, false);
+
+		assertEquals(Arrays.asList("lib 1.0.0", "mod_x 1.0.0", "mod_y 1.0.0"), selection);
+	}
+
+	@Test
+	public void nestedVersionsOfSharedLibrary() throws Exception {
+		// both parents nest both versions, each version only needs one selected parent
+		List<String> selection = solve(() -> {
+			ModCandidate modX = TestCandidates.mod("mod_x", "1.0.0", "\"depends\": {\"lib\": \"*\"}");
+			ModCandidate modY = TestCandidates.mod("mod_y", "1.0.0", "\"depends\": {\"lib\": \">=1.0.0\"}");
+			ModCandidate lib1 = TestCandidates.nested(modX, "lib", "1.0.0");
+			ModCandidate lib2 = TestCandidates.nested(modY, "lib", "2.0.0");
+			TestCandidates.nest(modY, lib1);
+			TestCandidates.nest(modX, lib2);
+
+			return Arrays.asList(modX, modY, lib1, lib2);
+		}, true);
+
+		assertEquals(Arrays.asList("lib 2.0.0", "mod_x 1.0.0", "mod_y 1.0.0"), selection);
+	}
+
+	@Test
+	public void dependencyOnProvidedId() throws Exception {
+		List<String> selection = solve(() -> Arrays.asList(
+				TestCandidates.mod("mod_a", "1.0.0", "\"depends\": {\"api_lib\": \">=1.0.0\"}"),
+				TestCandidates.mod("mod_b", "1.2.0", "\"provides\": [\"api_lib\"]")), true);
+
+		assertEquals(Arrays.asList("mod_a 1.0.0", "mod_b 1.2.0"), selection);
+	}
+
+	@Test
+	public void providedIdShadowsNestedMod() throws Exception {
+		List<String> selection = solve(() -> {
+			ModCandidate modB = TestCandidates.mod("mod_b", "1.0.0", "\"provides\": [\"api_lib\"]");
+			ModCandidate modC = TestCandidates.mod("mod_c", "1.0.0");
+
+			return Arrays.asList(modB, modC, TestCandidates.nested(modC, "api_lib", "2.0.0"));
+		}, true);
+
+		assertEquals(Arrays.asList("mod_b 1.0.0", "mod_c 1.0.0"), selection);
+	}
+
+	@Test
+	public void unsatisfiedDependencyOnProvidedId() throws Exception {
+		List<String> selection = solve(() -> Arrays.asList(
+				TestCandidates.mod("mod_a", "1.0.0", "\"depends\": {\"api_lib\": \">=2.0.0\"}"),
+				TestCandidates.mod("mod_b", "1.2.0", "\"provides\": [\"api_lib\"]")), false);
+
+		assertNull(selection);
+	}
+
+	@Test
+	public void breaksBetweenRootMods() throws Exception {
+		List<String> selection = solve(() -> Arrays.asList(
+				TestCandidates.mod("mod_a", "1.0.0", "\"breaks\": {\"mod_b\": \"*\"}"),
+				TestCandidates.mod("mod_b", "1.0.0")), false);
+
+		assertNull(selection);
+	}
+
+	@Test
+	public void conflictsBetweenRootMods() throws Exception {
+		// conflicts only warns, both mods load
+		List<String> selection = solve(() -> Arrays.asList(
+				TestCandidates.mod("mod_a", "1.0.0", "\"conflicts\": {\"mod_b\": \"*\"}"),
+				TestCandidates.mod("mod_b", "1.0.0")), true);
+
+		assertEquals(Arrays.asList("mod_a 1.0.0", "mod_b 1.0.0"), selection);
+	}
+
+	@Test
+	public void conflictingNestedVersion() throws Exception {
+		// conflicts doesn't constrain the selection either
+		List<String> selection = solve(() -> {
+			ModCandidate modX = TestCandidates.mod("mod_x", "1.0.0", "\"conflicts\": {\"lib\": \">=1.1.0\"}");
+			ModCandidate modY = TestCandidates.mod("mod_y", "1.0.0");
+
+			return Arrays.asList(modX, modY,
+					TestCandidates.nested(modX, "lib", "1.0.0"),
+					TestCandidates.nested(modY, "lib", "1.1.0"));
+		}, true);
+
+		assertEquals(Arrays.asList("lib 1.1.0", "mod_x 1.0.0", "mod_y 1.0.0"), selection);
+	}
+
+	@Test
+	public void dependencyOnBuiltinMod() throws Exception {
+		List<String> selection = solve(() -> Arrays.asList(
+				TestCandidates.builtin("java", "17"),
+				TestCandidates.mod("mod_a", "1.0.0", "\"depends\": {\"java\": \">=17\"}")), true);
+
+		assertEquals(Arrays.asList("java 17", "mod_a 1.0.0"), selection);
+	}
+
+	@Test
+	public void unsatisfiedDependencyOnBuiltinMod() throws Exception {
+		List<String> selection = solve(() -> Arrays.asList(
+				TestCandidates.builtin("java", "17"),
+				TestCandidates.mod("mod_a", "1.0.0", "\"depends\": {\"java\": \">=21\"}")), false);
+
+		assertNull(selection);
+	}
+
+	@Test
+	public void partitionedSolveWithBuiltinMod() throws Exception {
+		// enough independent components to be solved in partitions on multi-core machines, the preselected builtin mod
+		// isn't part of the arena
+		int count = 150;
+
+		List<String> selection = solve(() -> {
+			List<ModCandidate> ret = new ArrayList<>();
+			ret.add(TestCandidates.builtin("java", "17"));
+
+			for (int i = 0; i < count; i++) {
+				ModCandidate mod = TestCandidates.mod("mod_"+i, "1.0.0", "\"depends\": {\"java\": \">=17\", \"lib_"+i+"\": \"*\"}");
+				ret.add(mod);
+				ret.add(TestCandidates.nested(mod, "lib_"+i, "1.0.0"));
+			}
+
+			return ret;
+		}, true);
+
+		assertEquals(2 * count + 1, selection.size());
+		assertTrue(selection.contains("java 17"));
+		assertTrue(selection.contains("lib_"+(count - 1)+" 1.0.0"));
+	}
+
+	@Test
+	public void partitionedSolveWithSharedProvidedId() throws Exception {
+		// the providers are only connected through the provided id, solving them in separate partitions would select both
+		int count = 150;
+
+		List<String> selection = solve(() -> {
+			List<ModCandidate> ret = new ArrayList<>();
+			ret.add(TestCandidates.mod("provider_a", "1.0.0", "\"provides\": [\"api_lib\"]"));
+			ret.add(TestCandidates.mod("provider_b", "1.0.0", "\"provides\": [\"api_lib\"]"));
+
+			for (int i = 0; i < count; i++) {
+				ret.add(TestCandidates.mod("mod_"+i, "1.0.0"));
+			}
+
+			return ret;
+		}, false);
+
+		assertNull(selection);
+	}
+
+	/**
+	 * Solve a problem with {@link ModSolver#solveGreedy} and {@link ModSolver#solve}, asserting that a greedy solution
+	 * matches the solver's.
+	 *
+	 * @param candidates supplier of equal candidates for each solve, including nested and builtin mods
+	 * @param expectGreedy whether the greedy solver is expected to find a solution
+	 * @return the solver's selection as sorted "id version" strings, null if there is no solution
+	 */
+	private static List<String> solve(Supplier<List<ModCandidate>> candidates, boolean expectGreedy) throws Exception {
+		Problem greedy = new Problem(candidates.get());
+		Map<String, ModCandidate> preselectedMods = new HashMap<>(greedy.selectedMods);
+		List<ModCandidate> uniquePreselectedMods = new ArrayList<>(greedy.uniqueSelectedMods);
+		boolean greedySolved = ModSolver.solveGreedy(greedy.allModsSorted, greedy.modsById, greedy.arena, greedy.selectedMods, greedy.uniqueSelectedMods);
+		assertEquals(expectGreedy, greedySolved, "greedy solve result");
+
+		Problem solver = new Problem(candidates.get());
+		ModSolver.Result result = ModSolver.solve(solver.allModsSorted, solver.modsById, solver.arena, solver.selectedMods, solver.uniqueSelectedMods, new ResolutionMetrics());
+		List<String> selection = result.success ? describe(solver.uniqueSelectedMods) : null;
+
+		if (greedySolved) {
+			assertTrue(result.success, "greedy solve succeeded without a solution");
+			assertEquals(selection, describe(greedy.uniqueSelectedMods), "greedy solve found a different selection");
+		} else {
+			assertEquals(preselectedMods, greedy.selectedMods, "declined greedy solve modified the selection");
+			assertEquals(uniquePreselectedMods, greedy.uniqueSelectedMods, "declined greedy solve modified the selection");
+		}
+
+		if (!result.success) assertFalse(greedySolved);
+
+		return selection;
+	}
+
+	private static List<String> describe(List<ModCandidate> mods) {
+		List<String> ret = new ArrayList<>(mods.size());
+
+		for (ModCandidate mod : mods) {
+			ret.add(mod.getId()+" "+mod.getVersion().getFriendlyString());
+		}
+
+		ret.sort(null);
+
+		return ret;
+	}
+
+	/**
+	 * Solver input prepared like {@link ModResolver} does, with builtin mods preselected.
+	 */
+	private static final class Problem {
+		final List<ModCandidate> allModsSorted;
+		final Map<String, List<ModCandidate>> modsById = new LinkedHashMap<>();
+		final Map<String, ModCandidate> selectedMods = new HashMap<>();
+		final List<ModCandidate> uniqueSelectedMods = new ArrayList<>();
+		final CandidateArena arena;
+
+		Problem(List<ModCandidate> candidates) throws ModResolutionException {
+			allModsSorted = new ArrayList<>(candidates);
+			allModsSorted.sort(ModResolver.modPrioComparator);
+
+			for (ModCandidate mod : allModsSorted) {
+				modsById.computeIfAbsent(mod.getId(), ignore -> new ArrayList<>()).add(mod);
+
+				for (String provided : mod.getProvides()) {
+					modsById.computeIfAbsent(provided, ignore -> new ArrayList<>()).add(mod);
+				}
+			}
+
+			for (ModCandidate mod : candidates) {
+				if (mod.isBuiltin()) ModResolver.preselectMod(mod, allModsSorted, modsById, selectedMods, uniqueSelectedMods);
+			}
+
+			arena = CandidateArena.create(CandidateIndex.create(candidates), allModsSorted);
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that {@link ModDiscoverer#extractNestedMods} extracts from the {@link NestedJarCache} and releases it.
+ */
+final class NestedJarExtractionTests {
+	private static final byte[] CONTENT = "nested jar content".getBytes(StandardCharsets.UTF_8);
+
+	@TempDir
+	Path dir;
+
+	@AfterEach
+	public void releaseCache() {
+		NestedJarCache.get().clear();
+	}
+
+	@Test
+	public void extractsCachedDataAndReleasesIt() throws IOException {
+		ModCandidate parent = TestCandidates.mod("mod_a", "1.0.0");
+		ModCandidate nested = TestCandidates.nested(parent, "lib", "1.0.0");
+		ModCandidate unselected = TestCandidates.nested(parent, "lib", "0.9.0");
+		nested.setData(ByteBuffer.wrap(CONTENT));
+		unselected.setData(ByteBuffer.wrap(CONTENT));
+
+		ModDiscoverer.extractNestedMods(Arrays.asList(parent, nested), dir);
+
+		assertTrue(nested.hasPath());
+		assertEquals(dir.resolve(nested.getDefaultFileName()), nested.getPaths().get(0));
+		assertArrayEquals(CONTENT, Files.readAllBytes(nested.getPaths().get(0)));
+		assertEquals(parent.getOriginPaths(), parent.getPaths()); // not extracted
+		assertFalse(unselected.hasPath());
+		assertFalse(NestedJarCache.get().contains(unselected), "nested jar data wasn't released");
+	}
+
+	@Test
+	public void releasesDataOnFailure() throws IOException {
+		ModCandidate parent = TestCandidates.mod("mod_a", "1.0.0");
+		ModCandidate cached = TestCandidates.nested(parent, "lib", "1.0.0");
+		ModCandidate uncached = TestCandidates.nested(parent, "other_lib", "1.0.0"); // parent jar doesn't exist
+		ModCandidate unselected = TestCandidates.nested(parent, "lib", "0.9.0");
+		cached.setData(ByteBuffer.wrap(CONTENT));
+		unselected.setData(ByteBuffer.wrap(CONTENT));
+
+		assertThrows(IOException.class, () -> ModDiscoverer.extractNestedMods(Arrays.asList(cached, uncached), dir));
+
+		assertTrue(cached.hasPath());
+		assertFalse(uncached.hasPath());
+		assertFalse(NestedJarCache.get().contains(unselected), "nested jar data wasn't released");
+	}
+}
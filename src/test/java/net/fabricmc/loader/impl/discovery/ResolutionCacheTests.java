@@ -0,0 +1,211 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.fabricmc.api.EnvType;
+
+/**
+ * Tests for keying, invalidation and replay of {@link ResolutionCache}.
+ */
+final class ResolutionCacheTests {
+	private static final int KEY_OFFSET = 8; // after magic and format version
+
+	@TempDir
+	Path dir;
+	private Path cacheFile;
+
+	@BeforeEach
+	public void setup() {
+		cacheFile = dir.resolve("resolution.bin");
+	}
+
+	/**
+	 * Solver input of the tests, mod_a requires mod_b and mod_c is optional.
+	 */
+	private static List<ModCandidate> candidates(String bVersion) {
+		return Arrays.asList(
+				TestCandidates.mod("mod_a", "1.0.0", "\"depends\": {\"mod_b\": \">=1.0.0\"}"),
+				TestCandidates.mod("mod_b", bVersion),
+				TestCandidates.mod("mod_c", "2.0.0", "\"breaks\": {\"mod_b\": \"<1.0.0\"}"));
+	}
+
+	private void saveSelection(List<ModCandidate> candidates) {
+		ResolutionCache cache = ResolutionCache.create(cacheFile, EnvType.CLIENT, candidates, Collections.emptyList());
+		cache.save(Arrays.asList(candidates.get(0), candidates.get(1)));
+	}
+
+	private static boolean replay(ResolutionCache cache, List<ModCandidate> candidates, Map<String, ModCandidate> selectedMods, List<ModCandidate> uniqueSelectedMods) {
+		return cache.replay(selectedMods, uniqueSelectedMods, CandidateIndex.create(candidates));
+	}
+
+	private boolean replay(EnvType envType, List<ModCandidate> candidates) {
+		ResolutionCache cache = ResolutionCache.create(cacheFile, envType, candidates, Collections.emptyList());
+		Map<String, ModCandidate> selectedMods = new HashMap<>();
+		List<ModCandidate> uniqueSelectedMods = new ArrayList<>();
+		boolean ret = replay(cache, candidates, selectedMods, uniqueSelectedMods);
+
+		if (!ret) {
+			assertTrue(selectedMods.isEmpty(), "rejected replay modified the selection");
+			assertTrue(uniqueSelectedMods.isEmpty(), "rejected replay modified the selection");
+		}
+
+		return ret;
+	}
+
+	@Test
+	public void replaySavedSelection() {
+		List<ModCandidate> candidates = candidates("1.0.0");
+		saveSelection(candidates);
+
+		ResolutionCache cache = ResolutionCache.create(cacheFile, EnvType.CLIENT, candidates, Collections.emptyList());
+		Map<String, ModCandidate> selectedMods = new HashMap<>();
+		List<ModCandidate> uniqueSelectedMods = new ArrayList<>();
+		assertTrue(replay(cache, candidates, selectedMods, uniqueSelectedMods));
+		assertEquals(Arrays.asList(candidates.get(0), candidates.get(1)), uniqueSelectedMods);
+		assertSame(candidates.get(1), selectedMods.get("mod_b"));
+		assertFalse(selectedMods.containsKey("mod_c"));
+	}
+
+	@Test
+	public void keyIgnoresCandidateOrder() {
+		saveSelection(candidates("1.0.0"));
+
+		// equal candidates from a new discovery run, in a different order
+		List<ModCandidate> candidates = new ArrayList<>(candidates("1.0.0"));
+		Collections.reverse(candidates);
+
+		ResolutionCache cache = ResolutionCache.create(cacheFile, EnvType.CLIENT, candidates, Collections.emptyList());
+		Map<String, ModCandidate> selectedMods = new HashMap<>();
+		List<ModCandidate> uniqueSelectedMods = new ArrayList<>();
+		assertTrue(replay(cache, candidates, selectedMods, uniqueSelectedMods), "candidate order invalidated the cache");
+		assertSame(candidates.get(2), selectedMods.get("mod_a"), "replay didn't select the current candidate");
+		assertSame(candidates.get(1), selectedMods.get("mod_b"), "replay didn't select the current candidate");
+	}
+
+	@Test
+	public void invalidateOnSelectedCandidateChange() {
+		saveSelection(candidates("1.0.0"));
+
+		assertFalse(replay(EnvType.CLIENT, candidates("1.0.1")));
+	}
+
+	@Test
+	public void invalidateOnUnselectedCandidateChange() {
+		saveSelection(candidates("1.0.0"));
+
+		List<ModCandidate> candidates = new ArrayList<>(candidates("1.0.0"));
+		candidates.set(2, TestCandidates.mod("mod_c", "2.0.0", "\"breaks\": {\"mod_b\": \"<=1.0.0\"}"));
+		assertFalse(replay(EnvType.CLIENT, candidates));
+	}
+
+	@Test
+	public void invalidateOnAddedCandidate() {
+		saveSelection(candidates("1.0.0"));
+
+		List<ModCandidate> candidates = new ArrayList<>(candidates("1.0.0"));
+		candidates.add(TestCandidates.mod("mod_d", "1.0.0"));
+		assertFalse(replay(EnvType.CLIENT, candidates));
+	}
+
+	@Test
+	public void invalidateOnPreselectionChange() {
+		saveSelection(candidates("1.0.0"));
+
+		List<ModCandidate> candidates = candidates("1.0.0");
+		ResolutionCache cache = ResolutionCache.create(cacheFile, EnvType.CLIENT, candidates, Collections.singletonList(TestCandidates.builtin("java", "17")));
+		assertFalse(replay(cache, candidates, new HashMap<>(), new ArrayList<>()));
+	}
+
+	@Test
+	public void invalidateOnEnvironmentChange() {
+		saveSelection(candidates("1.0.0"));
+
+		assertFalse(replay(EnvType.SERVER, candidates("1.0.0")));
+	}
+
+	@Test
+	public void rejectTamperedKey() throws IOException {
+		saveSelection(candidates("1.0.0"));
+		flipByte(KEY_OFFSET);
+
+		assertFalse(replay(EnvType.CLIENT, candidates("1.0.0")));
+	}
+
+	@Test
+	public void rejectTamperedSelection() throws IOException {
+		saveSelection(candidates("1.0.0"));
+		flipByte((int) Files.size(cacheFile) - 1);
+
+		assertFalse(replay(EnvType.CLIENT, candidates("1.0.0")));
+	}
+
+	@Test
+	public void rejectTruncatedFile() throws IOException {
+		saveSelection(candidates("1.0.0"));
+		byte[] data = Files.readAllBytes(cacheFile);
+		Files.write(cacheFile, Arrays.copyOf(data, data.length - 1));
+
+		assertFalse(replay(EnvType.CLIENT, candidates("1.0.0")));
+	}
+
+	@Test
+	public void rejectForeignFormat() throws IOException {
+		saveSelection(candidates("1.0.0"));
+		flipByte(0);
+
+		assertFalse(replay(EnvType.CLIENT, candidates("1.0.0")));
+	}
+
+	@Test
+	public void rejectMissingFile() {
+		assertFalse(replay(EnvType.CLIENT, candidates("1.0.0")));
+	}
+
+	@Test
+	public void rejectUnsatisfiedSelection() {
+		// a stale selection that only contains mod_a, missing its dependency mod_b
+		List<ModCandidate> candidates = candidates("1.0.0");
+		ResolutionCache.create(cacheFile, EnvType.CLIENT, candidates, Collections.emptyList()).save(Collections.singletonList(candidates.get(0)));
+
+		assertFalse(replay(EnvType.CLIENT, candidates("1.0.0")));
+	}
+
+	private void flipByte(int offset) throws IOException {
+		byte[] data = Files.readAllBytes(cacheFile);
+		data[offset] ^= 1;
+		Files.write(cacheFile, data);
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import net.fabricmc.loader.api.metadata.ModMetadata;
+import net.fabricmc.loader.impl.game.GameProvider.BuiltinMod;
+import net.fabricmc.loader.impl.metadata.BuiltinModMetadata;
+import net.fabricmc.loader.impl.metadata.DependencyOverrides;
+import net.fabricmc.loader.impl.metadata.LoaderModMetadata;
+import net.fabricmc.loader.impl.metadata.ModMetadataParser;
+import net.fabricmc.loader.impl.metadata.ParseMetadataException;
+import net.fabricmc.loader.impl.metadata.VersionOverrides;
+
+/**
+ * Creates mod candidates for resolution tests without any jars.
+ */
+final class TestCandidates {
+	private TestCandidates() { }
+
+	/**
+	 * Create a root candidate from a v1 {@code fabric.mod.json}.
+	 *
+	 * @param extra additional members of the json object, e.g. {@code "depends": {"b": "*"}}, or an empty string
+	 */
+	static ModCandidate mod(String id, String version, String extra) {
+		return ModCandidate.createPlain(Collections.singletonList(Paths.get(id+"-"+version+".jar")), parse(id, version, extra), false, new ArrayList<>());
+	}
+
+	static ModCandidate mod(String id, String version) {
+		return mod(id, version, "");
+	}
+
+	/**
+	 * Create a candidate nested in the given parent, additional parents can be linked with {@link #nest}.
+	 *
+	 * @param extra additional members of the json object, see {@link #mod(String, String, String)}
+	 */
+	static ModCandidate nested(ModCandidate parent, String id, String version, String extra) {
+		String localPath = "META-INF/jars/"+id+"-"+version+".jar";
+		ModCandidate ret = ModCandidate.createNested(localPath, ModCandidate.hash(localPath.hashCode(), 1), parse(id, version, extra), false, new ArrayList<>());
+		nest(parent, ret);
+
+		return ret;
+	}
+
+	static ModCandidate nested(ModCandidate parent, String id, String version) {
+		return nested(parent, id, version, "");
+	}
+
+	static void nest(ModCandidate parent, ModCandidate child) {
+		parent.getNestedMods().add(child);
+		child.addParent(parent);
+	}
+
+	/**
+	 * Create a builtin candidate like the game or java mods supplied by the game provider.
+	 */
+	static ModCandidate builtin(String id, String version) {
+		ModMetadata metadata = new BuiltinModMetadata.Builder(id, version).build();
+
+		return ModCandidate.createBuiltin(new BuiltinMod(Collections.singletonList(Paths.get(id)), metadata),
+				new VersionOverrides(), new DependencyOverrides(Paths.get("randomMissing")));
+	}
+
+	private static LoaderModMetadata parse(String id, String version, String extra) {
+		String json = "{\"schemaVersion\": 1, \"id\": \""+id+"\", \"version\": \""+version+"\""
+				+ (extra.isEmpty() ? "" : ", "+extra) + "}";
+
+		try {
+			return ModMetadataParser.parseMetadata(json.getBytes(StandardCharsets.UTF_8), id, Collections.emptyList(),
+					new VersionOverrides(), new DependencyOverrides(Paths.get("randomMissing")), false);
+		} catch (ParseMetadataException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
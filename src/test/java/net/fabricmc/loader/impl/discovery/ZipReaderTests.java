@@ -0,0 +1,246 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link ZipReader}, using zips created by {@link ZipOutputStream} or assembled by hand for zip64 fields.
+ */
+final class ZipReaderTests {
+	private static final byte[] CONTENT = "{\"schemaVersion\": 1, \"id\": \"test\"}".getBytes(StandardCharsets.UTF_8);
+
+	@TempDir
+	Path dir;
+
+	@Test
+	public void readStoredEntry() throws IOException {
+		byte[] zip = createZip(ZipEntry.STORED, "fabric.mod.json", "META-INF/jars/");
+
+		for (ZipReader reader : open(zip)) {
+			try (ZipReader zr = reader) {
+				ZipReader.Entry entry = zr.getEntry("fabric.mod.json");
+				assertNotNull(entry);
+				assertTrue(entry.isStored());
+				assertEquals(CONTENT.length, entry.size);
+				assertArrayEquals(CONTENT, readAll(zr, entry));
+				assertArrayEquals(CONTENT, toArray(zr.getStoredData(entry)));
+				assertFalse(zr.getStoredData(entry).isDirect(), "stored data is memory mapped"); // would lock the file
+
+				ByteArrayOutputStream os = new ByteArrayOutputStream();
+				zr.transferStoredData(entry, Channels.newChannel(os));
+				assertArrayEquals(CONTENT, os.toByteArray());
+
+				assertTrue(zr.getEntry("META-INF/jars/").isDirectory());
+				assertNull(zr.getEntry("missing.json"));
+				assertEquals(2, zr.size());
+			}
+		}
+	}
+
+	@Test
+	public void readDeflatedEntry() throws IOException {
+		byte[] zip = createZip(ZipEntry.DEFLATED, "a.txt", "fabric.mod.json");
+
+		for (ZipReader reader : open(zip)) {
+			try (ZipReader zr = reader) {
+				ZipReader.Entry entry = zr.getEntry("fabric.mod.json");
+				assertNotNull(entry);
+				assertEquals(ZipEntry.DEFLATED, entry.method);
+				assertArrayEquals(CONTENT, readAll(zr, entry));
+				assertThrows(ZipException.class, () -> zr.getStoredData(entry));
+			}
+		}
+	}
+
+	@Test
+	public void readPrefixedZip() throws IOException {
+		byte[] zip = createZip(ZipEntry.DEFLATED, "fabric.mod.json");
+		byte[] prefixed = new byte[zip.length + 100];
+		System.arraycopy(zip, 0, prefixed, 100, zip.length);
+
+		for (ZipReader reader : open(prefixed)) {
+			try (ZipReader zr = reader) {
+				assertArrayEquals(CONTENT, readAll(zr, zr.getEntry("fabric.mod.json")));
+			}
+		}
+	}
+
+	@Test
+	public void readZip64EndOfCentralDirectory() throws IOException {
+		// ZipOutputStream switches to the zip64 end of central directory records for 65535 or more entries
+		int count = 0x10000 + 10;
+		String[] names = new String[count];
+
+		for (int i = 0; i < count; i++) {
+			names[i] = "e" + i;
+		}
+
+		byte[] zip = createZip(ZipEntry.STORED, names);
+
+		for (ZipReader reader : open(zip)) {
+			try (ZipReader zr = reader) {
+				assertEquals(count, zr.size());
+				assertArrayEquals(CONTENT, readAll(zr, zr.getEntry("e0")));
+				assertArrayEquals(CONTENT, readAll(zr, zr.getEntry("e" + (count - 1))));
+			}
+		}
+	}
+
+	@Test
+	public void readZip64ExtraField() throws IOException {
+		byte[] zip = createZip64(CONTENT.length, CONTENT.length);
+
+		for (ZipReader reader : open(zip)) {
+			try (ZipReader zr = reader) {
+				ZipReader.Entry entry = zr.getEntry("fabric.mod.json");
+				assertNotNull(entry);
+				assertEquals(CONTENT.length, entry.size);
+				assertEquals(CONTENT.length, entry.compressedSize);
+				assertEquals(0, entry.localHeaderOffset);
+				assertArrayEquals(CONTENT, readAll(zr, entry));
+			}
+		}
+	}
+
+	@Test
+	public void rejectEntriesOver2GiB() throws IOException {
+		long size = 3L << 30;
+		byte[] zip = createZip64(size, size);
+
+		for (ZipReader reader : open(zip)) {
+			try (ZipReader zr = reader) {
+				ZipReader.Entry entry = zr.getEntry("fabric.mod.json");
+				assertEquals(size, entry.size);
+				assertThrows(ZipException.class, () -> zr.getInputStream(entry));
+				assertThrows(ZipException.class, () -> zr.getStoredData(entry));
+			}
+		}
+	}
+
+	@Test
+	public void rejectNonZip() {
+		assertThrows(ZipException.class, () -> new ZipReader(ByteBuffer.wrap(CONTENT)));
+	}
+
+	private ZipReader[] open(byte[] zip) throws IOException {
+		Path file = Files.createTempFile(dir, "test", ".jar");
+		Files.write(file, zip);
+
+		return new ZipReader[] { new ZipReader(ByteBuffer.wrap(zip)), ZipReader.open(file) };
+	}
+
+	private static byte[] readAll(ZipReader zr, ZipReader.Entry entry) throws IOException {
+		try (InputStream is = zr.getInputStream(entry)) {
+			return is.readAllBytes();
+		}
+	}
+
+	private static byte[] toArray(ByteBuffer buffer) {
+		byte[] ret = new byte[buffer.remaining()];
+		buffer.duplicate().get(ret);
+
+		return ret;
+	}
+
+	/**
+	 * Create a zip holding {@link #CONTENT} for each name, directories for names ending with a slash.
+	 */
+	private static byte[] createZip(int method, String... names) throws IOException {
+		ByteArrayOutputStream ret = new ByteArrayOutputStream();
+		CRC32 crc = new CRC32();
+		crc.update(CONTENT);
+
+		try (ZipOutputStream zos = new ZipOutputStream(ret)) {
+			zos.setMethod(method);
+
+			for (String name : names) {
+				ZipEntry entry = new ZipEntry(name);
+				boolean dir = name.endsWith("/");
+
+				if (method == ZipEntry.STORED) {
+					entry.setSize(dir ? 0 : CONTENT.length);
+					entry.setCompressedSize(dir ? 0 : CONTENT.length);
+					entry.setCrc(dir ? 0 : crc.getValue());
+				}
+
+				zos.putNextEntry(entry);
+				if (!dir) zos.write(CONTENT);
+				zos.closeEntry();
+			}
+		}
+
+		return ret.toByteArray();
+	}
+
+	/**
+	 * Create a zip with a single stored entry whose sizes and local header offset are only in the zip64 extra field.
+	 *
+	 * <p>The declared sizes may exceed the actual {@link #CONTENT} stored.
+	 */
+	private static byte[] createZip64(long size, long compressedSize) {
+		byte[] name = "fabric.mod.json".getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buf = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+
+		// local header
+		buf.putInt(0x04034b50).putShort((short) 45).putShort((short) 0).putShort((short) ZipEntry.STORED).putInt(0);
+		buf.putInt(0).putInt(-1).putInt(-1).putShort((short) name.length).putShort((short) 20).put(name);
+		buf.putShort((short) 1).putShort((short) 16).putLong(size).putLong(compressedSize);
+		buf.put(CONTENT);
+
+		// central directory
+		int cenStart = buf.position();
+		buf.putInt(0x02014b50).putShort((short) 45).putShort((short) 45).putShort((short) 0).putShort((short) ZipEntry.STORED).putInt(0);
+		buf.putInt(0).putInt(-1).putInt(-1).putShort((short) name.length).putShort((short) 28).putShort((short) 0);
+		buf.putShort((short) 0).putShort((short) 0).putInt(0).putInt(-1).put(name);
+		buf.putShort((short) 1).putShort((short) 24).putLong(size).putLong(compressedSize).putLong(0);
+		int cenEnd = buf.position();
+
+		// end of central directory
+		buf.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) 1).putShort((short) 1);
+		buf.putInt(cenEnd - cenStart).putInt(cenStart).putShort((short) 0);
+
+		byte[] ret = new byte[buf.position()];
+		buf.flip();
+		buf.get(ret);
+
+		return ret;
+	}
+}
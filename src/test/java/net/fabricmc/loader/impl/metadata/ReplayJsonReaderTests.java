@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.metadata;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import net.fabricmc.loader.impl.lib.gson.JsonReader;
+import net.fabricmc.loader.impl.lib.gson.JsonToken;
+
+/**
+ * Tests for {@link ReplayJsonReader}, recording the entries before {@code schemaVersion} like {@link ModMetadataParser}.
+ */
+final class ReplayJsonReaderTests {
+	private static final String JSON = "{\"id\": \"test\", \"custom\": {\"list\": [1, 2.5, true, null, \"\\u00e4\"]}, \"schemaVersion\": 1, \"version\": \"1.0.0\"}";
+
+	@Test
+	public void replaysRecordedEntriesBeforeSource() throws IOException {
+		JsonReader source = new Utf8JsonReader(JSON.getBytes(StandardCharsets.UTF_8));
+		ReplayJsonReader replay = record(source);
+
+		List<String> expected = new ArrayList<>();
+		JsonReader reference = new Utf8JsonReader(JSON.getBytes(StandardCharsets.UTF_8));
+		reference.beginObject();
+
+		while (reference.hasNext()) {
+			String name = reference.nextName();
+
+			if (name.equals("schemaVersion")) {
+				reference.skipValue();
+			} else {
+				expected.add("name " + name);
+				readValue(reference, expected);
+			}
+		}
+
+		List<String> actual = new ArrayList<>();
+
+		while (replay.hasNext()) {
+			actual.add("name " + replay.nextName());
+			readValue(replay, actual);
+		}
+
+		replay.endObject();
+		assertEquals(expected, actual);
+		assertEquals(JsonToken.END_DOCUMENT, replay.peek());
+	}
+
+	@Test
+	public void skipsRecordedValues() throws IOException {
+		ReplayJsonReader replay = record(new Utf8JsonReader(JSON.getBytes(StandardCharsets.UTF_8)));
+
+		assertEquals("id", replay.nextName());
+		replay.skipValue();
+		assertEquals("custom", replay.nextName());
+		replay.skipValue();
+		assertEquals("version", replay.nextName());
+		assertEquals("1.0.0", replay.nextString());
+	}
+
+	@Test
+	public void doesNotAllocateCharBuffer() throws Exception {
+		JsonReader source = new Utf8JsonReader(JSON.getBytes(StandardCharsets.UTF_8));
+		ReplayJsonReader replay = record(source);
+
+		while (replay.hasNext()) {
+			replay.nextName();
+			replay.skipValue();
+		}
+
+		replay.endObject();
+
+		Field buffer = JsonReader.class.getDeclaredField("buffer");
+		buffer.setAccessible(true);
+		assertNull(buffer.get(replay), "replay reader allocated the JsonReader char buffer");
+		assertNull(buffer.get(source), "UTF-8 reader allocated the JsonReader char buffer");
+	}
+
+	/**
+	 * Record the root object's entries up to {@code schemaVersion} and read its value from the source.
+	 */
+	private static ReplayJsonReader record(JsonReader source) throws IOException {
+		ReplayJsonReader ret = new ReplayJsonReader(source);
+		source.beginObject();
+
+		for (;;) {
+			String name = source.nextName();
+
+			if (name.equals("schemaVersion")) {
+				assertEquals(1, source.nextInt());
+				return ret;
+			}
+
+			ret.recordEntry(name);
+		}
+	}
+
+	private static void readValue(JsonReader reader, List<String> out) throws IOException {
+		switch (reader.peek()) {
+		case BEGIN_ARRAY:
+			reader.beginArray();
+			out.add("[");
+
+			while (reader.hasNext()) {
+				readValue(reader, out);
+			}
+
+			reader.endArray();
+			out.add("]");
+			break;
+		case BEGIN_OBJECT:
+			reader.beginObject();
+			out.add("{");
+
+			while (reader.hasNext()) {
+				out.add("name " + reader.nextName());
+				readValue(reader, out);
+			}
+
+			reader.endObject();
+			out.add("}");
+			break;
+		case STRING:
+			out.add("string " + reader.nextString());
+			break;
+		case NUMBER:
+			out.add("number " + reader.nextDouble());
+			break;
+		case BOOLEAN:
+			out.add("boolean " + reader.nextBoolean());
+			break;
+		case NULL:
+			reader.nextNull();
+			out.add("null");
+			break;
+		default:
+			throw new AssertionError();
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import net.fabricmc.loader.impl.mappings.MappingIndex;
+import net.minecraftforge.srgutils.IMappingBuilder;
+
+final class MappingIndexTests {
+	private static MappingIndex index;
+
+	@BeforeAll
+	public static void setupIndex() {
+		IMappingBuilder builder = IMappingBuilder.create("intermediary", "srg");
+		IMappingBuilder.IClass cls = builder.addClass("net/minecraft/class_1", "net/minecraft/world/Foo");
+		cls.method("(I)V", "method_1", "m_1_");
+		cls.method("()V", "method_1", "m_2_");
+		cls.field("field_1", "f_1_").descriptor("I");
+
+		index = new MappingIndex(builder.build().getMap("intermediary", "srg"));
+	}
+
+	@Test
+	public void mapClass() {
+		assertEquals("net.minecraft.world.Foo", index.mapClass("net.minecraft.class_1"));
+		assertEquals("net.minecraft.world.Foo", index.mapClass("net/minecraft/class_1"));
+		assertNull(index.mapClass("net.minecraft.class_2"));
+	}
+
+	@Test
+	public void mapMethod() {
+		assertEquals("m_1_", index.mapMethod("net.minecraft.class_1", "method_1", "(I)V"));
+		assertEquals("m_2_", index.mapMethod("net/minecraft/class_1", "method_1", "()V"));
+		assertNull(index.mapMethod("net.minecraft.class_1", "method_1", "(J)V"));
+	}
+
+	@Test
+	public void mapMethodWithoutDescriptor() {
+		// the resolver keeps the name unchanged for methods without a descriptor
+		assertNull(index.mapMethod("net.minecraft.class_1", "method_1", null));
+	}
+
+	@Test
+	public void mapField() {
+		assertEquals("f_1_", index.mapField("net.minecraft.class_1", "field_1"));
+		assertNull(index.mapField("net.minecraft.class_1", "field_2"));
+	}
+}
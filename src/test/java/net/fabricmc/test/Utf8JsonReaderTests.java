@@ -0,0 +1,301 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import net.fabricmc.loader.impl.lib.gson.JsonReader;
+import net.fabricmc.loader.impl.metadata.Utf8JsonReader;
+
+/**
+ * Tests that {@link Utf8JsonReader} reads the same tokens, values, locations and errors as {@link JsonReader}.
+ */
+final class Utf8JsonReaderTests {
+	@Test
+	@DisplayName("Byte order mark")
+	public void byteOrderMark() {
+		assertSameTokens("\ufeff{\"id\": \"test\"}");
+		assertSameTokens("\ufeff\n  [1, 2, x]");
+		assertSameTokens("\ufeff");
+		// only a leading byte order mark is skipped
+		assertSameTokens(" \ufeff{}");
+	}
+
+	@Test
+	@DisplayName("Escape sequences")
+	public void escapes() {
+		assertSameTokens("[\"\\n\\t\\b\\f\\r\\/\\\\\\\"\\'\"]");
+		assertSameTokens("[\"\\u0041\\u00e4\\u00E4\\u65e5\", \"a\\u0000b\"]");
+		assertSameTokens("{\"\\u0069d\": \"escaped \\\"name\\\"\"}");
+		// escaped line break, which counts as a new line
+		assertSameTokens("[\"a\\\nb\",\n x]");
+		assertSameTokens("[\"\\x\"]");
+		assertSameTokens("[\"a\\");
+	}
+
+	@Test
+	@DisplayName("Invalid unicode escape sequences")
+	public void invalidUnicodeEscapes() {
+		assertSameTokens("[\"\\uZZZZ\"]");
+		assertSameTokens("[\"\\u00g0\"]");
+		assertSameTokens("[\"\\u00\u00e4\u00e4\"]");
+		assertSameTokens("[\"\\u\ud83d\ude00\ud83d\ude00\"]");
+		assertSameTokens("{\"\\u00\": 1}");
+		assertSameTokens("[\"\\u00");
+		assertSameTokens("[\"\\u00\"");
+		assertSameTokens("[\"\\u\u00e4\"");
+	}
+
+	@Test
+	@DisplayName("Surrogate pairs")
+	public void surrogatePairs() {
+		assertSameTokens("[\"\\ud83d\\ude00\", \"\\uD83D\\uDE00\"]");
+		assertSameTokens("[\"\ud83d\ude00\", \"\ud83d\ude00\\ud83d\\ude00\"]");
+		// unpaired surrogates are passed through like gson does
+		assertSameTokens("[\"\\ud83d\", \"\\ude00x\"]");
+		// columns count UTF-16 chars
+		assertSameTokens("[\"\ud83d\ude00\ud83d\ude00\", x]");
+		assertSameTokens("{\"\ud83d\ude00\": 1 2}");
+	}
+
+	@Test
+	@DisplayName("Non-ASCII text")
+	public void nonAscii() {
+		assertSameTokens("{\"name\": \"M\u00f6d \u65e5\u672c\u8a9e\", \"\u00e4\u00f6\u00fc\": [\"\u00df\"]}");
+		assertSameTokens("{\"description\": \"line 1\nline \u00e4 2\", \"x\": \u00e4}");
+		assertSameTokens("{\"\u00e4\": 1,\n\"\u65e5\": 2 3}");
+		assertSameTokens("[\"\u00e4\u00e4\u00e4\", tru]");
+	}
+
+	@Test
+	@DisplayName("Numbers")
+	public void numbers() {
+		String[] numbers = {
+				"0", "-0", "1", "-1", "123", "2147483647", "2147483648", "-2147483648", "-2147483649",
+				"9223372036854775807", "9223372036854775808", "-9223372036854775808", "-9223372036854775809",
+				"1.0", "1.5", "-1.5", "0.25", "1e2", "1E2", "1e+2", "1e-2", "1.5e3", "-0.0", "1e400", "-1e400", "4.9e-324",
+				"123456789012345678901234567890", "1.0e0",
+				"01", "-", "1.", ".5", "1e", "1e+", "+1", "--1", "1-", "0x10", "1.2.3", "NaN", "Infinity", "-Infinity", "1f", "\"12\"", "\"1.5\"", "\"x\""
+		};
+
+		for (String number : numbers) {
+			String json = "[" + number + "]";
+			assertSameTokens(json);
+
+			for (NumberType type : NumberType.values()) {
+				assertEquals(readNumber(new JsonReader(new StringReader(json)), type), readNumber(new Utf8JsonReader(json.getBytes(StandardCharsets.UTF_8)), type),
+						"Different result reading " + number + " as " + type);
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("Errors and locations")
+	public void errors() {
+		assertSameTokens("");
+		assertSameTokens("   \n  ");
+		assertSameTokens("{");
+		assertSameTokens("{\"a\" 1}");
+		assertSameTokens("{\"a\": 1,}");
+		assertSameTokens("{\"a\": 1 \"b\": 2}");
+		assertSameTokens("{,}");
+		assertSameTokens("{a: 1}");
+		assertSameTokens("{'a': 1}");
+		assertSameTokens("[1,]");
+		assertSameTokens("[,1]");
+		assertSameTokens("[1 2]");
+		assertSameTokens("[1;2]");
+		assertSameTokens("[1:2]");
+		assertSameTokens("[tru]");
+		assertSameTokens("[True, FALSE, nULL]");
+		assertSameTokens("[nullx]");
+		assertSameTokens("{\"a\": 1}x");
+		assertSameTokens("{\"a\": 1} {}");
+		assertSameTokens("// comment\n{}");
+		assertSameTokens("{\"a\": 1 # comment\n}");
+		assertSameTokens("{\"a\": [1, 2], \"b\": {\"c\": =}}");
+		assertSameTokens("{\"a\": \"unterminated");
+		assertSameTokens("{\"a\": \"unterminated\n\n");
+		assertSameTokens("{\n\t\"a\": [\n\t\t1,\n\t\t{\"b\": nul }\n\t]\n}");
+		assertSameTokens("\r\n{\r\n  \"a\": 1\r\n  \"b\": 2\r\n}");
+		assertSameTokens("[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]]");
+		assertSameTokens("[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[[]]");
+	}
+
+	@Test
+	@DisplayName("Skipped values")
+	public void skipValue() {
+		String[] inputs = {
+				"{\"a\": {\"b\": [1, \"x\", null, true, {\"c\": 2.5}]}, \"d\": 3}",
+				"{\"a\": \"\\\"escaped\\\" \u00e4\", \"b\": 1}",
+				"{\"a\": [1, 2 3], \"b\": 1}",
+				"{\"a\": \"unterminated}",
+				"{\"a\": \"\\x\", \"b\": 1}",
+				"{\"a\": {\"x\": [\"\\uZZZZ\"]}, \"b\": 1}",
+				"{\"a\": \"\\u00e4\\uD83D\\uDE00\", \"b\": 1}",
+		};
+
+		for (String input : inputs) {
+			assertEquals(skipFirstValue(new JsonReader(new StringReader(input))), skipFirstValue(new Utf8JsonReader(input.getBytes(StandardCharsets.UTF_8))),
+					"Different result skipping the first value of " + input);
+		}
+	}
+
+	@Test
+	@DisplayName("Byte buffer input")
+	public void byteBuffers() {
+		String json = "\ufeff{\"name\": \"\u00e4\ud83d\ude00\", \"list\": [1, 2.5, true, null], \"x\": tru}";
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+		List<String> expected = readTokens(new JsonReader(new StringReader(json)));
+
+		// heap buffer with content at an offset within the backing array
+		byte[] padded = new byte[bytes.length + 7];
+		System.arraycopy(bytes, 0, padded, 3, bytes.length);
+		ByteBuffer heap = ByteBuffer.wrap(padded, 1, padded.length - 1).slice();
+		heap.position(2).limit(2 + bytes.length);
+		assertEquals(expected, readTokens(new Utf8JsonReader(heap)));
+		assertEquals(2, heap.position());
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes).flip();
+		assertEquals(expected, readTokens(new Utf8JsonReader(direct)));
+		assertEquals(0, direct.position());
+	}
+
+	private static void assertSameTokens(String json) {
+		List<String> expected = readTokens(new JsonReader(new StringReader(json)));
+		List<String> actual = readTokens(new Utf8JsonReader(json.getBytes(StandardCharsets.UTF_8)));
+
+		assertEquals(expected, actual, "Different tokens reading " + json);
+	}
+
+	/**
+	 * Read all tokens with their location until the end of the document or the first error.
+	 */
+	private static List<String> readTokens(JsonReader reader) {
+		List<String> ret = new ArrayList<>();
+
+		try {
+			for (;;) {
+				String token;
+
+				switch (reader.peek()) {
+				case BEGIN_ARRAY:
+					reader.beginArray();
+					token = "[";
+					break;
+				case END_ARRAY:
+					reader.endArray();
+					token = "]";
+					break;
+				case BEGIN_OBJECT:
+					reader.beginObject();
+					token = "{";
+					break;
+				case END_OBJECT:
+					reader.endObject();
+					token = "}";
+					break;
+				case NAME:
+					token = "name " + reader.nextName();
+					break;
+				case STRING:
+					token = "string " + reader.nextString();
+					break;
+				case NUMBER:
+					token = "number " + reader.nextString();
+					break;
+				case BOOLEAN:
+					token = "boolean " + reader.nextBoolean();
+					break;
+				case NULL:
+					reader.nextNull();
+					token = "null";
+					break;
+				case END_DOCUMENT:
+					ret.add("end" + reader.locationString());
+					return ret;
+				default:
+					throw new AssertionError();
+				}
+
+				ret.add(token + reader.locationString());
+			}
+		} catch (Exception e) {
+			ret.add(describe(e));
+		}
+
+		return ret;
+	}
+
+	private enum NumberType {
+		INT, LONG, DOUBLE, STRING
+	}
+
+	private static String readNumber(JsonReader reader, NumberType type) {
+		try {
+			reader.beginArray();
+			Object value;
+
+			switch (type) {
+			case INT:
+				value = reader.nextInt();
+				break;
+			case LONG:
+				value = reader.nextLong();
+				break;
+			case DOUBLE:
+				value = reader.nextDouble();
+				break;
+			case STRING:
+				value = reader.nextString();
+				break;
+			default:
+				throw new AssertionError();
+			}
+
+			return value + reader.locationString();
+		} catch (Exception e) {
+			return describe(e);
+		}
+	}
+
+	private static String skipFirstValue(JsonReader reader) {
+		try {
+			reader.beginObject();
+			reader.nextName();
+			reader.skipValue();
+
+			return reader.nextName() + reader.locationString();
+		} catch (Exception e) {
+			return describe(e);
+		}
+	}
+
+	private static String describe(Exception e) {
+		return e.getClass().getName() + ": " + e.getMessage();
+	}
+}
@@ -18,6 +18,7 @@ package net.fabricmc.test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -27,6 +28,7 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
@@ -37,9 +39,15 @@ import org.junit.jupiter.api.Test;
 
 import net.fabricmc.loader.api.SemanticVersion;
 import net.fabricmc.loader.api.metadata.CustomValue;
+import net.fabricmc.loader.api.metadata.ModDependency;
+import net.fabricmc.loader.api.metadata.ModEnvironment;
+import net.fabricmc.loader.api.metadata.Person;
 import net.fabricmc.loader.impl.metadata.DependencyOverrides;
+import net.fabricmc.loader.impl.metadata.EntrypointMetadata;
 import net.fabricmc.loader.impl.metadata.LoaderModMetadata;
+import net.fabricmc.loader.impl.metadata.MetadataInterner;
 import net.fabricmc.loader.impl.metadata.ModMetadataParser;
+import net.fabricmc.loader.impl.metadata.NestedJarEntry;
 import net.fabricmc.loader.impl.metadata.ParseMetadataException;
 import net.fabricmc.loader.impl.metadata.VersionOverrides;
 
@@ -81,6 +89,38 @@ final class V1ModJsonParsingTests {
 		validateRequiredValues(reversedMetadata);
 	}
 
+	@Test
+	@DisplayName("Schema version after other keys")
+	public void testSchemaVersionOrder() throws IOException, ParseMetadataException {
+		final LoaderModMetadata first = parseMetadata(specPath.resolve("schema_version_first.json"));
+		validateSchemaVersionOrderValues(first);
+
+		// The same keys with schemaVersion in the middle and at the end, the keys before it are replayed
+		for (String file : new String[] { "schema_version_middle.json", "schema_version_last.json" }) {
+			final LoaderModMetadata metadata = parseMetadata(specPath.resolve(file));
+			validateSchemaVersionOrderValues(metadata);
+			assertEquals(describe(first), describe(metadata), "Metadata read from " + file + " differs from reading it with schemaVersion first");
+		}
+	}
+
+	@Test
+	@DisplayName("Missing schema version")
+	public void testMissingSchemaVersion() throws IOException, ParseMetadataException {
+		// Files without schemaVersion are read as schema version 0
+		final LoaderModMetadata metadata = parseMetadata(specPath.resolve("no_schema_version.json"));
+		assertEquals(0, metadata.getSchemaVersion(), "Parsed JSON file without schema version wasn't read as schema version 0");
+		assertEquals("v0-parsing-test", metadata.getId());
+		assertEquals("1.0.0", metadata.getVersion().getFriendlyString());
+		assertEquals("No schema version", metadata.getName());
+		assertEquals(ModEnvironment.CLIENT, metadata.getEnvironment());
+		assertEquals(Collections.singletonList("net.fabricmc.test.EntrypointTest"), new ArrayList<>(metadata.getOldInitializers()));
+
+		assertEquals(1, metadata.getDependencies().size(), "Incorrect amount of dependencies");
+		final ModDependency dependency = metadata.getDependencies().iterator().next();
+		assertEquals(ModDependency.Kind.DEPENDS, dependency.getKind());
+		assertEquals("fabricloader", dependency.getModId());
+	}
+
 	@Test
 	@DisplayName("Read custom values")
 	public void customValues() throws IOException, ParseMetadataException {
@@ -145,6 +185,96 @@ final class V1ModJsonParsingTests {
 		assertTrue(metadata.getVersion() instanceof SemanticVersion, "Parsed version was not a semantic version, expected a semantic version");
 	}
 
+	private void validateSchemaVersionOrderValues(LoaderModMetadata metadata) {
+		validateRequiredValues(metadata);
+
+		assertEquals("Schema \"version\" order", metadata.getName());
+		assertEquals(2, metadata.getAuthors().size(), "Incorrect amount of authors");
+		assertEquals(ModEnvironment.CLIENT, metadata.getEnvironment());
+		assertEquals("kotlin", metadata.getEntrypoints("client").get(0).getAdapter());
+		assertEquals("net.fabricmc.test.EntrypointTest", metadata.getEntrypoints("main").get(0).getValue());
+		assertEquals("META-INF/jars/nested.jar", metadata.getJars().iterator().next().getFile());
+		assertEquals(3, metadata.getDependencies().size(), "Incorrect amount of dependencies");
+		assertEquals(Collections.singletonList("v1-parsing-alias"), new ArrayList<>(metadata.getProvides()));
+
+		final CustomValue.CvArray list = metadata.getCustomValue("nested").getAsObject().get("list").getAsArray();
+		assertEquals(5, list.size(), "Incorrectly read custom array");
+		assertEquals("\u00e4", list.get(4).getAsString());
+	}
+
+	private static String describe(LoaderModMetadata metadata) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(metadata.getId()).append(' ').append(metadata.getVersion()).append(' ').append(metadata.getName()).append('\n');
+
+		for (Person author : metadata.getAuthors()) {
+			sb.append("author ").append(author.getName()).append(' ').append(author.getContact().asMap()).append('\n');
+		}
+
+		sb.append(metadata.getEnvironment()).append('\n');
+
+		for (String key : metadata.getEntrypointKeys()) {
+			for (EntrypointMetadata entrypoint : metadata.getEntrypoints(key)) {
+				sb.append("entrypoint ").append(key).append(' ').append(entrypoint.getAdapter()).append(' ').append(entrypoint.getValue()).append('\n');
+			}
+		}
+
+		for (NestedJarEntry jar : metadata.getJars()) {
+			sb.append("jar ").append(jar.getFile()).append('\n');
+		}
+
+		for (ModDependency dependency : metadata.getDependencies()) {
+			sb.append(dependency).append('\n');
+		}
+
+		sb.append(metadata.getProvides()).append('\n');
+
+		for (Map.Entry<String, CustomValue> entry : metadata.getCustomValues().entrySet()) {
+			sb.append("custom ").append(entry.getKey()).append(' ');
+			describe(entry.getValue(), sb);
+			sb.append('\n');
+		}
+
+		return sb.toString();
+	}
+
+	private static void describe(CustomValue value, StringBuilder sb) {
+		switch (value.getType()) {
+		case OBJECT:
+			sb.append('{');
+
+			for (Map.Entry<String, CustomValue> entry : value.getAsObject()) {
+				sb.append(entry.getKey()).append('=');
+				describe(entry.getValue(), sb);
+				sb.append(',');
+			}
+
+			sb.append('}');
+			break;
+		case ARRAY:
+			sb.append('[');
+
+			for (CustomValue element : value.getAsArray()) {
+				describe(element, sb);
+				sb.append(',');
+			}
+
+			sb.append(']');
+			break;
+		case STRING:
+			sb.append('"').append(value.getAsString()).append('"');
+			break;
+		case NUMBER:
+			sb.append(value.getAsNumber());
+			break;
+		case BOOLEAN:
+			sb.append(value.getAsBoolean());
+			break;
+		case NULL:
+			sb.append("null");
+			break;
+		}
+	}
+
 	@Test
 	@DisplayName("Long test file")
 	public void testLongFile() throws IOException, ParseMetadataException {
@@ -214,6 +344,29 @@ final class V1ModJsonParsingTests {
 		}, "Parser did not fail when the duplicate \"schemaVersion\" mismatches");
 	}
 
+	@Test
+	public void verifyInvalidUnicodeEscapeFails() {
+		// Custom values are decoded lazily, the escape has to be rejected while parsing
+		assertThrows(ParseMetadataException.class, () -> {
+			parseMetadata(errorPath.resolve("invalid_unicode_escape.json"));
+		}, "Invalid unicode escape in a custom value was not caught");
+	}
+
+	@Test
+	public void testMetadataInterning() throws IOException, ParseMetadataException {
+		// Parsed mods share strings until they're handed to the loader
+		try {
+			LoaderModMetadata first = parseMetadata(specPath.resolve("schema_version_first.json"));
+			LoaderModMetadata second = parseMetadata(specPath.resolve("schema_version_first.json"));
+
+			assertSame(first.getProvides().iterator().next(), second.getProvides().iterator().next(), "Provided ids were not interned");
+			assertSame(first.getDependencies().iterator().next().getModId(), second.getDependencies().iterator().next().getModId(), "Dependency ids were not interned");
+			assertSame(first.getAuthors().iterator().next().getName(), second.getAuthors().iterator().next().getName(), "Author names were not interned");
+		} finally {
+			MetadataInterner.closeActive();
+		}
+	}
+
 	/*
 	 * Warning tests
 	 */